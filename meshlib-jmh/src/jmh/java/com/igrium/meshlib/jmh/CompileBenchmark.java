@@ -0,0 +1,90 @@
+package com.igrium.meshlib.jmh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.v1.ConcurrentMesh;
+
+import de.javagl.obj.Obj;
+
+/**
+ * Measures compiling and exporting a prebuilt block of cubes, with both the
+ * current and the original mesh implementation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CompileBenchmark {
+
+    @Param({ "32" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean sort;
+
+    private ConcurrentMeshBuilder mesh;
+    private ConcurrentMesh meshV1;
+
+    @Setup(Level.Trial)
+    public void buildMeshes() {
+        mesh = ConcurrentMeshBuilder.create();
+        Scenes.buildCubes(mesh, size);
+        meshV1 = new ConcurrentMesh();
+        Scenes.buildCubes(meshV1, size);
+    }
+
+    @Benchmark
+    public Obj toObj() {
+        return mesh.toObj(sort);
+    }
+
+    @Benchmark
+    public Obj toObjV1() {
+        return meshV1.toObj();
+    }
+
+    @Benchmark
+    public long writeObj() throws IOException {
+        DiscardingChannel channel = new DiscardingChannel();
+        mesh.writeObj(channel, sort);
+        return channel.written;
+    }
+
+    /**
+     * Counts the bytes written to it and throws them away, so exports are
+     * measured without any disk I/O.
+     */
+    private static class DiscardingChannel implements WritableByteChannel {
+        long written;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int count = src.remaining();
+            src.position(src.limit());
+            written += count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
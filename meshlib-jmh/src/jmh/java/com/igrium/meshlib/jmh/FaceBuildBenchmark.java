@@ -0,0 +1,47 @@
+package com.igrium.meshlib.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.v1.AbstractConcurrentMesh;
+import com.igrium.meshlib.v1.ConcurrentMesh;
+import com.igrium.meshlib.v1.OverlapCheckingMesh;
+
+/**
+ * Measures building a block of cubes from scratch with
+ * <code>FaceBuilder.build</code>, and with the original mesh implementation for
+ * comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FaceBuildBenchmark {
+
+    @Param({ "32" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean overlapChecking;
+
+    @Benchmark
+    public ConcurrentMeshBuilder build() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(overlapChecking);
+        Scenes.buildCubes(mesh, size);
+        return mesh;
+    }
+
+    @Benchmark
+    public AbstractConcurrentMesh buildV1() {
+        AbstractConcurrentMesh mesh = overlapChecking ? new OverlapCheckingMesh() : new ConcurrentMesh();
+        Scenes.buildCubes(mesh, size);
+        return mesh;
+    }
+}
@@ -0,0 +1,84 @@
+package com.igrium.meshlib.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.IndexedReference;
+import com.igrium.meshlib.MeshBuilderSettings;
+import com.igrium.meshlib.Vertex;
+
+/**
+ * Measures <code>ReferenceMap.getOrAdd</code> on a shared vertex map as more
+ * threads compete for it. With few distinct values most calls find an existing
+ * vertex; with many, most calls insert one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ReferenceMapBenchmark {
+
+    @Param({ "1024", "1048576" })
+    public int distinctValues;
+
+    @Param({ "false", "true" })
+    public boolean columnar;
+
+    private Vertex[] values;
+    private ConcurrentMeshBuilder.ReferenceMap<Vertex> map;
+
+    @Setup(Level.Trial)
+    public void createValues() {
+        int side = (int) Math.ceil(Math.cbrt(distinctValues));
+        values = new Vertex[distinctValues];
+        for (int i = 0; i < distinctValues; i++) {
+            values[i] = new Vertex(i % side, i / side % side, i / (side * side));
+        }
+    }
+
+    // Start every iteration with an empty map, so the mix of hits and inserts
+    // doesn't drift as the benchmark runs.
+    @Setup(Level.Iteration)
+    public void createMap() {
+        map = ConcurrentMeshBuilder.create(new MeshBuilderSettings().columnarStorage(columnar)).getVertices();
+    }
+
+    private IndexedReference<Vertex> getOrAdd() {
+        return map.getOrAdd(values[ThreadLocalRandom.current().nextInt(values.length)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IndexedReference<Vertex> threads1() {
+        return getOrAdd();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public IndexedReference<Vertex> threads2() {
+        return getOrAdd();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public IndexedReference<Vertex> threads4() {
+        return getOrAdd();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public IndexedReference<Vertex> threadsMax() {
+        return getOrAdd();
+    }
+}
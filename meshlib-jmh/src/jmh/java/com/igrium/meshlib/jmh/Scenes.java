@@ -0,0 +1,87 @@
+package com.igrium.meshlib.jmh;
+
+import java.util.stream.IntStream;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.FaceBuilder;
+import com.igrium.meshlib.Vertex;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.v1.AbstractConcurrentMesh;
+import com.igrium.meshlib.v1.Face;
+
+/**
+ * Builds the meshes that the benchmarks run on: a block of unit cubes, where
+ * neighboring cubes share vertices and texture coordinates.
+ */
+final class Scenes {
+
+    private static final Vector2[] TEX_COORDS = {
+            new Vector2(0, 0),
+            new Vector2(0, 1),
+            new Vector2(1, 1),
+            new Vector2(1, 0)
+    };
+
+    private Scenes() {
+    }
+
+    /**
+     * Build a block of cubes in parallel.
+     *
+     * @param mesh The mesh to build in.
+     * @param size The number of cubes along each side of the block.
+     */
+    static void buildCubes(ConcurrentMeshBuilder mesh, int size) {
+        IntStream.range(0, size * size * size).parallel().forEach(i -> {
+            int x = i % size;
+            int y = i / size % size;
+            int z = i / (size * size);
+            for (Vertex[] face : cube(x, y, z)) {
+                new FaceBuilder(face).material(y % 2 == 0 ? "even" : "odd").texCoords(TEX_COORDS).build(mesh);
+            }
+        });
+    }
+
+    /**
+     * Build a block of cubes in parallel with the original mesh implementation.
+     *
+     * @param mesh The mesh to build in.
+     * @param size The number of cubes along each side of the block.
+     */
+    static void buildCubes(AbstractConcurrentMesh mesh, int size) {
+        IntStream.range(0, size * size * size).parallel().forEach(i -> {
+            int x = i % size;
+            int y = i / size % size;
+            int z = i / (size * size);
+            for (Vertex[] face : cube(x, y, z)) {
+                for (Vertex vertex : face) {
+                    mesh.putVertex(vertex);
+                }
+                mesh.addFace(Face.create(face, TEX_COORDS, null, y % 2 == 0 ? "even" : "odd", null));
+            }
+        });
+    }
+
+    /**
+     * Get the faces of a unit cube, wound counter-clockwise from outside.
+     */
+    static Vertex[][] cube(float x, float y, float z) {
+        Vertex v000 = new Vertex(x, y, z);
+        Vertex v100 = new Vertex(x + 1, y, z);
+        Vertex v010 = new Vertex(x, y + 1, z);
+        Vertex v110 = new Vertex(x + 1, y + 1, z);
+        Vertex v001 = new Vertex(x, y, z + 1);
+        Vertex v101 = new Vertex(x + 1, y, z + 1);
+        Vertex v011 = new Vertex(x, y + 1, z + 1);
+        Vertex v111 = new Vertex(x + 1, y + 1, z + 1);
+
+        return new Vertex[][] {
+                { v000, v100, v101, v001 },
+                { v010, v011, v111, v110 },
+                { v000, v010, v110, v100 },
+                { v001, v101, v111, v011 },
+                { v000, v001, v011, v010 },
+                { v100, v110, v111, v101 }
+        };
+    }
+}
@@ -0,0 +1,194 @@
+package com.igrium.meshlib;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+/**
+ * A view that leaves out every vertex, texture coordinate and normal that no
+ * face uses, and renumbers the rest in their original order. Builders that cull
+ * faces run their views through this, as the values of culled faces stay in
+ * the builder.
+ */
+final class CompactedView implements MeshView {
+
+    // Number of faces each task marks at once.
+    private static final int FACE_CHUNK_SIZE = 4096;
+
+    private final MeshView mesh;
+
+    // New index -> old index, and old index -> new index (-1 if unused).
+    private final int[] vertices;
+    private final int[] vertexRemap;
+    private final int[] texCoords;
+    private final int[] texCoordRemap;
+    private final int[] normals;
+    private final int[] normalRemap;
+
+    private CompactedView(MeshView mesh, boolean[] usedVertices, boolean[] usedTexCoords, boolean[] usedNormals) {
+        this.mesh = mesh;
+        this.vertexRemap = remap(usedVertices);
+        this.vertices = invert(vertexRemap, usedVertices);
+        this.texCoordRemap = remap(usedTexCoords);
+        this.texCoords = invert(texCoordRemap, usedTexCoords);
+        this.normalRemap = remap(usedNormals);
+        this.normals = invert(normalRemap, usedNormals);
+    }
+
+    /**
+     * Compact a view. Faces are scanned in parallel in a pool.
+     *
+     * @param view The view to compact.
+     * @param pool The pool to scan faces in.
+     * @return The compacted view, or <code>view</code> itself if every value is
+     *         used.
+     */
+    static MeshView compact(MeshView view, ForkJoinPool pool) {
+        boolean[] usedVertices = new boolean[view.getNumVertices()];
+        boolean[] usedTexCoords = new boolean[view.getNumTexCoords()];
+        boolean[] usedNormals = new boolean[view.getNumNormals()];
+
+        // Every task only ever writes true, so racing writes are harmless.
+        int numFaces = view.getNumFaces();
+        IntStream chunks = IntStream.range(0, (numFaces + FACE_CHUNK_SIZE - 1) / FACE_CHUNK_SIZE).parallel();
+        ForkJoinTask<?> task = ForkJoinTask.adapt(() -> chunks.forEach(chunk -> {
+            int from = chunk * FACE_CHUNK_SIZE;
+            view.forEachFace(from, Math.min(from + FACE_CHUNK_SIZE, numFaces),
+                    (count, v, vt, vn, material, groups) -> {
+                        for (int i = 0; i < count; i++) {
+                            usedVertices[v[i]] = true;
+                            if (vt != null) {
+                                usedTexCoords[vt[i]] = true;
+                            }
+                            if (vn != null) {
+                                usedNormals[vn[i]] = true;
+                            }
+                        }
+                    });
+        }));
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+
+        if (allUsed(usedVertices) && allUsed(usedTexCoords) && allUsed(usedNormals))
+            return view;
+        return new CompactedView(view, usedVertices, usedTexCoords, usedNormals);
+    }
+
+    private static boolean allUsed(boolean[] used) {
+        for (boolean value : used) {
+            if (!value)
+                return false;
+        }
+        return true;
+    }
+
+    private static int[] remap(boolean[] used) {
+        int[] remap = new int[used.length];
+        int next = 0;
+        for (int i = 0; i < used.length; i++) {
+            remap[i] = used[i] ? next++ : -1;
+        }
+        return remap;
+    }
+
+    private static int[] invert(int[] remap, boolean[] used) {
+        int count = 0;
+        for (boolean value : used) {
+            if (value) {
+                count++;
+            }
+        }
+        int[] indices = new int[count];
+        for (int i = 0; i < remap.length; i++) {
+            if (remap[i] >= 0) {
+                indices[remap[i]] = i;
+            }
+        }
+        return indices;
+    }
+
+    @Override
+    public int getNumVertices() {
+        return vertices.length;
+    }
+
+    @Override
+    public Vertex getVertex(int index) {
+        return mesh.getVertex(vertices[index]);
+    }
+
+    @Override
+    public int getVertexDimensions() {
+        return mesh.getVertexDimensions();
+    }
+
+    @Override
+    public float getVertexComponent(int index, int component) {
+        return mesh.getVertexComponent(vertices[index], component);
+    }
+
+    @Override
+    public int getNumTexCoords() {
+        return texCoords.length;
+    }
+
+    @Override
+    public Vector2 getTexCoord(int index) {
+        return mesh.getTexCoord(texCoords[index]);
+    }
+
+    @Override
+    public float getTexCoordComponent(int index, int component) {
+        return mesh.getTexCoordComponent(texCoords[index], component);
+    }
+
+    @Override
+    public int getNumNormals() {
+        return normals.length;
+    }
+
+    @Override
+    public Vector3 getNormal(int index) {
+        return mesh.getNormal(normals[index]);
+    }
+
+    @Override
+    public float getNormalComponent(int index, int component) {
+        return mesh.getNormalComponent(normals[index], component);
+    }
+
+    @Override
+    public int getNumFaces() {
+        return mesh.getNumFaces();
+    }
+
+    @Override
+    public <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor) throws E {
+        int[][] local = { new int[4], new int[4], new int[4] };
+        mesh.forEachFace(fromIndex, toIndex, (count, v, vt, vn, material, groups) -> {
+            if (count > local[0].length) {
+                local[0] = new int[count];
+                local[1] = new int[count];
+                local[2] = new int[count];
+            }
+            visitor.visit(count, remap(v, count, vertexRemap, local[0]), remap(vt, count, texCoordRemap, local[1]),
+                    remap(vn, count, normalRemap, local[2]), material, groups);
+        });
+    }
+
+    private static int[] remap(int[] indices, int count, int[] remap, int[] dest) {
+        if (indices == null)
+            return null;
+
+        for (int i = 0; i < count; i++) {
+            dest[i] = remap[indices[i]];
+        }
+        return dest;
+    }
+}
@@ -0,0 +1,44 @@
+package com.igrium.meshlib;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event for one run of a mesh builder's compile stage. Its duration
+ * covers creating the mesh view, but not reading it.
+ */
+@Name("com.igrium.meshlib.Compile")
+@Label("Mesh Compile")
+@Category("MeshLib")
+@Description("Compiling a mesh builder into a mesh view")
+class CompileEvent extends Event {
+
+    @Label("Metrics ID")
+    @Description("Identity hash of the builder's metrics, to tell builders apart")
+    int metricsId;
+
+    @Label("Sorted")
+    boolean sorted;
+
+    @Label("Snapshot")
+    boolean snapshot;
+
+    @Label("Face Count")
+    int faceCount;
+
+    @Label("Attributes Time")
+    @Timespan
+    long attributesTime;
+
+    @Label("Sort Time")
+    @Timespan
+    long sortTime;
+
+    @Label("Faces Time")
+    @Timespan
+    long facesTime;
+}
@@ -1,22 +1,47 @@
 package com.igrium.meshlib;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Objects;
+import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
+import com.igrium.meshlib.MeshMetrics.Phase;
+import com.igrium.meshlib.io.FacePartitioner;
+import com.igrium.meshlib.io.GlbWriter;
+import com.igrium.meshlib.io.ObjStreamWriter;
+import com.igrium.meshlib.io.ParallelGzipChannel;
+import com.igrium.meshlib.io.PartitionedObjWriter;
+import com.igrium.meshlib.io.PlyWriter;
 import com.igrium.meshlib.math.Vector2;
 import com.igrium.meshlib.math.Vector3;
-import com.igrium.meshlib.util.ArrayUtils;
+import com.igrium.meshlib.util.ChunkedArray;
+import com.igrium.meshlib.util.FloatAttributeTable;
+import com.igrium.meshlib.util.MappedSegmentFile;
+import com.igrium.meshlib.util.WeldingGrid;
 
+import de.javagl.obj.FloatTuple;
 import de.javagl.obj.Obj;
+import de.javagl.obj.ObjFace;
+import de.javagl.obj.ObjFaces;
 import de.javagl.obj.Objs;
 
 /**
@@ -27,19 +52,23 @@ import de.javagl.obj.Objs;
  * <ol>
  * <li>The build stage works across many threads and works to assemble large
  * amounts of vertices and faces.</li>
- * <li>The compile stage works on one thread, and compiles the mesh data into a
- * <code>Obj</code>.</li>
+ * <li>The compile stage sorts and compiles the mesh data into a
+ * <code>Obj</code>, splitting the work across the compile pool (see
+ * {@link #setCompilePool}).</li>
  * </ol>
  * <p>
  * All methods in this class are thread-safe. However, if this mesh is running
  * the compile stage on any thread (<code>toObj()</code>), every other access
- * will be blocked until the compile is complete.
+ * will be blocked until the compile is complete. To export a mesh while it's
+ * still being built, use <code>snapshot()</code> instead, which only blocks
+ * for as long as it takes to mark the snapshot point.
  * </p>
  * <p>
  * Due to the way that index tracking is implemented, manipulation of indexed
  * elements after they've been added to the mesh is unsupported. It is also not
  * recommended to try and load an existing <code>Obj</code> into a
- * <code>ConcurrentMeshBuilder</code>.
+ * <code>ConcurrentMeshBuilder</code>; to add to an existing OBJ file, load it
+ * with {@link ObjImporter} instead.
  * </p>
  * <p>
  * Concurrent meshes also support "overlap checking". If enabled, every attempt
@@ -60,7 +89,7 @@ public abstract class ConcurrentMeshBuilder {
      * @return The new mesh builder.
      */
     public static ConcurrentMeshBuilder create(boolean overlapChecking) {
-        return overlapChecking ? new OverlapCheckingMeshBuilder() : new SimpleConcurrentMeshBuilder();
+        return create(new MeshBuilderSettings().overlapChecking(overlapChecking));
     }
 
     /**
@@ -68,38 +97,102 @@ public abstract class ConcurrentMeshBuilder {
      * @return The new mesh builder.
      */
     public static ConcurrentMeshBuilder create() {
-        return new SimpleConcurrentMeshBuilder();
+        return create(new MeshBuilderSettings());
     }
-    
-    private static class UnorderedArrayHandle<T> {
-        final T[] array;
 
-        UnorderedArrayHandle(T[] array) {
-            this.array = array;
+    /**
+     * Create a concurrent mesh builder.
+     * 
+     * @param settings Settings to use.
+     * @return The new mesh builder.
+     * @throws IllegalArgumentException If the settings contain an unsupported
+     *                                  combination of options.
+     * @throws UncheckedIOException     If the builder spills to disk and its
+     *                                  files can't be created.
+     */
+    public static ConcurrentMeshBuilder create(MeshBuilderSettings settings)
+            throws IllegalArgumentException, UncheckedIOException {
+        if (settings.isCullOpposingFaces() && !settings.isOverlapChecking()) {
+            throw new IllegalArgumentException("Culling opposing faces requires overlap checking.");
         }
-
-        @Override
-        public int hashCode() {
-            // Using strait addition utilizes the commutative property to ensure hash code
-            // is order-independent.
-            int code = 0;
-            for (T val : array) {
-                code += val.hashCode();
+        if (settings.isSpilling()) {
+            if (settings.isSharded() || settings.isOverlapChecking() || settings.isColumnarStorage()
+                    || settings.isFaceBucketing() || settings.isCompactFaces() || settings.isWelding()) {
+                throw new IllegalArgumentException("Spilling builders do not support sharding, overlap checking, "
+                        + "columnar storage, face bucketing, compact faces or welding.");
+            }
+            try {
+                return new SpillingMeshBuilder(settings, MappedSegmentFile.DEFAULT_SEGMENT_BITS);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            return code;
         }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof UnorderedArrayHandle other) {
-                return ArrayUtils.arrayEqualsUnordered(this.array, other.array);
-            } else {
-                return false;
+        if (settings.isSharded()) {
+            if (settings.isOverlapChecking() || settings.isColumnarStorage() || settings.isWelding()
+                    || settings.isFaceBucketing() || settings.isCompactFaces()) {
+                throw new IllegalArgumentException("Sharded builders do not support overlap checking, "
+                        + "columnar storage, welding, face bucketing or compact faces.");
+            }
+            return new ShardedMeshBuilder(settings);
+        }
+        if (settings.isCompactFaces()) {
+            if (settings.isOverlapChecking() || settings.isFaceBucketing()) {
+                throw new IllegalArgumentException(
+                        "Compact faces do not support overlap checking or face bucketing.");
+            }
+            return new CompactMeshBuilder(settings);
+        }
+        if (settings.isFaceBucketing()) {
+            if (settings.isOverlapChecking()) {
+                throw new IllegalArgumentException("Face bucketing does not support overlap checking.");
             }
+            return new BucketedMeshBuilder(settings);
+        }
+        return settings.isOverlapChecking() ? new OverlapCheckingMeshBuilder(settings)
+                : new SimpleConcurrentMeshBuilder(settings);
+    }
+
+    /**
+     * Create a mesh builder that spills the mesh to disk. This is the same as
+     * <code>create</code>, but returns the builder as a
+     * {@link SpillingMeshBuilder}, which must be closed to delete its files.
+     * 
+     * @param settings Settings to use. Must have a spill directory.
+     * @return The new mesh builder.
+     * @throws IllegalArgumentException If the settings don't have a spill
+     *                                  directory, or contain an unsupported
+     *                                  combination of options.
+     * @throws UncheckedIOException     If the builder's files can't be created.
+     * @see MeshBuilderSettings#spillDirectory(Path)
+     */
+    public static SpillingMeshBuilder createSpilling(MeshBuilderSettings settings)
+            throws IllegalArgumentException, UncheckedIOException {
+        if (!settings.isSpilling()) {
+            throw new IllegalArgumentException("Spilling builders need a spill directory.");
         }
+        return (SpillingMeshBuilder) create(settings);
     }
 
-    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Create a sharded concurrent mesh builder. Every thread that builds faces
+     * gets its own private vertex, texcoord, normal and face tables, so the build
+     * stage never contends with other threads. The shards are deduplicated and
+     * merged during the compile stage, which makes it somewhat slower.
+     * <p>
+     * Indexed references handed out by a sharded builder are local to the
+     * calling thread's shard, so faces should be built and added on the same
+     * thread (as <code>FaceBuilder.build</code> does). Sharded builders do not
+     * support overlap checking.
+     *
+     * @return The new mesh builder.
+     */
+    public static ConcurrentMeshBuilder createSharded() {
+        return create(new MeshBuilderSettings().sharded(true));
+    }
+
+    final MeshMetrics metrics = new MeshMetrics();
+
+    final ReadWriteLock lock = new MeteredReadWriteLock(metrics.readLockWaitNanos, metrics.writeLockWaitNanos);
 
     /**
      * Get the read-write lock that this concurrent mesh uses. The compile stage
@@ -112,6 +205,15 @@ public abstract class ConcurrentMeshBuilder {
         return lock;
     }
 
+    /**
+     * Get the metrics of this mesh builder, which are collected as it's used.
+     * 
+     * @return The mesh's metrics.
+     */
+    public MeshMetrics getMetrics() {
+        return metrics;
+    }
+
     boolean prioritizeNewFaces = true;
 
     /**
@@ -129,17 +231,87 @@ public abstract class ConcurrentMeshBuilder {
         return prioritizeNewFaces;
     }
 
+    private ForkJoinPool compilePool = ForkJoinPool.commonPool();
+
+    /**
+     * Set the pool that the compile stage runs its parallel work in. The output
+     * of the compile stage does not depend on the pool; a pool with a parallelism
+     * of <code>1</code> produces the same result as the common pool, only
+     * slower.
+     * 
+     * @param compilePool The pool to use. Defaults to the common pool.
+     */
+    public void setCompilePool(ForkJoinPool compilePool) {
+        this.compilePool = Objects.requireNonNull(compilePool);
+    }
+
+    /**
+     * Get the pool that the compile stage runs its parallel work in.
+     * @return The compile pool.
+     */
+    public ForkJoinPool getCompilePool() {
+        return compilePool;
+    }
+
+    private QuadMerger quadMerger;
+
+    /**
+     * Set a quad merger to run on the mesh as part of the compile stage, so
+     * every export contains the merged mesh. Merging does not change the mesh
+     * builder itself.
+     * 
+     * @param quadMerger The quad merger to use, or <code>null</code> to disable
+     *                   quad merging. Defaults to <code>null</code>.
+     */
+    public void setQuadMerger(QuadMerger quadMerger) {
+        this.quadMerger = quadMerger;
+    }
+
+    /**
+     * Get the quad merger the compile stage runs, if any.
+     * @return The quad merger, or <code>null</code> if quads aren't merged.
+     */
+    public QuadMerger getQuadMerger() {
+        return quadMerger;
+    }
+
+    /**
+     * Run the optional stages of the compile stage on a view.
+     */
+    private MeshView finishView(MeshView view) {
+        if (cullsFaces()) {
+            view = CompactedView.compact(view, compilePool);
+        }
+        view = vertexLayout.apply(view, compilePool);
+        QuadMerger merger = quadMerger;
+        return merger != null ? merger.merge(view, compilePool) : view;
+    }
+
+    /**
+     * Run a task inside the compile pool, so parallel streams and sorts started
+     * by it use that pool rather than the common pool.
+     */
+    <T> T inCompilePool(Supplier<T> task) {
+        ForkJoinPool pool = compilePool;
+        if (ForkJoinTask.getPool() == pool) {
+            return task.get();
+        }
+        return pool.submit(task::get).join();
+    }
+
     /**
      * A map of references pointing to indexed values within the mesh (vertices,
      * texcoords, or normals). Like the parent mesh, all methods here are
      * thread-safe.
      */
-    public class ReferenceMap<T> {
-        // Not all values must be in this set.
-        private final Map<T, IndexedReference<T>> set = new ConcurrentHashMap<>();
-        private final List<IndexedReference<T>> list = new LinkedList<>();
+    public abstract class ReferenceMap<T> {
+
+        // The deduplication counters of this map's attribute.
+        final MeshMetrics.AttributeMetrics counters;
 
-        private ReferenceMap() {};
+        ReferenceMap(MeshMetrics.AttributeMetrics counters) {
+            this.counters = counters;
+        }
 
         /**
          * Find the indexed reference pointing to a specific value and create it if it
@@ -148,20 +320,17 @@ public abstract class ConcurrentMeshBuilder {
          * @param value The value.
          * @return The indexed reference.
          */
-        public IndexedReference<T> getOrAdd(T value) {
-            lock.readLock().lock();
-            try {
-                return set.computeIfAbsent(value, v -> {
-                    synchronized(list) {
-                        int index = list.size();
-                        IndexedReference<T> ref = new IndexedReference<>(value, index);
-                        list.add(ref);
-                        return ref;
-                    }
-                });
-            } finally {
-                lock.readLock().unlock();
-            }
+        public abstract IndexedReference<T> getOrAdd(T value);
+
+        /**
+         * Find the index of a specific value and add it if it does not exist. Some
+         * implementations can do this without allocating a reference.
+         * 
+         * @param value The value.
+         * @return The value's index.
+         */
+        public int getOrAddIndex(T value) {
+            return getOrAdd(value).index();
         }
 
         /**
@@ -171,27 +340,262 @@ public abstract class ConcurrentMeshBuilder {
          * @param value The value.
          * @return The indexed reference.
          */
-        public IndexedReference<T> add(T value) {
+        public abstract IndexedReference<T> add(T value);
+
+        /**
+         * Get the number of values that have been indexed. Values that are being
+         * added concurrently may already be counted.
+         * 
+         * @return The number of indexed values.
+         */
+        public abstract int size();
+
+        /**
+         * Find or add the indices of many values at once. Called by
+         * <code>putFaces</code> while it holds whichever lock guards this map, so
+         * implementations can skip taking it for every value.
+         */
+        int[] resolve(T[] values, int count, boolean reuse) {
+            int[] indices = new int[count];
+            for (int i = 0; i < count; i++) {
+                indices[i] = reuse ? getOrAddIndex(values[i]) : add(values[i]).index();
+            }
+            return indices;
+        }
+
+        // Only safe to call for indices below a size that was read while holding the
+        // write lock.
+        abstract T get(int index);
+
+        // Same rules as get.
+        abstract float getComponent(int index, int component);
+
+        // Whether values are stored as floats, so get re-creates them every time.
+        boolean isColumnar() {
+            return false;
+        }
+    }
+
+    private class SharedReferenceMap<T> extends ReferenceMap<T> {
+        // Not all values must be in this set.
+        private final Map<T, IndexedReference<T>> set = new ConcurrentHashMap<>();
+        private final ChunkedArray<T> values = new ChunkedArray<>();
+        private final AtomicInteger nextIndex = new AtomicInteger();
+
+        SharedReferenceMap(MeshMetrics.AttributeMetrics counters) {
+            super(counters);
+        }
+
+        @Override
+        public IndexedReference<T> getOrAdd(T value) {
             lock.readLock().lock();
             try {
-                IndexedReference<T> ref;
-                synchronized(list) {
-                    int index = list.size();
-                    ref = new IndexedReference<>(value, index);
-                    list.add(ref);
-                }
+                return lookup(value);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
 
+        @Override
+        public IndexedReference<T> add(T value) {
+            lock.readLock().lock();
+            try {
+                IndexedReference<T> ref = append(value);
                 set.putIfAbsent(value, ref);
                 return ref;
             } finally {
                 lock.readLock().unlock();
             }
         }
+
+        @Override
+        public int size() {
+            return nextIndex.get();
+        }
+
+        @Override
+        int[] resolve(T[] values, int count, boolean reuse) {
+            int[] indices = new int[count];
+            if (reuse) {
+                for (int i = 0; i < count; i++) {
+                    indices[i] = lookup(values[i]).index();
+                }
+            } else {
+                // Unique values can have their whole index range reserved up front.
+                int start = nextIndex.getAndAdd(count);
+                for (int i = 0; i < count; i++) {
+                    T value = values[i];
+                    this.values.set(start + i, value);
+                    set.putIfAbsent(value, new IndexedReference<>(value, start + i));
+                    indices[i] = start + i;
+                }
+            }
+            return indices;
+        }
+
+        private IndexedReference<T> lookup(T value) {
+            counters.lookup();
+            return set.computeIfAbsent(value, this::appendMissing);
+        }
+
+        private IndexedReference<T> appendMissing(T value) {
+            counters.miss();
+            return append(value);
+        }
+
+        private IndexedReference<T> append(T value) {
+            int index = nextIndex.getAndIncrement();
+            values.set(index, value);
+            return new IndexedReference<>(value, index);
+        }
+
+        @Override
+        T get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        float getComponent(int index, int component) {
+            return ((FloatTuple) values.get(index)).get(component);
+        }
+    }
+
+    private interface Decoder<T> {
+        T decode(FloatAttributeTable table, int handle);
+    }
+
+    private class ColumnarReferenceMap<T extends FloatTuple> extends ReferenceMap<T> {
+        private final FloatAttributeTable table;
+        private final Decoder<T> decoder;
+        // If set, values are deduplicated within a tolerance rather than exactly.
+        private final WeldingGrid grid;
+
+        ColumnarReferenceMap(MeshMetrics.AttributeMetrics counters, int dimensions, float weldEpsilon,
+                Decoder<T> decoder) {
+            super(counters);
+            this.table = new FloatAttributeTable(dimensions);
+            this.decoder = decoder;
+            this.grid = weldEpsilon > 0 ? new WeldingGrid(table, weldEpsilon) : null;
+        }
+
+        // References hold the stored value, which differs from the given one if it
+        // was welded.
+        @Override
+        public IndexedReference<T> getOrAdd(T value) {
+            int index = getOrAddIndex(value);
+            return new IndexedReference<>(get(index), index);
+        }
+
+        @Override
+        public int getOrAddIndex(T value) {
+            lock.readLock().lock();
+            try {
+                return lookup(value);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public IndexedReference<T> add(T value) {
+            lock.readLock().lock();
+            try {
+                int index = grid != null ? grid.add(value) : table.add(value);
+                return new IndexedReference<>(get(index), index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return table.size();
+        }
+
+        @Override
+        int[] resolve(T[] values, int count, boolean reuse) {
+            int[] indices = new int[count];
+            for (int i = 0; i < count; i++) {
+                T value = values[i];
+                if (reuse) {
+                    indices[i] = lookup(value);
+                } else {
+                    indices[i] = grid != null ? grid.add(value) : table.add(value);
+                }
+            }
+            return indices;
+        }
+
+        private int lookup(T value) {
+            counters.lookup();
+            return grid != null ? grid.getOrAdd(value, counters.misses) : table.getOrAdd(value, counters.misses);
+        }
+
+        @Override
+        T get(int index) {
+            return decoder.decode(table, index);
+        }
+
+        @Override
+        float getComponent(int index, int component) {
+            return table.get(index, component);
+        }
+
+        @Override
+        boolean isColumnar() {
+            return true;
+        }
+    }
+
+    private final ReferenceMap<Vertex> vertices;
+    private final ReferenceMap<Vector2> texCoords;
+    private final ReferenceMap<Vector3> normals;
+
+    private final VertexLayout vertexLayout;
+    private final int exportDecimals;
+
+    protected ConcurrentMeshBuilder() {
+        this(new MeshBuilderSettings());
+    }
+
+    ConcurrentMeshBuilder(MeshBuilderSettings settings) {
+        boolean columnar = settings.isColumnarStorage();
+        vertexLayout = settings.getVertexLayout();
+        exportDecimals = settings.getExportDecimals();
+
+        if (columnar || settings.getVertexWeldEpsilon() > 0) {
+            int dimensions = vertexLayout.getStoredDimensions();
+            vertices = new ColumnarReferenceMap<>(metrics.getVertices(), dimensions, settings.getVertexWeldEpsilon(),
+                    (t, i) -> dimensions < 6 ? new Vertex(t.get(i, 0), t.get(i, 1), t.get(i, 2))
+                            : new Vertex(new Vector3(t.get(i, 0), t.get(i, 1), t.get(i, 2)),
+                                    new Vector3(t.get(i, 3), t.get(i, 4), t.get(i, 5))));
+        } else {
+            vertices = new SharedReferenceMap<>(metrics.getVertices());
+        }
+
+        if (columnar || settings.getTexCoordWeldEpsilon() > 0) {
+            texCoords = new ColumnarReferenceMap<>(metrics.getTexCoords(), 2, settings.getTexCoordWeldEpsilon(),
+                    (t, i) -> new Vector2(t.get(i, 0), t.get(i, 1)));
+        } else {
+            texCoords = new SharedReferenceMap<>(metrics.getTexCoords());
+        }
+
+        if (columnar || settings.getNormalWeldEpsilon() > 0) {
+            normals = new ColumnarReferenceMap<>(metrics.getNormals(), 3, settings.getNormalWeldEpsilon(),
+                    (t, i) -> new Vector3(t.get(i, 0), t.get(i, 1), t.get(i, 2)));
+        } else {
+            normals = new SharedReferenceMap<>(metrics.getNormals());
+        }
     }
 
-    private final ReferenceMap<Vertex> vertices = new ReferenceMap<>();
-    private final ReferenceMap<Vector2> texCoords = new ReferenceMap<>();
-    private final ReferenceMap<Vector3> normals = new ReferenceMap<>();
+    /**
+     * Get which vertex attributes this mesh stores and exports.
+     * @return The vertex layout.
+     * @see MeshBuilderSettings#vertexLayout(VertexLayout)
+     */
+    public VertexLayout getVertexLayout() {
+        return vertexLayout;
+    }
 
     /**
      * Get the mesh's vertices.
@@ -231,10 +635,80 @@ public abstract class ConcurrentMeshBuilder {
      * @return The face that ended up in the mesh. If overlap checking is enabled
      *         and the supplied face conflicts with an existing face, will return
      *         either the supplied face or the existing face based on
-     *         <code>prioritizeNewFaces()</code>
+     *         <code>prioritizeNewFaces()</code>. If opposing faces are culled and
+     *         the supplied face culled an existing face, returns
+     *         <code>null</code>; neither face is in the mesh then. The values
+     *         the culled faces used stay in the reference maps, but are left out
+     *         of compiled meshes if no other face uses them.
+     * @see MeshBuilderSettings#cullOpposingFaces(boolean)
      */
     public abstract Face putFace(Face face);
 
+    /**
+     * Add every face in a batch to this mesh. The builder's lock is only taken
+     * once, and all of the batch's vertices, texture coordinates and normals are
+     * indexed together before its faces are added. If overlap checking is
+     * enabled, each face is matched against existing faces just like
+     * <code>putFace</code>.
+     * <p>
+     * The batch is not modified, so it should be cleared before it's reused.
+     * 
+     * @param batch The faces to add.
+     * @throws IllegalArgumentException If the mesh uses compact faces and one of
+     *                                  the faces can't be stored in its arena. No
+     *                                  faces are added in this case.
+     */
+    public void putFaces(FaceBatch batch) throws IllegalArgumentException {
+        if (batch.isEmpty())
+            return;
+
+        lock.readLock().lock();
+        try {
+            int[] vertexIndices = getVertices().resolve(batch.getVertices(), batch.getNumVertices(),
+                    batch.isReuseVertices());
+            int[] texCoordIndices = getTexCoords().resolve(batch.getTexCoords(), batch.getNumTexCoords(), true);
+            int[] normalIndices = getNormals().resolve(batch.getNormals(), batch.getNumNormals(), true);
+            putFaces(batch, vertexIndices, texCoordIndices, normalIndices);
+            metrics.facesAdded.add(batch.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add the faces of a batch whose attributes have already been indexed. Called
+     * while holding the read lock.
+     */
+    void putFaces(FaceBatch batch, int[] vertexIndices, int[] texCoordIndices, int[] normalIndices) {
+        for (int i = 0; i < batch.size(); i++) {
+            putFace(batch.createFace(this, i, vertexIndices, texCoordIndices, normalIndices));
+        }
+    }
+
+    /**
+     * Whether any of this mesh's attributes are stored in columns. Values are
+     * re-created whenever they're read then, so faces only keep their indices.
+     * 
+     * @see IndexedFace
+     */
+    boolean usesIndexedFaces() {
+        return getVertices().isColumnar() || getTexCoords().isColumnar() || getNormals().isColumnar();
+    }
+
+    /**
+     * Get the arena that this mesh packs its faces into, if it was created with
+     * compact faces. Faces can be added to the arena directly by their indices,
+     * which is much cheaper than creating <code>Face</code> objects.
+     * 
+     * @return The face arena.
+     * @throws UnsupportedOperationException If this mesh doesn't use compact
+     *                                       faces.
+     * @see MeshBuilderSettings#compactFaces(boolean)
+     */
+    public FaceArena getFaceArena() throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("This mesh builder does not use compact faces.");
+    }
+
     /**
      * Check if this mesh has overlap checking enabled.
      * @return If overlap checking is enabled.
@@ -252,71 +726,596 @@ public abstract class ConcurrentMeshBuilder {
      * @return The compiled <code>Obj</code>
      */
     public Obj toObj(boolean sort) {
-        Obj obj = Objs.create();
+        return compile(sort, this::createObj);
+    }
+
+    /**
+     * Compile this mesh builder into a read-only view and pass it to a reader.
+     * This lets exporters read the mesh directly instead of copying it into an
+     * <code>Obj</code> first. All other methods in the mesh builder will block
+     * until the reader returns.
+     * 
+     * @param <R>    The reader's return type.
+     * @param <E>    The type of exception the reader may throw.
+     * @param sort   If true, faces will be sorted by their material and
+     *               subsequently their group.
+     * @param reader The reader.
+     * @return The value returned by the reader.
+     * @throws E If the reader throws an exception.
+     */
+    public <R, E extends Exception> R compile(boolean sort, MeshView.Reader<R, E> reader) throws E {
         lock.writeLock().lock();
         try {
-
-            for (IndexedReference<Vertex> ref : vertices.list) {
-                obj.addVertex(ref.value());
-            }
-
-            for (IndexedReference<Vector2> ref : texCoords.list) {
-                obj.addTexCoord(ref.value());
-            }
-
-            for (IndexedReference<Vector3> ref : normals.list) {
-                obj.addNormal(ref.value());
-            }
-
-            Collection<Face> faces = getFaces();
-
-            if (sort) {
-                List<Face> sorted = new ArrayList<>(faces);
-                sorted.sort(Face::compareTo);
-                faces = sorted;
-            }
-
-            for (Face face : faces) {
-                obj.setActiveGroupNames(face.getGroups());
-                obj.setActiveMaterialGroupName(face.getMaterial());
-
-                var vertices = face.getVertices();
-                int[] vertexIndices = new int[vertices.length];
-
-                for (int i = 0; i < vertexIndices.length; i++) {
-                    vertexIndices[i] = vertices[i].index();
-                }
-
-                var texCoords = face.getTexCoords();
-                int[] texCoordIndices = null;
-
-                if (texCoords != null) {
-                    texCoordIndices = new int[texCoords.length];
-                    for (int i = 0; i < texCoords.length; i++) {
-                        texCoordIndices[i] = texCoords[i].index();
-                    }
-                }
-
-                var normals = face.getNormals();
-                int[] normalIndices = null;
-
-                if (normals != null) {
-                    normalIndices = new int[normals.length];
-                    for (int i = 0; i < normals.length; i++) {
-                        normalIndices[i] = normals[i].index();
-                    }
-                }
-
-                obj.addFace(vertexIndices, texCoordIndices, normalIndices);
+            MeshMetrics.CompileTimer timer = metrics.startCompile(sort, false);
+            MeshView captured = createView(sort, timer);
+            try {
+                MeshView view = finishView(captured);
+                timer.finish(view);
+                return reader.read(view);
+            } finally {
+                releaseView(captured);
             }
-
-            return obj;
         } finally {
             lock.writeLock().unlock();
         }
     }
-    
-    
+
+    /**
+     * Compile a snapshot of this mesh and pass it to a reader. The snapshot
+     * contains every face (and value) that was added before this method was
+     * called. Unlike <code>compile</code>, other threads are only blocked while
+     * the snapshot point is being marked, and may keep building the mesh while the
+     * snapshot is compiled and read.
+     * <p>
+     * Faces are logged in the order they're added, so for most builders marking
+     * the snapshot point takes constant time. Overlap-checking builders have to
+     * copy their face table instead, as existing faces may be replaced.
+     * 
+     * @param <R>    The reader's return type.
+     * @param <E>    The type of exception the reader may throw.
+     * @param sort   If true, faces will be sorted by their material and
+     *               subsequently their group.
+     * @param reader The reader.
+     * @return The value returned by the reader.
+     * @throws E If the reader throws an exception.
+     */
+    public <R, E extends Exception> R snapshot(boolean sort, MeshView.Reader<R, E> reader) throws E {
+        MeshMetrics.CompileTimer timer = metrics.startCompile(sort, true);
+        Supplier<MeshView> supplier;
+        lock.writeLock().lock();
+        try {
+            supplier = captureView(sort, timer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        MeshView captured = supplier.get();
+        try {
+            MeshView view = finishView(captured);
+            timer.finish(view);
+            return reader.read(view);
+        } finally {
+            releaseView(captured);
+        }
+    }
+
+    /**
+     * Compile a snapshot of this mesh into an <code>Obj</code> without blocking
+     * other threads for the duration of the compile.
+     * 
+     * @param sort If true, faces will be sorted by their material and
+     *             subsequently their group.
+     * @return The compiled <code>Obj</code>
+     * @see #snapshot(boolean, MeshView.Reader)
+     */
+    public Obj snapshotObj(boolean sort) {
+        return snapshot(sort, this::createObj);
+    }
+
+    /**
+     * Write this mesh as an OBJ file without building an intermediate
+     * <code>Obj</code>. Float components are rounded as configured by
+     * {@link MeshBuilderSettings#exportDecimals(int)}. All other methods in the
+     * mesh builder will block until the write is complete.
+     * 
+     * @param channel The channel to write to. Will not be closed.
+     * @param sort    If true, faces will be sorted by their material and
+     *                subsequently their group.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeObj(WritableByteChannel channel, boolean sort) throws IOException {
+        ObjStreamWriter writer = new ObjStreamWriter().decimals(exportDecimals);
+        compile(sort, view -> {
+            writer.write(view, channel);
+            return null;
+        });
+    }
+
+    /**
+     * Write this mesh to an OBJ file without building an intermediate
+     * <code>Obj</code>. All other methods in the mesh builder will block until
+     * the write is complete.
+     * 
+     * @param path The file to write to. Will be overwritten if it exists.
+     * @param sort If true, faces will be sorted by their material and
+     *             subsequently their group.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeObj(Path path, boolean sort) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeObj(channel, sort);
+        }
+    }
+
+    /**
+     * Write this mesh to a gzipped OBJ file. Blocks of the file are compressed
+     * by tasks in the compile pool while the rest of it is being written. All
+     * other methods in the mesh builder will block until the write is complete.
+     * 
+     * @param path The file to write to. Will be overwritten if it exists.
+     * @param sort If true, faces will be sorted by their material and
+     *             subsequently their group.
+     * @throws IOException If an I/O error occurs.
+     * @see ParallelGzipChannel
+     */
+    public void writeObjGzip(Path path, boolean sort) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+                ParallelGzipChannel channel = new ParallelGzipChannel(file, getCompilePool())) {
+            writeObj(channel, sort);
+        }
+    }
+
+    /**
+     * Write this mesh as a binary glTF (GLB) file, with one triangulated
+     * primitive per material. Faces are grouped in the compile pool. All other
+     * methods in the mesh builder will block until the write is complete.
+     *
+     * @param channel The channel to write to. Will not be closed.
+     * @param sort    If true, faces will be sorted by their material and
+     *                subsequently their group.
+     * @throws IOException If an I/O error occurs.
+     * @see GlbWriter
+     */
+    public void writeGlb(WritableByteChannel channel, boolean sort) throws IOException {
+        GlbWriter writer = new GlbWriter();
+        compile(sort, view -> {
+            writer.write(view, channel, getCompilePool());
+            return null;
+        });
+    }
+
+    /**
+     * Write this mesh to a binary glTF (GLB) file, with one triangulated
+     * primitive per material. All other methods in the mesh builder will block
+     * until the write is complete.
+     *
+     * @param path The file to write to. Will be overwritten if it exists.
+     * @param sort If true, faces will be sorted by their material and
+     *             subsequently their group.
+     * @throws IOException If an I/O error occurs.
+     * @see GlbWriter
+     */
+    public void writeGlb(Path path, boolean sort) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeGlb(channel, sort);
+        }
+    }
+
+    /**
+     * Write this mesh as a binary little-endian PLY file. Materials and groups
+     * are dropped. All other methods in the mesh builder will block until the
+     * write is complete.
+     *
+     * @param channel The channel to write to. Will not be closed.
+     * @param sort    If true, faces will be sorted by their material and
+     *                subsequently their group.
+     * @throws IOException If an I/O error occurs.
+     * @see PlyWriter
+     */
+    public void writePly(WritableByteChannel channel, boolean sort) throws IOException {
+        PlyWriter writer = new PlyWriter();
+        compile(sort, view -> {
+            writer.write(view, channel);
+            return null;
+        });
+    }
+
+    /**
+     * Write this mesh to a binary little-endian PLY file. Materials and groups
+     * are dropped. All other methods in the mesh builder will block until the
+     * write is complete.
+     *
+     * @param path The file to write to. Will be overwritten if it exists.
+     * @param sort If true, faces will be sorted by their material and
+     *             subsequently their group.
+     * @throws IOException If an I/O error occurs.
+     * @see PlyWriter
+     */
+    public void writePly(Path path, boolean sort) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writePly(channel, sort);
+        }
+    }
+
+    /**
+     * Write this mesh as several OBJ files, one for every partition of its faces.
+     * Each partition only contains the vertices, texture coordinates and normals
+     * its faces use, and is written by its own task in the compile pool. All
+     * other methods in the mesh builder will block until the write is complete.
+     * 
+     * @param directory   The directory to write the files to. Existing files
+     *                    are overwritten.
+     * @param partitioner Decides which partition each face goes in.
+     * @param sort        If true, faces will be sorted by their material and
+     *                    subsequently their group.
+     * @return The file of every partition, sorted by partition name.
+     * @throws IOException If an I/O error occurs.
+     * @see FacePartitioner#byMaterial()
+     * @see FacePartitioner#byGrid(float)
+     */
+    public SortedMap<String, Path> writeObjPartitions(Path directory, FacePartitioner partitioner, boolean sort)
+            throws IOException {
+        PartitionedObjWriter writer = new PartitionedObjWriter(partitioner).decimals(exportDecimals);
+        return compile(sort, view -> writer.write(view, directory, getCompilePool()));
+    }
+
+    /**
+     * Create a view of the contents of this mesh. Called while holding the write
+     * lock.
+     * 
+     * @param sort  Whether to sort faces by their material and group.
+     * @param timer Times the phases of the compile.
+     * @return The mesh view.
+     */
+    MeshView createView(boolean sort, MeshMetrics.CompileTimer timer) {
+        return captureView(sort, timer).get();
+    }
+
+    /**
+     * Mark a snapshot point. Called while holding the write lock; the returned
+     * supplier creates a view of everything added before the snapshot point, and
+     * may be called after the lock is released.
+     * 
+     * @param sort  Whether to sort faces by their material and group.
+     * @param timer Times the phases of the compile.
+     * @return A supplier of the mesh view.
+     */
+    Supplier<MeshView> captureView(boolean sort, MeshMetrics.CompileTimer timer) {
+        int numVertices = vertices.size();
+        int numTexCoords = texCoords.size();
+        int numNormals = normals.size();
+        long captureStart = System.nanoTime();
+        Supplier<Face[]> faceSupplier = captureFaces();
+        timer.record(Phase.FACES, captureStart);
+
+        return () -> {
+            long facesStart = System.nanoTime();
+            Face[] faces = faceSupplier.get();
+            timer.record(Phase.FACES, facesStart);
+
+            if (sort && !capturesSortedFaces()) {
+                long sortStart = System.nanoTime();
+                // Stable, so equal faces keep the order of getFaces() like a sequential sort.
+                inCompilePool(() -> {
+                    Arrays.parallelSort(faces, Face.order());
+                    return null;
+                });
+                timer.record(Phase.SORT, sortStart);
+            }
+            return new BuilderView(numVertices, numTexCoords, numNormals, faces);
+        };
+    }
+
+    /**
+     * Release anything a view from <code>captureView</code> holds on to. Called
+     * once the view's reader has returned, as views are only valid until then.
+     * By default, views don't hold anything.
+     * 
+     * @param view The captured view.
+     */
+    void releaseView(MeshView view) {
+    }
+
+    /**
+     * Capture the faces in this mesh. Follows the same rules as
+     * <code>captureView</code>. By default, the faces are copied immediately.
+     * 
+     * @return A supplier of a new array of the captured faces.
+     */
+    Supplier<Face[]> captureFaces() {
+        Face[] faces = getFaces().toArray(Face[]::new);
+        return () -> faces;
+    }
+
+    /**
+     * Whether faces can be removed after their values were added, which leaves
+     * values that no face uses. Views of such builders are compacted before
+     * they're read.
+     */
+    boolean cullsFaces() {
+        return false;
+    }
+
+    /**
+     * Whether <code>captureFaces</code> already returns faces in sorted order,
+     * so the compile stage can skip sorting them.
+     */
+    boolean capturesSortedFaces() {
+        return false;
+    }
+
+    /**
+     * An append-only log of faces. A face is only guaranteed to be set once its
+     * <code>add</code> call has returned, so faces should be added while holding
+     * the read lock.
+     */
+    private static class FaceLog {
+        private final ChunkedArray<Face> faces = new ChunkedArray<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        void add(Face face) {
+            faces.set(count.getAndIncrement(), face);
+        }
+
+        void addAll(Face[] faces, int fromIndex, int toIndex) {
+            int start = count.getAndAdd(toIndex - fromIndex);
+            for (int i = fromIndex; i < toIndex; i++) {
+                this.faces.set(start + i - fromIndex, faces[i]);
+            }
+        }
+
+        /**
+         * Get a fixed-size view of every face that has been added so far.
+         */
+        List<Face> view() {
+            int size = count.get();
+            return new AbstractList<>() {
+                @Override
+                public Face get(int index) {
+                    Objects.checkIndex(index, size);
+                    Face face;
+                    // The face may still be in the middle of being added.
+                    while ((face = faces.get(index)) == null) {
+                        Thread.onSpinWait();
+                    }
+                    return face;
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+
+    /**
+     * Pack a face's material ID and group set ID into a key. Faces with equal
+     * keys are equal according to <code>Face.compareTo</code>, but keys have to
+     * be ranked with a {@link FaceOrder} to be sorted.
+     */
+    static long faceKey(int materialId, int groupSetId) {
+        return ((long) materialId << 32) | (groupSetId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The attribute part of a view of this builder.
+     */
+    abstract class AttributeView implements MeshView {
+        private final int numVertices;
+        private final int numTexCoords;
+        private final int numNormals;
+
+        AttributeView(int numVertices, int numTexCoords, int numNormals) {
+            this.numVertices = numVertices;
+            this.numTexCoords = numTexCoords;
+            this.numNormals = numNormals;
+        }
+
+        @Override
+        public int getNumVertices() {
+            return numVertices;
+        }
+
+        @Override
+        public Vertex getVertex(int index) {
+            return getVertices().get(index);
+        }
+
+        @Override
+        public int getVertexDimensions() {
+            return vertexLayout.getStoredDimensions();
+        }
+
+        @Override
+        public float getVertexComponent(int index, int component) {
+            return getVertices().getComponent(index, component);
+        }
+
+        @Override
+        public int getNumTexCoords() {
+            return numTexCoords;
+        }
+
+        @Override
+        public Vector2 getTexCoord(int index) {
+            return getTexCoords().get(index);
+        }
+
+        @Override
+        public float getTexCoordComponent(int index, int component) {
+            return getTexCoords().getComponent(index, component);
+        }
+
+        @Override
+        public int getNumNormals() {
+            return numNormals;
+        }
+
+        @Override
+        public Vector3 getNormal(int index) {
+            return getNormals().get(index);
+        }
+
+        @Override
+        public float getNormalComponent(int index, int component) {
+            return getNormals().getComponent(index, component);
+        }
+    }
+
+    private class BuilderView extends AttributeView {
+        private final Face[] faces;
+
+        BuilderView(int numVertices, int numTexCoords, int numNormals, Face[] faces) {
+            super(numVertices, numTexCoords, numNormals);
+            this.faces = faces;
+        }
+
+        @Override
+        public int getNumFaces() {
+            return faces.length;
+        }
+
+        @Override
+        public <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor)
+                throws E {
+            Objects.checkFromToIndex(fromIndex, toIndex, faces.length);
+            int[] vertexIndices = new int[4];
+            int[] texCoordIndices = new int[4];
+            int[] normalIndices = new int[4];
+
+            for (int i = fromIndex; i < toIndex; i++) {
+                Face face = faces[i];
+                int count = face.getVertexCount();
+                if (count > vertexIndices.length) {
+                    vertexIndices = new int[count];
+                    texCoordIndices = new int[count];
+                    normalIndices = new int[count];
+                }
+
+                for (int v = 0; v < count; v++) {
+                    vertexIndices[v] = face.getVertexIndex(v);
+                    if (face.hasTexCoords()) {
+                        texCoordIndices[v] = face.getTexCoordIndex(v);
+                    }
+                    if (face.hasNormals()) {
+                        normalIndices[v] = face.getNormalIndex(v);
+                    }
+                }
+
+                visitor.visit(count, vertexIndices,
+                        face.hasTexCoords() ? texCoordIndices : null,
+                        face.hasNormals() ? normalIndices : null,
+                        face.getMaterial(), Face.groupSet(face.getGroupSetId()));
+            }
+        }
+    }
+
+    private class ArenaView extends AttributeView {
+        private final FaceArena arena;
+        private final int[] handles;
+
+        ArenaView(int numVertices, int numTexCoords, int numNormals, FaceArena arena, int[] handles) {
+            super(numVertices, numTexCoords, numNormals);
+            this.arena = arena;
+            this.handles = handles;
+        }
+
+        @Override
+        public int getNumFaces() {
+            return handles.length;
+        }
+
+        @Override
+        public <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor)
+                throws E {
+            Objects.checkFromToIndex(fromIndex, toIndex, handles.length);
+            int[] vertexIndices = new int[4];
+            int[] texCoordIndices = new int[4];
+            int[] normalIndices = new int[4];
+
+            for (int i = fromIndex; i < toIndex; i++) {
+                int face = handles[i];
+                int count = arena.getVertexCount(face);
+                if (count > vertexIndices.length) {
+                    vertexIndices = new int[count];
+                    texCoordIndices = new int[count];
+                    normalIndices = new int[count];
+                }
+
+                int header = arena.read(face, vertexIndices, texCoordIndices, normalIndices);
+                visitor.visit(count, vertexIndices,
+                        FaceArena.headerHasTexCoords(header) ? texCoordIndices : null,
+                        FaceArena.headerHasNormals(header) ? normalIndices : null,
+                        Face.materialName(arena.getMaterialId(face)), Face.groupSet(arena.getGroupSetId(face)));
+            }
+        }
+    }
+
+    // Number of faces each compile task converts at once.
+    private static final int FACE_CHUNK_SIZE = 4096;
+
+    private record PendingFace(ObjFace face, String material, List<String> groups) {
+    }
+
+    /**
+     * Copy a mesh view into a new <code>Obj</code>. The face index arrays are
+     * built in parallel and then added to the <code>Obj</code> in order.
+     */
+    private Obj createObj(MeshView view) {
+        Obj obj = Objs.create();
+
+        int vertexCount = view.getNumVertices();
+        boolean colors = view.getVertexDimensions() >= 6;
+        for (int i = 0; i < vertexCount; i++) {
+            Vertex vertex = view.getVertex(i);
+            obj.addVertex(colors ? vertex : vertex.pos());
+        }
+
+        int texCoordCount = view.getNumTexCoords();
+        for (int i = 0; i < texCoordCount; i++) {
+            obj.addTexCoord(view.getTexCoord(i));
+        }
+
+        int normalCount = view.getNumNormals();
+        for (int i = 0; i < normalCount; i++) {
+            obj.addNormal(view.getNormal(i));
+        }
+
+        int faceCount = view.getNumFaces();
+        int chunkCount = (faceCount + FACE_CHUNK_SIZE - 1) / FACE_CHUNK_SIZE;
+        PendingFace[][] chunks = inCompilePool(() -> IntStream.range(0, chunkCount).parallel()
+                .mapToObj(chunk -> createFaces(view, chunk * FACE_CHUNK_SIZE,
+                        Math.min(faceCount, (chunk + 1) * FACE_CHUNK_SIZE)))
+                .toArray(PendingFace[][]::new));
+
+        for (PendingFace[] chunk : chunks) {
+            for (PendingFace face : chunk) {
+                obj.setActiveGroupNames(face.groups());
+                obj.setActiveMaterialGroupName(face.material());
+                obj.addFace(face.face());
+            }
+        }
+
+        return obj;
+    }
+
+    private static PendingFace[] createFaces(MeshView view, int fromIndex, int toIndex) {
+        PendingFace[] faces = new PendingFace[toIndex - fromIndex];
+        int[] next = new int[1];
+        view.forEachFace(fromIndex, toIndex, (count, vertices, texCoords, normals, material, groups) -> {
+            ObjFace face = ObjFaces.create(Arrays.copyOf(vertices, count),
+                    texCoords != null ? Arrays.copyOf(texCoords, count) : null,
+                    normals != null ? Arrays.copyOf(normals, count) : null);
+            faces[next[0]++] = new PendingFace(face, material, groups);
+        });
+        return faces;
+    }
+    
+    
     /**
      * Compile this mesh builder into an <code>Obj</code>. Depending on the
      * complexity of the mesh, this method could take quite some time. Additionally,
@@ -329,11 +1328,15 @@ public abstract class ConcurrentMeshBuilder {
     }
 
     private static class SimpleConcurrentMeshBuilder extends ConcurrentMeshBuilder {
-        private final Queue<Face> faces = new ConcurrentLinkedQueue<>();
+        private final FaceLog faces = new FaceLog();
+
+        SimpleConcurrentMeshBuilder(MeshBuilderSettings settings) {
+            super(settings);
+        }
 
         @Override
         public Collection<Face> getFaces() {
-            return Collections.unmodifiableCollection(faces);
+            return faces.view();
         }
 
         @Override
@@ -344,9 +1347,259 @@ public abstract class ConcurrentMeshBuilder {
             } finally {
                 lock.readLock().unlock();
             }
+            metrics.facesAdded.increment();
             return face;
         }
 
+        @Override
+        void putFaces(FaceBatch batch, int[] vertexIndices, int[] texCoordIndices, int[] normalIndices) {
+            Face[] created = new Face[batch.size()];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = batch.createFace(this, i, vertexIndices, texCoordIndices, normalIndices);
+            }
+            faces.addAll(created, 0, created.length);
+        }
+
+        @Override
+        Supplier<Face[]> captureFaces() {
+            // No faces are being added while the write lock is held, so every face
+            // below the count is already set.
+            Collection<Face> captured = getFaces();
+            return () -> captured.toArray(Face[]::new);
+        }
+
+        @Override
+        public boolean isOverlapChecking() {
+            return false;
+        }
+    }
+
+    private static class BucketedMeshBuilder extends ConcurrentMeshBuilder {
+        // Faces are bucketed by their material ID and group set ID.
+        private final Map<Long, FaceLog> buckets = new ConcurrentHashMap<>();
+
+        BucketedMeshBuilder(MeshBuilderSettings settings) {
+            super(settings);
+        }
+
+        private static long bucketKey(Face face) {
+            return faceKey(face.getMaterialId(), face.getGroupSetId());
+        }
+
+        @Override
+        public Collection<Face> getFaces() {
+            List<Face> faces = new ArrayList<>();
+            for (List<Face> bucket : captureBuckets()) {
+                faces.addAll(bucket);
+            }
+            return Collections.unmodifiableList(faces);
+        }
+
+        @Override
+        public Face putFace(Face face) {
+            lock.readLock().lock();
+            try {
+                buckets.computeIfAbsent(bucketKey(face), k -> new FaceLog()).add(face);
+            } finally {
+                lock.readLock().unlock();
+            }
+            metrics.facesAdded.increment();
+            return face;
+        }
+
+        @Override
+        void putFaces(FaceBatch batch, int[] vertexIndices, int[] texCoordIndices, int[] normalIndices) {
+            Face[] created = new Face[batch.size()];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = batch.createFace(this, i, vertexIndices, texCoordIndices, normalIndices);
+            }
+
+            // Generators usually add long runs of faces with the same material.
+            int start = 0;
+            while (start < created.length) {
+                long key = bucketKey(created[start]);
+                int end = start + 1;
+                while (end < created.length && bucketKey(created[end]) == key) {
+                    end++;
+                }
+                buckets.computeIfAbsent(key, k -> new FaceLog()).addAll(created, start, end);
+                start = end;
+            }
+        }
+
+        /**
+         * Get a view of every bucket, in key order.
+         */
+        private List<List<Face>> captureBuckets() {
+            Long[] keys = buckets.keySet().toArray(Long[]::new);
+            FaceOrder order = Face.order();
+            Arrays.sort(keys, Comparator.comparingLong(order::key));
+
+            List<List<Face>> views = new ArrayList<>(keys.length);
+            for (Long key : keys) {
+                views.add(buckets.get(key).view());
+            }
+            return views;
+        }
+
+        @Override
+        Supplier<Face[]> captureFaces() {
+            // Only the bucket sizes are captured while holding the write lock.
+            List<List<Face>> captured = captureBuckets();
+            return () -> {
+                int size = 0;
+                int[] offsets = new int[captured.size()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = size;
+                    size += captured.get(i).size();
+                }
+
+                Face[] faces = new Face[size];
+                inCompilePool(() -> {
+                    IntStream.range(0, offsets.length).parallel().forEach(i -> {
+                        int offset = offsets[i];
+                        for (Face face : captured.get(i)) {
+                            faces[offset++] = face;
+                        }
+                    });
+                    return null;
+                });
+                return faces;
+            };
+        }
+
+        @Override
+        boolean capturesSortedFaces() {
+            return true;
+        }
+
+        @Override
+        public boolean isOverlapChecking() {
+            return false;
+        }
+    }
+
+    private static class CompactMeshBuilder extends ConcurrentMeshBuilder {
+        private final FaceArena arena = new FaceArena(lock.readLock());
+
+        CompactMeshBuilder(MeshBuilderSettings settings) {
+            super(settings);
+        }
+
+        @Override
+        public FaceArena getFaceArena() {
+            return arena;
+        }
+
+        @Override
+        public Collection<Face> getFaces() {
+            int[] handles = arena.collectHandles(arena.limit());
+            List<Face> faces = new ArrayList<>(handles.length);
+            for (int handle : handles) {
+                faces.add(toFace(handle));
+            }
+            return Collections.unmodifiableList(faces);
+        }
+
+        @Override
+        public Face putFace(Face face) {
+            arena.add(face);
+            metrics.facesAdded.increment();
+            return face;
+        }
+
+        @Override
+        void putFaces(FaceBatch batch, int[] vertexIndices, int[] texCoordIndices, int[] normalIndices) {
+            for (int i = 0; i < batch.size(); i++) {
+                FaceArena.checkVertexCount(batch.getVertexCount(i));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                arena.write(batch.getVertexCount(i), vertexIndices, batch.getVertexOffset(i), texCoordIndices,
+                        batch.getTexCoordOffset(i), normalIndices, batch.getNormalOffset(i),
+                        batch.getMaterialId(i), batch.getGroupSetId(i));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Face toFace(int handle) {
+            int count = arena.getVertexCount(handle);
+            int[] vertexIndices = new int[count];
+            int[] texCoordIndices = new int[count];
+            int[] normalIndices = new int[count];
+            int header = arena.read(handle, vertexIndices, texCoordIndices, normalIndices);
+
+            IndexedReference<Vertex>[] vertexRefs = new IndexedReference[count];
+            IndexedReference<Vector2>[] texCoordRefs = FaceArena.headerHasTexCoords(header)
+                    ? new IndexedReference[count]
+                    : null;
+            IndexedReference<Vector3>[] normalRefs = FaceArena.headerHasNormals(header)
+                    ? new IndexedReference[count]
+                    : null;
+
+            for (int i = 0; i < count; i++) {
+                vertexRefs[i] = new IndexedReference<>(getVertices().get(vertexIndices[i]), vertexIndices[i]);
+                if (texCoordRefs != null) {
+                    texCoordRefs[i] = new IndexedReference<>(getTexCoords().get(texCoordIndices[i]),
+                            texCoordIndices[i]);
+                }
+                if (normalRefs != null) {
+                    normalRefs[i] = new IndexedReference<>(getNormals().get(normalIndices[i]), normalIndices[i]);
+                }
+            }
+            return Face.create(vertexRefs, texCoordRefs, normalRefs, arena.getMaterialId(handle),
+                    arena.getGroupSetId(handle));
+        }
+
+        @Override
+        Supplier<MeshView> captureView(boolean sort, MeshMetrics.CompileTimer timer) {
+            int numVertices = getVertices().size();
+            int numTexCoords = getTexCoords().size();
+            int numNormals = getNormals().size();
+            int limit = arena.limit();
+
+            return () -> {
+                long facesStart = System.nanoTime();
+                int[] handles = arena.collectHandles(limit);
+                timer.record(Phase.FACES, facesStart);
+                if (sort) {
+                    long sortStart = System.nanoTime();
+                    handles = sortHandles(handles);
+                    timer.record(Phase.SORT, sortStart);
+                }
+                return new ArenaView(numVertices, numTexCoords, numNormals, arena, handles);
+            };
+        }
+
+        /**
+         * Stable counting sort of face handles by their material and group set.
+         * There are usually only a handful of distinct keys, so this is linear.
+         */
+        private int[] sortHandles(int[] handles) {
+            long[] keys = new long[handles.length];
+            FaceOrder order = Face.order();
+            long[] distinct = inCompilePool(() -> {
+                IntStream.range(0, handles.length).parallel().forEach(i -> keys[i] = order.key(
+                        arena.getMaterialId(handles[i]), arena.getGroupSetId(handles[i])));
+                return Arrays.stream(keys).parallel().distinct().sorted().toArray();
+            });
+
+            int[] ranks = new int[handles.length];
+            int[] offsets = new int[distinct.length + 1];
+            for (int i = 0; i < handles.length; i++) {
+                ranks[i] = Arrays.binarySearch(distinct, keys[i]);
+                offsets[ranks[i] + 1]++;
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+
+            int[] sorted = new int[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                sorted[offsets[ranks[i]]++] = handles[i];
+            }
+            return sorted;
+        }
+
         @Override
         public boolean isOverlapChecking() {
             return false;
@@ -354,20 +1607,37 @@ public abstract class ConcurrentMeshBuilder {
     }
 
     private static class OverlapCheckingMeshBuilder extends ConcurrentMeshBuilder {
-        private final Map<UnorderedArrayHandle<IndexedReference<Vertex>>, Face> faces = new ConcurrentHashMap<>();
+        private final OverlapTable faces;
+        private final boolean cullOpposing;
+
+        OverlapCheckingMeshBuilder(MeshBuilderSettings settings) {
+            super(settings);
+            cullOpposing = settings.isCullOpposingFaces();
+            faces = new OverlapTable(cullOpposing, metrics);
+        }
 
         @Override
         public Collection<Face> getFaces() {
-            return Collections.unmodifiableCollection(faces.values());
+            return Collections.unmodifiableList(faces.values());
         }
 
+        /**
+         * Add a face to this mesh, matching it against existing faces first.
+         * 
+         * @param face     Face to add.
+         * @param override If the face overlaps an existing face, whether to
+         *                 replace it.
+         * @return The face that ended up in the mesh, or <code>null</code> if the
+         *         face culled an opposing face, in which case neither is in the
+         *         mesh.
+         */
         public Face putFace(Face face, boolean override) {
-            if (override) {
-                faces.put(new UnorderedArrayHandle<>(face.getVertices()), face);
-                return face;
-            } else {
-                Face prev = faces.putIfAbsent(new UnorderedArrayHandle<>(face.getVertices()), face);
-                return prev != null ? prev : face;
+            lock.readLock().lock();
+            try {
+                metrics.facesAdded.increment();
+                return faces.put(face, override);
+            } finally {
+                lock.readLock().unlock();
             }
         }
 
@@ -376,9 +1646,21 @@ public abstract class ConcurrentMeshBuilder {
             return putFace(face, prioritizeNewFaces);
         }
 
+        @Override
+        void putFaces(FaceBatch batch, int[] vertexIndices, int[] texCoordIndices, int[] normalIndices) {
+            for (int i = 0; i < batch.size(); i++) {
+                faces.put(batch.createFace(this, i, vertexIndices, texCoordIndices, normalIndices), prioritizeNewFaces);
+            }
+        }
+
         @Override
         public boolean isOverlapChecking() {
             return true;
         }
+
+        @Override
+        boolean cullsFaces() {
+            return cullOpposing;
+        }
     }
 }
@@ -3,36 +3,77 @@ package com.igrium.meshlib;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import com.igrium.meshlib.math.Vector2;
 import com.igrium.meshlib.math.Vector3;
+import com.igrium.meshlib.util.InternTable;
 
 /**
  * A face within a concurrent mesh. This implementation is mutable. Although
  * mutability methods on this face are not thread-safe, they can be added to the
  * mesh builder in parallel.
+ * <p>
+ * Materials and group sets are interned into global tables and only stored on
+ * the face as IDs, so any number of faces can share them cheaply. IDs are
+ * handed out in the order materials and group sets are first used, which
+ * depends on thread timing, so they're never used to order faces directly.
  */
 public class Face implements Comparable<Face> {
 
+    /**
+     * The material ID of faces without a material.
+     */
+    public static final int NO_MATERIAL = -1;
+
+    private static final InternTable<String> MATERIALS = new InternTable<>();
+    private static final InternTable<List<String>> GROUP_SETS = new InternTable<>();
+
+    private static final Comparator<String> MATERIAL_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    /**
+     * Orders group sets by their alphabetized groups, then by the order the
+     * groups were given in, so that every distinct group set has its own place.
+     */
+    private static final Comparator<List<String>> GROUP_SET_ORDER = (a, b) -> {
+        String[] sortedA = a.toArray(String[]::new);
+        String[] sortedB = b.toArray(String[]::new);
+        Arrays.sort(sortedA);
+        Arrays.sort(sortedB);
+        int val = Arrays.compare(sortedA, sortedB);
+        return val != 0 ? val : Arrays.compare(a.toArray(String[]::new), b.toArray(String[]::new));
+    };
+
     private final IndexedReference<Vertex>[] vertices;
 
     private final IndexedReference<Vector2>[] texCoords;
     
     private final IndexedReference<Vector3>[] normals;
 
-    private String material;
+    private int materialId;
     
-    private final List<String> groups;
+    private int groupSetId;
 
-    private Face(IndexedReference<Vertex>[] vertices,
+    Face(IndexedReference<Vertex>[] vertices,
             IndexedReference<Vector2>[] texCoords, IndexedReference<Vector3>[] normals, String material,
             Collection<? extends String> groups) {
         this.vertices = vertices;
         this.texCoords = texCoords;
         this.normals = normals;
-        this.material = material;
-        this.groups = groups != null ? new ArrayList<>(groups) : null;
+        setMaterial(material);
+        setGroups(groups);
+    }
+
+    Face(IndexedReference<Vertex>[] vertices,
+            IndexedReference<Vector2>[] texCoords, IndexedReference<Vector3>[] normals, int materialId,
+            int groupSetId) {
+        this.vertices = vertices;
+        this.texCoords = texCoords;
+        this.normals = normals;
+        this.materialId = materialId;
+        this.groupSetId = groupSetId;
     }
 
     /**
@@ -62,6 +103,69 @@ public class Face implements Comparable<Face> {
         return new Face(vertices, texCoords, normals, material, groups);
     }
 
+    /**
+     * Create a face instance from an already-interned material and group set.
+     * Arrays are not validated.
+     */
+    static Face create(IndexedReference<Vertex>[] vertices, IndexedReference<Vector2>[] texCoords,
+            IndexedReference<Vector3>[] normals, int materialId, int groupSetId) {
+        return new Face(vertices, texCoords, normals, materialId, groupSetId);
+    }
+
+    /**
+     * Get the ID of a material, as returned by <code>getMaterialId</code>.
+     * 
+     * @param material Material name. May be <code>null</code>.
+     * @return The material ID, or <code>NO_MATERIAL</code> if the material is
+     *         <code>null</code>.
+     */
+    public static int internMaterial(String material) {
+        return material != null ? MATERIALS.intern(material) : NO_MATERIAL;
+    }
+
+    /**
+     * Get the name of a material ID.
+     * 
+     * @param materialId Material ID.
+     * @return Material name, or <code>null</code> if the ID is
+     *         <code>NO_MATERIAL</code>.
+     * @throws IndexOutOfBoundsException If no material has this ID.
+     */
+    public static String materialName(int materialId) throws IndexOutOfBoundsException {
+        return materialId != NO_MATERIAL ? MATERIALS.get(materialId) : null;
+    }
+
+    /**
+     * Get the ID of a group set, as returned by <code>getGroupSetId</code>. The
+     * groups keep the order they're given in, so the same groups in a different
+     * order are a different group set.
+     * 
+     * @param groups The groups. <code>null</code> for no groups.
+     * @return The group set ID.
+     * @throws NullPointerException If any of the groups are <code>null</code>.
+     */
+    public static int internGroups(Collection<? extends String> groups) throws NullPointerException {
+        String[] array = groups != null ? groups.toArray(String[]::new) : new String[0];
+        for (String group : array) {
+            if (group == null) {
+                throw new NullPointerException("Groups may not be null.");
+            }
+        }
+        // Unlike List.of, this tolerates contains(null), which the javagl Obj calls.
+        return GROUP_SETS.intern(Collections.unmodifiableList(Arrays.asList(array)));
+    }
+
+    /**
+     * Get the groups in a group set.
+     * 
+     * @param groupSetId Group set ID.
+     * @return An unmodifiable list of groups, shared by every face in the set.
+     * @throws IndexOutOfBoundsException If no group set has this ID.
+     */
+    public static List<String> groupSet(int groupSetId) throws IndexOutOfBoundsException {
+        return GROUP_SETS.get(groupSetId);
+    }
+
     /**
      * Get the vertices in the face.
      * @return Vertex array.
@@ -86,12 +190,41 @@ public class Face implements Comparable<Face> {
         return normals;
     }
 
+    /*
+     * Index accessors used by the builders. Unlike the getters above, these never
+     * allocate, even for faces that only store their indices.
+     */
+
+    int getVertexCount() {
+        return vertices.length;
+    }
+
+    int getVertexIndex(int i) {
+        return vertices[i].index();
+    }
+
+    boolean hasTexCoords() {
+        return texCoords != null;
+    }
+
+    int getTexCoordIndex(int i) {
+        return texCoords[i].index();
+    }
+
+    boolean hasNormals() {
+        return normals != null;
+    }
+
+    int getNormalIndex(int i) {
+        return normals[i].index();
+    }
+
     /**
      * Get the material this face uses.
      * @return Material name. May be <code>null</code>.
      */
     public String getMaterial() {
-        return material;
+        return materialName(materialId);
     }
 
     /**
@@ -99,15 +232,49 @@ public class Face implements Comparable<Face> {
      * @param material Material name. May be <code>null</code>.
      */
     public void setMaterial(String material) {
-        this.material = material;
+        this.materialId = internMaterial(material);
+    }
+
+    /**
+     * Get the interned ID of this face's material. Faces with equal materials
+     * always have equal material IDs.
+     * 
+     * @return Material ID, or <code>NO_MATERIAL</code> if this face has no
+     *         material.
+     */
+    public int getMaterialId() {
+        return materialId;
     }
 
     /**
-     * Get the groups this face is in.
+     * Get the groups this face is in. Because group sets are shared between
+     * faces, changes to the returned list don't affect this face; use
+     * <code>setGroups</code> instead.
+     * 
      * @return A mutable list of all this face's groups.
      */
     public List<String> getGroups() {
-        return groups;
+        return new ArrayList<>(groupSet(groupSetId));
+    }
+
+    /**
+     * Set the groups this face is in.
+     * @param groups All the groups this face should be in. <code>null</code> to
+     *               assign no groups.
+     * @throws NullPointerException If any of the groups are <code>null</code>.
+     */
+    public void setGroups(Collection<? extends String> groups) throws NullPointerException {
+        this.groupSetId = internGroups(groups);
+    }
+
+    /**
+     * Get the interned ID of this face's group set. Faces in the same groups
+     * always have equal group set IDs.
+     * 
+     * @return Group set ID.
+     */
+    public int getGroupSetId() {
+        return groupSetId;
     }
     
     private static boolean areLengthsEqual(Object[]... arrays) {
@@ -122,19 +289,33 @@ public class Face implements Comparable<Face> {
         return true;
     }
 
+    /**
+     * Take a snapshot of the order of every material and group set interned so
+     * far. Sorting many faces with the snapshot is much cheaper than comparing
+     * their names every time.
+     * 
+     * @return The face order.
+     */
+    static FaceOrder order() {
+        return new FaceOrder(MATERIALS.ranks(MATERIAL_ORDER), GROUP_SETS.ranks(GROUP_SET_ORDER));
+    }
+
+    /**
+     * Compare faces by their material (faces without a material first) and then
+     * by their alphabetized groups. Faces sharing a material and group set are
+     * therefore kept together, and every build of the same mesh is sorted the
+     * same way.
+     */
     @Override
     public int compareTo(Face other) {
-        int val = 0;
-        if (this.material != null && other.material != null) {
-            val = this.material.compareTo(other.material) * 0xFFFF;
+        if (this.materialId != other.materialId) {
+            int val = MATERIAL_ORDER.compare(this.getMaterial(), other.getMaterial());
+            if (val != 0)
+                return val;
         }
+        if (this.groupSetId == other.groupSetId)
+            return 0;
 
-        String[] thisGroups = this.groups.toArray(String[]::new);
-        Arrays.sort(thisGroups);
-
-        String[] otherGroups = other.groups.toArray(String[]::new);
-        Arrays.sort(otherGroups);
-
-        return val + Arrays.compare(thisGroups, otherGroups);
+        return GROUP_SET_ORDER.compare(groupSet(this.groupSetId), groupSet(other.groupSetId));
     }
 }
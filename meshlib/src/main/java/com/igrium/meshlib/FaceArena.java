@@ -0,0 +1,489 @@
+package com.igrium.meshlib;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * <p>
+ * A compact face store that packs faces into large primitive <code>int</code>
+ * blocks instead of allocating a <code>Face</code> and its reference arrays for
+ * every face. A quad with texture coordinates costs 11 <code>int</code>s.
+ * </p>
+ * <p>
+ * Faces are identified by <code>int</code> handles, which are returned when a
+ * face is added and can be used to read it back. Vertex, texcoord and normal
+ * indices are the indices returned by the mesh's reference maps, and materials
+ * and groups are referred to by their interned IDs (see
+ * {@link Face#internMaterial} and {@link Face#internGroups}).
+ * </p>
+ * <p>
+ * All methods are thread-safe. Handles are only valid in the arena that created
+ * them.
+ * </p>
+ *
+ * @see ConcurrentMeshBuilder#getFaceArena()
+ */
+public final class FaceArena {
+
+    // Records never span blocks, so they can be written with plain array stores.
+    static final int BLOCK_BITS = 16;
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int NUM_BLOCKS = 1 << (31 - BLOCK_BITS);
+
+    // Record layout: header, material ID, group set ID, vertices, [texcoords], [normals]
+    static final int HEADER_SIZE = 3;
+    private static final int TEX_COORDS_FLAG = 1 << 30;
+    private static final int NORMALS_FLAG = 1 << 29;
+    private static final int COUNT_MASK = NORMALS_FLAG - 1;
+
+    // Marks the unused end of a block. A header of 0 is a record that's still being
+    // written.
+    private static final int PADDING = -1;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * The largest number of vertices a single face may have.
+     */
+    public static final int MAX_VERTICES = (BLOCK_SIZE - HEADER_SIZE) / 3;
+
+    private final Lock lock;
+    private final AtomicReferenceArray<int[]> blocks = new AtomicReferenceArray<>(NUM_BLOCKS);
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicInteger faceCount = new AtomicInteger();
+
+    /**
+     * Create a face arena.
+     *
+     * @param lock A lock to hold while adding faces. Usually the builder's read
+     *             lock.
+     */
+    FaceArena(Lock lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * Add a triangle with no texture coordinates or normals.
+     *
+     * @param v0         First vertex index.
+     * @param v1         Second vertex index.
+     * @param v2         Third vertex index.
+     * @param materialId Interned material ID, or <code>Face.NO_MATERIAL</code>.
+     * @param groupSetId Interned group set ID.
+     * @return The new face's handle.
+     */
+    public int addTriangle(int v0, int v1, int v2, int materialId, int groupSetId) {
+        lock.lock();
+        try {
+            int face = reserve(HEADER_SIZE + 3);
+            int[] block = blocks.get(face >>> BLOCK_BITS);
+            int i = face & BLOCK_MASK;
+            block[i + 1] = materialId;
+            block[i + 2] = groupSetId;
+            block[i + 3] = v0;
+            block[i + 4] = v1;
+            block[i + 5] = v2;
+            INTS.setRelease(block, i, 3);
+            return face;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a quad with no texture coordinates or normals.
+     *
+     * @param v0         First vertex index.
+     * @param v1         Second vertex index.
+     * @param v2         Third vertex index.
+     * @param v3         Fourth vertex index.
+     * @param materialId Interned material ID, or <code>Face.NO_MATERIAL</code>.
+     * @param groupSetId Interned group set ID.
+     * @return The new face's handle.
+     */
+    public int addQuad(int v0, int v1, int v2, int v3, int materialId, int groupSetId) {
+        lock.lock();
+        try {
+            int face = reserve(HEADER_SIZE + 4);
+            int[] block = blocks.get(face >>> BLOCK_BITS);
+            int i = face & BLOCK_MASK;
+            block[i + 1] = materialId;
+            block[i + 2] = groupSetId;
+            block[i + 3] = v0;
+            block[i + 4] = v1;
+            block[i + 5] = v2;
+            block[i + 6] = v3;
+            INTS.setRelease(block, i, 4);
+            return face;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a face.
+     *
+     * @param vertexCount The number of vertices in the face.
+     * @param vertices    Vertex indices.
+     * @param texCoords   Texture coordinate indices. May be <code>null</code>.
+     * @param normals     Normal indices. May be <code>null</code>.
+     * @param materialId  Interned material ID, or <code>Face.NO_MATERIAL</code>.
+     * @param groupSetId  Interned group set ID.
+     * @return The new face's handle.
+     * @throws IllegalArgumentException If the vertex count is less than 1 or more
+     *                                  than <code>MAX_VERTICES</code>, or if one of
+     *                                  the arrays is too short.
+     */
+    public int add(int vertexCount, int[] vertices, int[] texCoords, int[] normals, int materialId,
+            int groupSetId) throws IllegalArgumentException {
+        checkVertexCount(vertexCount);
+        if (vertices.length < vertexCount || texCoords != null && texCoords.length < vertexCount
+                || normals != null && normals.length < vertexCount) {
+            throw new IllegalArgumentException("Index arrays must have at least vertexCount elements.");
+        }
+
+        lock.lock();
+        try {
+            return write(vertexCount, vertices, 0, texCoords, texCoords != null ? 0 : -1, normals,
+                    normals != null ? 0 : -1, materialId, groupSetId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a face whose indices are stored at an offset into larger arrays. The
+     * caller must hold the lock and have checked the vertex count.
+     *
+     * @param texCoordOffset Offset of the texture coordinate indices, or
+     *                       <code>-1</code> if the face has none.
+     * @param normalOffset   Offset of the normal indices, or <code>-1</code> if
+     *                       the face has none.
+     */
+    int write(int vertexCount, int[] vertices, int vertexOffset, int[] texCoords, int texCoordOffset,
+            int[] normals, int normalOffset, int materialId, int groupSetId) {
+        int face = reserve(recordLength(vertexCount, texCoordOffset >= 0, normalOffset >= 0));
+        int[] block = blocks.get(face >>> BLOCK_BITS);
+        int i = face & BLOCK_MASK;
+        block[i + 1] = materialId;
+        block[i + 2] = groupSetId;
+
+        int header = vertexCount;
+        int offset = i + HEADER_SIZE;
+        System.arraycopy(vertices, vertexOffset, block, offset, vertexCount);
+        offset += vertexCount;
+        if (texCoordOffset >= 0) {
+            System.arraycopy(texCoords, texCoordOffset, block, offset, vertexCount);
+            offset += vertexCount;
+            header |= TEX_COORDS_FLAG;
+        }
+        if (normalOffset >= 0) {
+            System.arraycopy(normals, normalOffset, block, offset, vertexCount);
+            header |= NORMALS_FLAG;
+        }
+        INTS.setRelease(block, i, header);
+        return face;
+    }
+
+    /**
+     * Add a face object, discarding everything but its indices. The indices are
+     * read before any space is reserved, so a face that can't be read never
+     * leaves an unfinished record behind.
+     */
+    int add(Face face) throws IllegalArgumentException {
+        int vertexCount = face.getVertexCount();
+        checkVertexCount(vertexCount);
+
+        boolean hasTexCoords = face.hasTexCoords();
+        boolean hasNormals = face.hasNormals();
+        int[] indices = new int[vertexCount * 3];
+        for (int v = 0; v < vertexCount; v++) {
+            indices[v] = face.getVertexIndex(v);
+            if (hasTexCoords) {
+                indices[vertexCount + v] = face.getTexCoordIndex(v);
+            }
+            if (hasNormals) {
+                indices[vertexCount * 2 + v] = face.getNormalIndex(v);
+            }
+        }
+        int materialId = face.getMaterialId();
+        int groupSetId = face.getGroupSetId();
+
+        lock.lock();
+        try {
+            return write(vertexCount, indices, 0, indices, hasTexCoords ? vertexCount : -1, indices,
+                    hasNormals ? vertexCount * 2 : -1, materialId, groupSetId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static void checkVertexCount(int vertexCount) throws IllegalArgumentException {
+        if (vertexCount < 1 || vertexCount > MAX_VERTICES) {
+            throw new IllegalArgumentException("Faces must have between 1 and " + MAX_VERTICES + " vertices.");
+        }
+    }
+
+    static int recordLength(int vertexCount, boolean texCoords, boolean normals) {
+        return HEADER_SIZE + vertexCount * (1 + (texCoords ? 1 : 0) + (normals ? 1 : 0));
+    }
+
+    private int reserve(int length) {
+        while (true) {
+            long start = cursor.get();
+            long blockEnd = (start | BLOCK_MASK) + 1;
+            long position = start + length > blockEnd ? blockEnd : start;
+            long end = position + length;
+            if (end > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Face arena is full.");
+            }
+
+            if (cursor.compareAndSet(start, end)) {
+                if (position != start) {
+                    INTS.setRelease(getOrAllocBlock((int) (start >>> BLOCK_BITS)), (int) start & BLOCK_MASK,
+                            PADDING);
+                }
+                getOrAllocBlock((int) (position >>> BLOCK_BITS));
+                faceCount.incrementAndGet();
+                return (int) position;
+            }
+        }
+    }
+
+    private int[] getOrAllocBlock(int index) {
+        int[] block = blocks.get(index);
+        if (block != null)
+            return block;
+
+        int[] newBlock = new int[BLOCK_SIZE];
+        if (blocks.compareAndSet(index, null, newBlock)) {
+            return newBlock;
+        } else {
+            return blocks.get(index);
+        }
+    }
+
+    /**
+     * Get the number of faces in the arena. Faces that are being added
+     * concurrently may already be counted.
+     *
+     * @return Face count.
+     */
+    public int size() {
+        return faceCount.get();
+    }
+
+    /**
+     * Get the number of vertices in a face.
+     *
+     * @param face Face handle.
+     * @return Vertex count.
+     */
+    public int getVertexCount(int face) {
+        return header(face) & COUNT_MASK;
+    }
+
+    /**
+     * Check whether a face has texture coordinates.
+     *
+     * @param face Face handle.
+     * @return If the face has texture coordinates.
+     */
+    public boolean hasTexCoords(int face) {
+        return (header(face) & TEX_COORDS_FLAG) != 0;
+    }
+
+    /**
+     * Check whether a face has normals.
+     *
+     * @param face Face handle.
+     * @return If the face has normals.
+     */
+    public boolean hasNormals(int face) {
+        return (header(face) & NORMALS_FLAG) != 0;
+    }
+
+    /**
+     * Get a face's material ID.
+     *
+     * @param face Face handle.
+     * @return Interned material ID, or <code>Face.NO_MATERIAL</code>.
+     */
+    public int getMaterialId(int face) {
+        header(face);
+        return blocks.get(face >>> BLOCK_BITS)[(face & BLOCK_MASK) + 1];
+    }
+
+    /**
+     * Get a face's group set ID.
+     *
+     * @param face Face handle.
+     * @return Interned group set ID.
+     */
+    public int getGroupSetId(int face) {
+        header(face);
+        return blocks.get(face >>> BLOCK_BITS)[(face & BLOCK_MASK) + 2];
+    }
+
+    /**
+     * Get one of a face's vertex indices.
+     *
+     * @param face   Face handle.
+     * @param corner Index of the vertex within the face.
+     * @return Vertex index.
+     */
+    public int getVertex(int face, int corner) {
+        checkCorner(face, corner);
+        return blocks.get(face >>> BLOCK_BITS)[(face & BLOCK_MASK) + HEADER_SIZE + corner];
+    }
+
+    /**
+     * Get one of a face's texture coordinate indices.
+     *
+     * @param face   Face handle.
+     * @param corner Index of the vertex within the face.
+     * @return Texture coordinate index, or <code>-1</code> if the face has no
+     *         texture coordinates.
+     */
+    public int getTexCoord(int face, int corner) {
+        checkCorner(face, corner);
+        int header = header(face);
+        if ((header & TEX_COORDS_FLAG) == 0)
+            return -1;
+        int count = header & COUNT_MASK;
+        return blocks.get(face >>> BLOCK_BITS)[(face & BLOCK_MASK) + HEADER_SIZE + count + corner];
+    }
+
+    /**
+     * Get one of a face's normal indices.
+     *
+     * @param face   Face handle.
+     * @param corner Index of the vertex within the face.
+     * @return Normal index, or <code>-1</code> if the face has no normals.
+     */
+    public int getNormal(int face, int corner) {
+        checkCorner(face, corner);
+        int header = header(face);
+        if ((header & NORMALS_FLAG) == 0)
+            return -1;
+        int count = header & COUNT_MASK;
+        int offset = (header & TEX_COORDS_FLAG) != 0 ? count * 2 : count;
+        return blocks.get(face >>> BLOCK_BITS)[(face & BLOCK_MASK) + HEADER_SIZE + offset + corner];
+    }
+
+    /**
+     * Copy a face's indices into arrays.
+     *
+     * @param face      Face handle.
+     * @param vertices  Array to copy vertex indices into.
+     * @param texCoords Array to copy texcoord indices into.
+     * @param normals   Array to copy normal indices into.
+     * @return The face's header.
+     */
+    int read(int face, int[] vertices, int[] texCoords, int[] normals) {
+        int header = header(face);
+        int count = header & COUNT_MASK;
+        int[] block = blocks.get(face >>> BLOCK_BITS);
+        int offset = (face & BLOCK_MASK) + HEADER_SIZE;
+
+        System.arraycopy(block, offset, vertices, 0, count);
+        offset += count;
+        if ((header & TEX_COORDS_FLAG) != 0) {
+            System.arraycopy(block, offset, texCoords, 0, count);
+            offset += count;
+        }
+        if ((header & NORMALS_FLAG) != 0) {
+            System.arraycopy(block, offset, normals, 0, count);
+        }
+        return header;
+    }
+
+    static int createHeader(int vertexCount, boolean texCoords, boolean normals) {
+        return vertexCount | (texCoords ? TEX_COORDS_FLAG : 0) | (normals ? NORMALS_FLAG : 0);
+    }
+
+    static int headerVertexCount(int header) {
+        return header & COUNT_MASK;
+    }
+
+    static boolean headerHasTexCoords(int header) {
+        return (header & TEX_COORDS_FLAG) != 0;
+    }
+
+    static boolean headerHasNormals(int header) {
+        return (header & NORMALS_FLAG) != 0;
+    }
+
+    /**
+     * Get the end of the space that has been reserved so far. Every face handle
+     * is below this.
+     */
+    int limit() {
+        return (int) cursor.get();
+    }
+
+    /**
+     * Collect the handles of every face below a limit, in the order they were
+     * added. Waits for faces that are still being written.
+     *
+     * @param limit A value returned by <code>limit()</code>.
+     * @return The face handles.
+     */
+    int[] collectHandles(int limit) {
+        int[] handles = new int[Math.max(size(), 16)];
+        int count = 0;
+        int position = 0;
+
+        while (position < limit) {
+            int header = awaitHeader(position);
+            if (header == PADDING) {
+                position = (position | BLOCK_MASK) + 1;
+                continue;
+            }
+
+            if (count == handles.length) {
+                handles = Arrays.copyOf(handles, handles.length * 2);
+            }
+            handles[count++] = position;
+            position += recordLength(header & COUNT_MASK, (header & TEX_COORDS_FLAG) != 0,
+                    (header & NORMALS_FLAG) != 0);
+        }
+        return Arrays.copyOf(handles, count);
+    }
+
+    private int awaitHeader(int position) {
+        // Both the block and the header may still be in the middle of being written.
+        int[] block;
+        while ((block = blocks.get(position >>> BLOCK_BITS)) == null) {
+            Thread.onSpinWait();
+        }
+        int header;
+        while ((header = (int) INTS.getAcquire(block, position & BLOCK_MASK)) == 0) {
+            Thread.onSpinWait();
+        }
+        return header;
+    }
+
+    private int header(int face) {
+        if (face < 0 || face >= limit()) {
+            throw new IndexOutOfBoundsException("Invalid face handle: " + face);
+        }
+        int header = awaitHeader(face);
+        if (header == PADDING) {
+            throw new IndexOutOfBoundsException("Invalid face handle: " + face);
+        }
+        return header;
+    }
+
+    private void checkCorner(int face, int corner) {
+        if (corner < 0 || corner >= getVertexCount(face)) {
+            throw new IndexOutOfBoundsException(corner);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.igrium.meshlib;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder.ReferenceMap;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+/**
+ * <p>
+ * A batch of faces that is filled locally and then added to a mesh builder in
+ * one call with <code>ConcurrentMeshBuilder.putFaces</code>. Committing a batch
+ * only takes the builder's lock once, rather than once for every vertex,
+ * texture coordinate, normal and face like <code>FaceBuilder</code> does.
+ * </p>
+ * <p>
+ * A batch can be reused after calling <code>clear</code>. Like
+ * <code>FaceBuilder</code>, it is not thread-safe, but any number of batches
+ * can be committed to the same mesh builder concurrently.
+ * </p>
+ */
+public class FaceBatch {
+
+    private static final int INITIAL_FACES = 64;
+
+    private Vertex[] vertices = new Vertex[INITIAL_FACES * 4];
+    private Vector2[] texCoords = new Vector2[0];
+    private Vector3[] normals = new Vector3[0];
+    private int numVertices;
+    private int numTexCoords;
+    private int numNormals;
+
+    private int[] vertexCounts = new int[INITIAL_FACES];
+    private int[] vertexOffsets = new int[INITIAL_FACES];
+    // -1 if the face doesn't have texture coordinates or normals.
+    private int[] texCoordOffsets = new int[INITIAL_FACES];
+    private int[] normalOffsets = new int[INITIAL_FACES];
+    private int[] materialIds = new int[INITIAL_FACES];
+    private int[] groupSetIds = new int[INITIAL_FACES];
+    private int size;
+
+    private boolean reuseVertices = true;
+
+    /**
+     * Set whether the mesh builder should re-use existing vertices rather than
+     * making new ones when this batch is committed. Texture coordinates and normals
+     * are always re-used. Defaults to <code>true</code>.
+     *
+     * @param reuseVertices Whether to re-use vertices.
+     * @return <code>this</code>
+     */
+    public FaceBatch reuseVertices(boolean reuseVertices) {
+        this.reuseVertices = reuseVertices;
+        return this;
+    }
+
+    /**
+     * Check whether the mesh builder will re-use existing vertices.
+     * @return If vertices are re-used.
+     */
+    public boolean isReuseVertices() {
+        return reuseVertices;
+    }
+
+    /**
+     * Add a face without texture coordinates, normals, material or groups.
+     *
+     * @param vertices Vertices in the face.
+     * @return <code>this</code>
+     */
+    public FaceBatch add(Vertex... vertices) {
+        return add(vertices, null, null, Face.NO_MATERIAL, Face.internGroups(null));
+    }
+
+    /**
+     * Add a face. All non-null arrays must be of the same length.
+     *
+     * @param vertices  Vertices in the face.
+     * @param texCoords Texture coordinates to use. May be <code>null</code>.
+     * @param normals   Normals to use. May be <code>null</code>.
+     * @param material  Material name to use. May be <code>null</code>.
+     * @param groups    All the groups the face should be in. <code>null</code> to
+     *                  assign no groups.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If one of the arrays is of the wrong
+     *                                  length.
+     */
+    public FaceBatch add(Vertex[] vertices, Vector2[] texCoords, Vector3[] normals, String material,
+            Collection<? extends String> groups) throws IllegalArgumentException {
+        return add(vertices, texCoords, normals, Face.internMaterial(material), Face.internGroups(groups));
+    }
+
+    /**
+     * Add a face with an already-interned material and group set. Generators
+     * that add many faces with the same material should intern it once and use
+     * this method.
+     *
+     * @param vertices   Vertices in the face.
+     * @param texCoords  Texture coordinates to use. May be <code>null</code>.
+     * @param normals    Normals to use. May be <code>null</code>.
+     * @param materialId Material ID, as returned by
+     *                   <code>Face.internMaterial</code>.
+     * @param groupSetId Group set ID, as returned by
+     *                   <code>Face.internGroups</code>.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If one of the arrays is of the wrong
+     *                                  length.
+     */
+    public FaceBatch add(Vertex[] vertices, Vector2[] texCoords, Vector3[] normals, int materialId,
+            int groupSetId) throws IllegalArgumentException {
+        int count = vertices.length;
+        if (texCoords != null && texCoords.length != count || normals != null && normals.length != count) {
+            throw new IllegalArgumentException("vertices, texCoords, and normals must be of the same length.");
+        }
+
+        if (size == vertexCounts.length) {
+            int capacity = size * 2;
+            vertexCounts = Arrays.copyOf(vertexCounts, capacity);
+            vertexOffsets = Arrays.copyOf(vertexOffsets, capacity);
+            texCoordOffsets = Arrays.copyOf(texCoordOffsets, capacity);
+            normalOffsets = Arrays.copyOf(normalOffsets, capacity);
+            materialIds = Arrays.copyOf(materialIds, capacity);
+            groupSetIds = Arrays.copyOf(groupSetIds, capacity);
+        }
+
+        vertexCounts[size] = count;
+        vertexOffsets[size] = numVertices;
+        this.vertices = append(this.vertices, numVertices, vertices);
+        numVertices += count;
+
+        if (texCoords != null) {
+            texCoordOffsets[size] = numTexCoords;
+            this.texCoords = append(this.texCoords, numTexCoords, texCoords);
+            numTexCoords += count;
+        } else {
+            texCoordOffsets[size] = -1;
+        }
+
+        if (normals != null) {
+            normalOffsets[size] = numNormals;
+            this.normals = append(this.normals, numNormals, normals);
+            numNormals += count;
+        } else {
+            normalOffsets[size] = -1;
+        }
+
+        materialIds[size] = materialId;
+        groupSetIds[size] = groupSetId;
+        size++;
+        return this;
+    }
+
+    private static <T> T[] append(T[] array, int length, T[] values) {
+        if (length + values.length > array.length) {
+            array = Arrays.copyOf(array, Math.max(array.length * 2, length + values.length));
+        }
+        System.arraycopy(values, 0, array, length, values.length);
+        return array;
+    }
+
+    /**
+     * Get the number of faces in this batch.
+     * @return Face count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if this batch has no faces.
+     * @return If the batch is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all faces from this batch, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(vertices, 0, numVertices, null);
+        Arrays.fill(texCoords, 0, numTexCoords, null);
+        Arrays.fill(normals, 0, numNormals, null);
+        numVertices = 0;
+        numTexCoords = 0;
+        numNormals = 0;
+        size = 0;
+    }
+
+    // All vertices of every face, in order. Only the first getNumVertices are set.
+    Vertex[] getVertices() {
+        return vertices;
+    }
+
+    int getNumVertices() {
+        return numVertices;
+    }
+
+    Vector2[] getTexCoords() {
+        return texCoords;
+    }
+
+    int getNumTexCoords() {
+        return numTexCoords;
+    }
+
+    Vector3[] getNormals() {
+        return normals;
+    }
+
+    int getNumNormals() {
+        return numNormals;
+    }
+
+    int getVertexCount(int face) {
+        return vertexCounts[face];
+    }
+
+    int getVertexOffset(int face) {
+        return vertexOffsets[face];
+    }
+
+    int getTexCoordOffset(int face) {
+        return texCoordOffsets[face];
+    }
+
+    int getNormalOffset(int face) {
+        return normalOffsets[face];
+    }
+
+    int getMaterialId(int face) {
+        return materialIds[face];
+    }
+
+    int getGroupSetId(int face) {
+        return groupSetIds[face];
+    }
+
+    /**
+     * Create a face object for one of the faces in this batch. Like
+     * <code>FaceBuilder</code>, the face only keeps indices if the mesh stores
+     * attributes in columns, and otherwise references the mesh's stored values
+     * rather than the batch's.
+     *
+     * @param mesh            The mesh the indices point into.
+     * @param face            Face index within the batch.
+     * @param vertexIndices   Mesh indices of every vertex in the batch.
+     * @param texCoordIndices Mesh indices of every texture coordinate.
+     * @param normalIndices   Mesh indices of every normal.
+     * @return The face.
+     */
+    Face createFace(ConcurrentMeshBuilder mesh, int face, int[] vertexIndices, int[] texCoordIndices,
+            int[] normalIndices) {
+        int count = vertexCounts[face];
+        int texCoordOffset = texCoordOffsets[face];
+        int normalOffset = normalOffsets[face];
+
+        if (mesh.usesIndexedFaces()) {
+            return new IndexedFace(mesh,
+                    Arrays.copyOfRange(vertexIndices, vertexOffsets[face], vertexOffsets[face] + count),
+                    texCoordOffset >= 0 ? Arrays.copyOfRange(texCoordIndices, texCoordOffset, texCoordOffset + count)
+                            : null,
+                    normalOffset >= 0 ? Arrays.copyOfRange(normalIndices, normalOffset, normalOffset + count) : null,
+                    materialIds[face], groupSetIds[face]);
+        }
+
+        return Face.create(toReferences(mesh.getVertices(), vertexIndices, vertexOffsets[face], count),
+                texCoordOffset >= 0 ? toReferences(mesh.getTexCoords(), texCoordIndices, texCoordOffset, count) : null,
+                normalOffset >= 0 ? toReferences(mesh.getNormals(), normalIndices, normalOffset, count) : null,
+                materialIds[face], groupSetIds[face]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> IndexedReference<T>[] toReferences(ReferenceMap<T> map, int[] indices, int offset,
+            int count) {
+        IndexedReference<T>[] refs = new IndexedReference[count];
+        for (int i = 0; i < count; i++) {
+            int index = indices[offset + i];
+            refs[i] = new IndexedReference<>(map.get(index), index);
+        }
+        return refs;
+    }
+}
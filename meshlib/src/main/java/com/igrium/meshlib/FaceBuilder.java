@@ -113,10 +113,20 @@ public class FaceBuilder {
      * Build this face and add it to a mesh builder.
      * @param mesh Mesh builder to use.
      * @param reuseVerts If <code>true</code>, the mesh builder will attempt to re-use existing vertices rather than making new ones.
-     * @return The built face.
+     * @return The built face. If the mesh checks for overlapping faces, this
+     *         face may have been discarded or culled; see
+     *         {@link ConcurrentMeshBuilder#putFace(Face)}.
      */
-    @SuppressWarnings("unchecked")
     public Face build(ConcurrentMeshBuilder mesh, boolean reuseVerts) {
+        // Alphabetize groups to optimize file once faces are sorted.
+        groups.sort(String::compareTo);
+        Face face = mesh.usesIndexedFaces() ? buildIndexed(mesh, reuseVerts) : buildReferences(mesh, reuseVerts);
+        mesh.putFace(face);
+        return face;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Face buildReferences(ConcurrentMeshBuilder mesh, boolean reuseVerts) {
         IndexedReference<Vertex>[] vertRefs = new IndexedReference[vertices.length];
         ReferenceMap<Vertex> vertMap = mesh.getVertices();
     
@@ -144,11 +154,39 @@ public class FaceBuilder {
                 normalRefs[i] = normalMap.getOrAdd(normals[i]);
             }
         }
-        // Alphabetize groups to optimize file once faces are sorted.
-        groups.sort(String::compareTo);
-        Face face = Face.create(vertRefs, texCoordRefs, normalRefs, material, groups);
-        mesh.putFace(face);
-        return face;
+        return Face.create(vertRefs, texCoordRefs, normalRefs, material, groups);
+    }
+
+    // Columnar meshes re-create values anyway, so the face only keeps indices.
+    private Face buildIndexed(ConcurrentMeshBuilder mesh, boolean reuseVerts) {
+        int[] vertIndices = new int[vertices.length];
+        ReferenceMap<Vertex> vertMap = mesh.getVertices();
+
+        for (int i = 0; i < vertices.length; i++) {
+            Vertex vertex = vertices[i];
+            vertIndices[i] = reuseVerts ? vertMap.getOrAddIndex(vertex) : vertMap.add(vertex).index();
+        }
+
+        int[] texCoordIndices = null;
+        if (texCoords != null) {
+            texCoordIndices = new int[texCoords.length];
+            ReferenceMap<Vector2> texCoordMap = mesh.getTexCoords();
+
+            for (int i = 0; i < texCoords.length; i++) {
+                texCoordIndices[i] = texCoordMap.getOrAddIndex(texCoords[i]);
+            }
+        }
+
+        int[] normalIndices = null;
+        if (normals != null) {
+            normalIndices = new int[normals.length];
+            ReferenceMap<Vector3> normalMap = mesh.getNormals();
+
+            for (int i = 0; i < normals.length; i++) {
+                normalIndices[i] = normalMap.getOrAddIndex(normals[i]);
+            }
+        }
+        return new IndexedFace(mesh, vertIndices, texCoordIndices, normalIndices, material, groups);
     }
 
     public Face build(ConcurrentMeshBuilder mesh) {
@@ -0,0 +1,54 @@
+package com.igrium.meshlib;
+
+import java.util.Comparator;
+
+/**
+ * A snapshot of the order of every interned material and group set, used to
+ * sort faces by name without comparing names. Materials and group sets
+ * interned after the snapshot sort after all others, in the order they were
+ * interned.
+ *
+ * @see Face#compareTo(Face)
+ */
+final class FaceOrder implements Comparator<Face> {
+    private final int[] materialRanks;
+    private final int[] groupSetRanks;
+
+    FaceOrder(int[] materialRanks, int[] groupSetRanks) {
+        this.materialRanks = materialRanks;
+        this.groupSetRanks = groupSetRanks;
+    }
+
+    /**
+     * Pack a material ID and group set ID into a key whose order matches
+     * <code>Face.compareTo</code>.
+     *
+     * @param materialId Interned material ID, or <code>Face.NO_MATERIAL</code>.
+     * @param groupSetId Interned group set ID.
+     * @return The sort key.
+     */
+    long key(int materialId, int groupSetId) {
+        // Faces without a material come first.
+        long material = materialId == Face.NO_MATERIAL ? 0 : rank(materialRanks, materialId) + 1L;
+        return (material << 32) | rank(groupSetRanks, groupSetId);
+    }
+
+    /**
+     * Get the sort key of a key packed by <code>ConcurrentMeshBuilder.faceKey</code>.
+     *
+     * @param faceKey Packed material ID and group set ID.
+     * @return The sort key.
+     */
+    long key(long faceKey) {
+        return key((int) (faceKey >> 32), (int) faceKey);
+    }
+
+    @Override
+    public int compare(Face a, Face b) {
+        return Long.compare(key(a.getMaterialId(), a.getGroupSetId()), key(b.getMaterialId(), b.getGroupSetId()));
+    }
+
+    private static long rank(int[] ranks, int id) {
+        return id < ranks.length ? ranks[id] : id;
+    }
+}
@@ -0,0 +1,408 @@
+package com.igrium.meshlib;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Runs a generator for every cell of a 1D, 2D or 3D range in parallel,
+ * building the results into a {@link ConcurrentMeshBuilder}. Cells are
+ * processed in chunks rather than as one task each, so even ranges of millions
+ * of cells only create a handful of tasks.
+ * </p>
+ * <p>
+ * By default, the range is split recursively in a <code>ForkJoinPool</code>,
+ * and only as far as idle workers need more work to steal. Alternatively, any
+ * <code>Executor</code> (such as one that starts a virtual thread per task)
+ * may be used, in which case a bounded number of tasks claim chunks that get
+ * smaller as the range runs out.
+ * </p>
+ * <p>
+ * Generation can be cancelled by cancelling the returned future. Cells that
+ * have already started finish, but no new cells are generated. Either way, the
+ * future only completes once no generator is running anymore, so the mesh can
+ * be compiled or closed as soon as it's done.
+ * </p>
+ */
+public class GenerationDriver {
+
+    // Once forked chunks have this many more queued tasks than there are idle
+    // workers, they stop splitting.
+    private static final int SURPLUS_LIMIT = 3;
+
+    /**
+     * Generates the mesh of one cell.
+     */
+    @FunctionalInterface
+    public interface CellGenerator {
+        /**
+         * Generate a cell. Called from many threads at once.
+         *
+         * @param mesh The mesh to build in.
+         * @param x    The cell's X coordinate.
+         * @param y    The cell's Y coordinate. Always <code>0</code> in 1D ranges.
+         * @param z    The cell's Z coordinate. Always <code>0</code> in 1D and 2D
+         *             ranges.
+         */
+        void generate(ConcurrentMeshBuilder mesh, int x, int y, int z);
+    }
+
+    /**
+     * A box of cells. Minimum coordinates are inclusive and maximum coordinates
+     * are exclusive. Cells are generated in X, then Y, then Z order.
+     */
+    public record CellRange(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+
+        /**
+         * Create a cell range.
+         *
+         * @throws IllegalArgumentException If a maximum coordinate is less than its
+         *                                  minimum.
+         */
+        public CellRange {
+            if (maxX < minX || maxY < minY || maxZ < minZ) {
+                throw new IllegalArgumentException("Maximum coordinates may not be less than minimum coordinates.");
+            }
+        }
+
+        /**
+         * Create a 1D range starting at 0.
+         *
+         * @param sizeX The number of cells.
+         * @return The range.
+         */
+        public static CellRange of(int sizeX) {
+            return new CellRange(0, 0, 0, sizeX, 1, 1);
+        }
+
+        /**
+         * Create a 2D range starting at 0.
+         *
+         * @param sizeX The number of cells along X.
+         * @param sizeY The number of cells along Y.
+         * @return The range.
+         */
+        public static CellRange of(int sizeX, int sizeY) {
+            return new CellRange(0, 0, 0, sizeX, sizeY, 1);
+        }
+
+        /**
+         * Create a 3D range starting at 0.
+         *
+         * @param sizeX The number of cells along X.
+         * @param sizeY The number of cells along Y.
+         * @param sizeZ The number of cells along Z.
+         * @return The range.
+         */
+        public static CellRange of(int sizeX, int sizeY, int sizeZ) {
+            return new CellRange(0, 0, 0, sizeX, sizeY, sizeZ);
+        }
+
+        /**
+         * Get the number of cells in this range.
+         * @return The cell count.
+         */
+        public long size() {
+            return (long) (maxX - minX) * (maxY - minY) * (maxZ - minZ);
+        }
+    }
+
+    private final ConcurrentMeshBuilder mesh;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private Executor executor;
+    private int maxInFlight = Runtime.getRuntime().availableProcessors();
+    private int minChunkSize = 16;
+
+    /**
+     * Create a generation driver.
+     *
+     * @param mesh The mesh to build in.
+     */
+    public GenerationDriver(ConcurrentMeshBuilder mesh) {
+        this.mesh = Objects.requireNonNull(mesh);
+    }
+
+    /**
+     * Get the mesh that this driver builds in.
+     * @return The mesh.
+     */
+    public ConcurrentMeshBuilder getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Generate cells in a fork-join pool, splitting the range as workers run out
+     * of work. This is the default.
+     *
+     * @param pool The pool to use. Defaults to the common pool.
+     * @return <code>this</code>
+     */
+    public GenerationDriver pool(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+        this.executor = null;
+        return this;
+    }
+
+    /**
+     * Generate cells with an arbitrary executor, such as one that runs every task
+     * on a new virtual thread. At most <code>maxInFlight</code> tasks are
+     * submitted to it at once, each of which processes chunks until the range
+     * is exhausted.
+     *
+     * @param executor    The executor to use.
+     * @param maxInFlight The maximum number of tasks to run at once.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If <code>maxInFlight</code> is less than
+     *                                  1.
+     */
+    public GenerationDriver executor(Executor executor, int maxInFlight) throws IllegalArgumentException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one task must be allowed in flight.");
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Set the smallest number of cells that are processed as one chunk. Larger
+     * values reduce scheduling overhead for cheap cells, while smaller values
+     * balance expensive cells better.
+     *
+     * @param minChunkSize Minimum chunk size. Defaults to 16.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If the chunk size is less than 1.
+     */
+    public GenerationDriver minChunkSize(int minChunkSize) throws IllegalArgumentException {
+        if (minChunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        this.minChunkSize = minChunkSize;
+        return this;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    /**
+     * Generate every cell in a range.
+     *
+     * @param range     The cells to generate.
+     * @param generator The generator to run on each cell.
+     * @return A future that completes once every cell has been generated, or
+     *         completes exceptionally with the first exception a generator threw
+     *         once the cells that were already running have finished. Cancelling
+     *         it stops generation, but it's only marked as cancelled once the
+     *         running cells have finished.
+     */
+    public CompletableFuture<Void> generate(CellRange range, CellGenerator generator) {
+        Objects.requireNonNull(range);
+        Objects.requireNonNull(generator);
+        Run run = new Run(range, generator);
+        if (range.size() == 0) {
+            run.future.complete(null);
+        } else if (executor != null) {
+            run.startWorkers(executor, maxInFlight);
+        } else {
+            pool.execute(run.new Chunk(0, range.size(), null) {
+                @Override
+                protected void compute() {
+                    try {
+                        super.compute();
+                    } catch (Throwable e) {
+                        run.fail(e);
+                    } finally {
+                        // Every chunk has joined its forks, so no cells are running.
+                        run.finish();
+                    }
+                }
+            });
+        }
+        return run.future;
+    }
+
+    /**
+     * The future of a run. Cancelling it only asks the run to stop; it's marked
+     * as cancelled once the run has.
+     */
+    private static class RunFuture extends CompletableFuture<Void> {
+        volatile boolean cancelRequested;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (isDone())
+                return false;
+            cancelRequested = true;
+            return true;
+        }
+
+        void markCancelled() {
+            super.cancel(false);
+        }
+    }
+
+    /**
+     * The state of one call to <code>generate</code>.
+     */
+    private class Run {
+        final RunFuture future = new RunFuture();
+        // The first exception a generator threw.
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CellRange range;
+        final CellGenerator generator;
+        final int chunkSize = minChunkSize;
+        final int sizeX;
+        final int sizeY;
+
+        Run(CellRange range, CellGenerator generator) {
+            this.range = range;
+            this.generator = generator;
+            this.sizeX = range.maxX() - range.minX();
+            this.sizeY = range.maxY() - range.minY();
+        }
+
+        boolean isStopped() {
+            return future.cancelRequested || failure.get() != null || future.isDone();
+        }
+
+        void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+
+        /**
+         * Complete the future. Must only be called once no cells are running.
+         */
+        void finish() {
+            Throwable e = failure.get();
+            if (e != null) {
+                future.completeExceptionally(e);
+            } else if (future.cancelRequested) {
+                future.markCancelled();
+            } else {
+                future.complete(null);
+            }
+        }
+
+        /**
+         * Generate the cells from one linear index to another, stopping early if
+         * the run has been cancelled or failed. Exceptions are recorded rather
+         * than thrown, so that chunks still wait for each other.
+         */
+        void generateCells(long from, long to) {
+            long plane = (long) sizeX * sizeY;
+            int z = (int) (from / plane);
+            int y = (int) (from % plane / sizeX);
+            int x = (int) (from % sizeX);
+
+            try {
+                for (long i = from; i < to; i++) {
+                    if (isStopped())
+                        return;
+                    generator.generate(mesh, range.minX() + x, range.minY() + y, range.minZ() + z);
+                    if (++x == sizeX) {
+                        x = 0;
+                        if (++y == sizeY) {
+                            y = 0;
+                            z++;
+                        }
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                // Other chunks stop as soon as they see this.
+                fail(e);
+            }
+        }
+
+        /**
+         * A chunk of cells in a fork-join pool, which forks off halves of itself
+         * while there are idle workers to steal them.
+         */
+        class Chunk extends RecursiveAction {
+            private final long from;
+            private final long to;
+            // The next chunk forked by the same parent, so the parent can join them
+            // without keeping a list.
+            private final Chunk next;
+
+            Chunk(long from, long to, Chunk next) {
+                this.from = from;
+                this.to = to;
+                this.next = next;
+            }
+
+            @Override
+            protected void compute() {
+                long lo = from;
+                long hi = to;
+                Chunk forked = null;
+                while (hi - lo > chunkSize && getSurplusQueuedTaskCount() <= SURPLUS_LIMIT) {
+                    long mid = (lo + hi) >>> 1;
+                    forked = new Chunk(mid, hi, forked);
+                    forked.fork();
+                    hi = mid;
+                }
+                generateCells(lo, hi);
+                for (; forked != null; forked = forked.next) {
+                    forked.join();
+                }
+            }
+        }
+
+        // The first linear index that hasn't been claimed by a worker.
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger activeWorkers = new AtomicInteger();
+        private int workerCount;
+
+        void startWorkers(Executor executor, int maxWorkers) {
+            long total = range.size();
+            workerCount = (int) Math.min(maxWorkers, (total + chunkSize - 1) / chunkSize);
+            activeWorkers.set(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                try {
+                    executor.execute(this::work);
+                } catch (RejectedExecutionException e) {
+                    fail(e);
+                    // The workers that never started won't count themselves down.
+                    if (activeWorkers.addAndGet(i - workerCount) == 0) {
+                        finish();
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Claim and generate chunks until the range runs out. Each chunk is a
+         * fraction of the remaining cells, so early chunks are large and the last
+         * ones are small enough to balance the load.
+         */
+        private void work() {
+            try {
+                long total = range.size();
+                long start;
+                while (!isStopped() && (start = cursor.get()) < total) {
+                    long remaining = total - start;
+                    long size = Math.min(remaining, Math.max(chunkSize, remaining / (workerCount * 2L)));
+                    if (cursor.compareAndSet(start, start + size)) {
+                        generateCells(start, start + size);
+                    }
+                }
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                if (activeWorkers.decrementAndGet() == 0) {
+                    finish();
+                }
+            }
+        }
+    }
+}
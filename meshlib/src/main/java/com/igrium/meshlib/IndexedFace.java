@@ -0,0 +1,124 @@
+package com.igrium.meshlib;
+
+import java.util.Collection;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder.ReferenceMap;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+/**
+ * A face that only stores the indices of its values. Builders with columnar
+ * storage re-create values whenever they're read, so keeping the value objects
+ * on every face would cost as much memory as columnar storage saves. References
+ * are only created, with freshly decoded values, when they're asked for.
+ */
+final class IndexedFace extends Face {
+
+    private final ConcurrentMeshBuilder mesh;
+
+    private final int[] vertexIndices;
+
+    private final int[] texCoordIndices;
+
+    private final int[] normalIndices;
+
+    /**
+     * Create an indexed face. Arrays are not validated.
+     *
+     * @param mesh            The mesh the indices point into.
+     * @param vertexIndices   Vertex indices.
+     * @param texCoordIndices Texture coordinate indices. May be <code>null</code>.
+     * @param normalIndices   Normal indices. May be <code>null</code>.
+     * @param material        The material to use. May be <code>null</code>.
+     * @param groups          The groups this face is in. May be <code>null</code>.
+     */
+    IndexedFace(ConcurrentMeshBuilder mesh, int[] vertexIndices, int[] texCoordIndices, int[] normalIndices,
+            String material, Collection<? extends String> groups) {
+        super(null, null, null, material, groups);
+        this.mesh = mesh;
+        this.vertexIndices = vertexIndices;
+        this.texCoordIndices = texCoordIndices;
+        this.normalIndices = normalIndices;
+    }
+
+    /**
+     * Create an indexed face from an already-interned material and group set.
+     * Arrays are not validated.
+     */
+    IndexedFace(ConcurrentMeshBuilder mesh, int[] vertexIndices, int[] texCoordIndices, int[] normalIndices,
+            int materialId, int groupSetId) {
+        super(null, null, null, materialId, groupSetId);
+        this.mesh = mesh;
+        this.vertexIndices = vertexIndices;
+        this.texCoordIndices = texCoordIndices;
+        this.normalIndices = normalIndices;
+    }
+
+    /**
+     * Get the vertices in the face. A new array is created on every call, so
+     * modifying it has no effect on the face.
+     */
+    @Override
+    public IndexedReference<Vertex>[] getVertices() {
+        return toReferences(mesh.getVertices(), vertexIndices);
+    }
+
+    /**
+     * Get the texture coordinates in the face. A new array is created on every
+     * call.
+     */
+    @Override
+    public IndexedReference<Vector2>[] getTexCoords() {
+        return toReferences(mesh.getTexCoords(), texCoordIndices);
+    }
+
+    /**
+     * Get the normals in the face. A new array is created on every call.
+     */
+    @Override
+    public IndexedReference<Vector3>[] getNormals() {
+        return toReferences(mesh.getNormals(), normalIndices);
+    }
+
+    @Override
+    int getVertexCount() {
+        return vertexIndices.length;
+    }
+
+    @Override
+    int getVertexIndex(int i) {
+        return vertexIndices[i];
+    }
+
+    @Override
+    boolean hasTexCoords() {
+        return texCoordIndices != null;
+    }
+
+    @Override
+    int getTexCoordIndex(int i) {
+        return texCoordIndices[i];
+    }
+
+    @Override
+    boolean hasNormals() {
+        return normalIndices != null;
+    }
+
+    @Override
+    int getNormalIndex(int i) {
+        return normalIndices[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> IndexedReference<T>[] toReferences(ReferenceMap<T> map, int[] indices) {
+        if (indices == null)
+            return null;
+
+        IndexedReference<T>[] refs = new IndexedReference[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            refs[i] = new IndexedReference<>(map.get(indices[i]), indices[i]);
+        }
+        return refs;
+    }
+}
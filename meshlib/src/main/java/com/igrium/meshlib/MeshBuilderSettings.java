@@ -0,0 +1,324 @@
+package com.igrium.meshlib;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+import com.igrium.meshlib.io.FloatFormatter;
+
+/**
+ * Settings used to create a {@link ConcurrentMeshBuilder}. Settings are read
+ * once when the builder is created; changing them afterwards has no effect on
+ * existing builders.
+ */
+public class MeshBuilderSettings {
+
+    private boolean overlapChecking;
+    private boolean cullOpposingFaces;
+    private boolean sharded;
+    private boolean columnarStorage;
+    private boolean faceBucketing;
+    private boolean compactFaces;
+    private Path spillDirectory;
+    private int spillCacheSize = 1 << 20;
+    private float vertexWeldEpsilon;
+    private float texCoordWeldEpsilon;
+    private float normalWeldEpsilon;
+    private VertexLayout vertexLayout = VertexLayout.POSITION_COLOR;
+    private int exportDecimals = FloatFormatter.SHORTEST;
+
+    /**
+     * Set whether the builder should ensure that no two faces share the same
+     * vertex set.
+     *
+     * @param overlapChecking Enable overlap checking.
+     * @return <code>this</code>
+     */
+    public MeshBuilderSettings overlapChecking(boolean overlapChecking) {
+        this.overlapChecking = overlapChecking;
+        return this;
+    }
+
+    public boolean isOverlapChecking() {
+        return overlapChecking;
+    }
+
+    /**
+     * Set whether two coincident faces with opposite windings should cull each
+     * other. When a face overlaps an existing face and visits the same vertices
+     * in reverse order, the existing face is removed and the new face is never
+     * added. This removes the hidden faces between adjacent cells of voxel-style
+     * meshes as they're built. Faces with the same winding are still handled by
+     * regular overlap checking, which must be enabled. Vertices, texture
+     * coordinates and normals that are only used by culled faces are left out
+     * of compiled meshes.
+     *
+     * @param cullOpposingFaces Enable culling of opposing faces.
+     * @return <code>this</code>
+     */
+    public MeshBuilderSettings cullOpposingFaces(boolean cullOpposingFaces) {
+        this.cullOpposingFaces = cullOpposingFaces;
+        return this;
+    }
+
+    public boolean isCullOpposingFaces() {
+        return cullOpposingFaces;
+    }
+
+    /**
+     * Set whether every thread should build into its own private shard, which
+     * will be merged during the compile stage. Sharded builders do not support
+     * overlap checking, columnar storage, welding, face bucketing or compact
+     * faces.
+     *
+     * @param sharded Enable sharding.
+     * @return <code>this</code>
+     * @see ConcurrentMeshBuilder#createSharded()
+     */
+    public MeshBuilderSettings sharded(boolean sharded) {
+        this.sharded = sharded;
+        return this;
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * Set whether vertices, texcoords and normals should be stored in primitive
+     * float columns rather than as objects. Columnar storage uses several times
+     * less memory, but values have to be re-created whenever they're read.
+     *
+     * @param columnarStorage Enable columnar storage.
+     * @return <code>this</code>
+     */
+    public MeshBuilderSettings columnarStorage(boolean columnarStorage) {
+        this.columnarStorage = columnarStorage;
+        return this;
+    }
+
+    public boolean isColumnarStorage() {
+        return columnarStorage;
+    }
+
+    /**
+     * Set whether faces should be sorted into buckets by their material and
+     * group set as they're added. Sorted compiles then simply walk the buckets
+     * in order instead of sorting every face. Changing the material or groups
+     * of a face after it's been added won't move it to another bucket. Not
+     * supported with overlap checking.
+     *
+     * @param faceBucketing Enable face bucketing.
+     * @return <code>this</code>
+     */
+    public MeshBuilderSettings faceBucketing(boolean faceBucketing) {
+        this.faceBucketing = faceBucketing;
+        return this;
+    }
+
+    public boolean isFaceBucketing() {
+        return faceBucketing;
+    }
+
+    /**
+     * Set whether faces should be packed into primitive arenas rather than stored
+     * as <code>Face</code> objects. This uses several times less memory per face,
+     * and faces can be added directly through the builder's
+     * {@link FaceArena}. <code>Face</code> objects are still accepted, but only
+     * their indices are kept. Not supported with overlap checking or face
+     * bucketing; sorted compiles of compact faces are already linear.
+     *
+     * @param compactFaces Enable compact face storage.
+     * @return <code>this</code>
+     * @see ConcurrentMeshBuilder#getFaceArena()
+     */
+    public MeshBuilderSettings compactFaces(boolean compactFaces) {
+        this.compactFaces = compactFaces;
+        return this;
+    }
+
+    public boolean isCompactFaces() {
+        return compactFaces;
+    }
+
+    /**
+     * Set a directory to spill the mesh into. When set, vertices, texture
+     * coordinates, normals and faces are appended to memory-mapped temporary
+     * files in this directory instead of being kept on the heap, and the compile
+     * stage streams straight from those files. This lets meshes far larger than
+     * the heap be built and written with
+     * {@link ConcurrentMeshBuilder#writeObj(java.nio.file.Path, boolean)}. The
+     * files are deleted when the builder is closed, so spilling builders should be
+     * created with {@link ConcurrentMeshBuilder#createSpilling(MeshBuilderSettings)}.
+     * <p>
+     * Values are only deduplicated through a bounded cache (see
+     * {@link #spillCacheSize(int)}), so equal values that are added far apart, or
+     * by several threads at once, may be stored twice. Not supported with sharding, overlap checking, columnar
+     * storage, face bucketing, compact faces or welding.
+     *
+     * @param spillDirectory Directory for the spill files. <code>null</code> to
+     *                       keep the mesh on the heap.
+     * @return <code>this</code>
+     */
+    public MeshBuilderSettings spillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Check whether the builder will spill the mesh to disk.
+     * @return If a spill directory is set.
+     */
+    public boolean isSpilling() {
+        return spillDirectory != null;
+    }
+
+    /**
+     * Set how many recently-added values of each type a spilling builder keeps
+     * in memory for deduplication. Defaults to about a million.
+     *
+     * @param spillCacheSize Number of cached values. Rounded up to a power of
+     *                       two.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If the size isn't positive.
+     */
+    public MeshBuilderSettings spillCacheSize(int spillCacheSize) throws IllegalArgumentException {
+        if (spillCacheSize <= 0 || spillCacheSize > 1 << 30) {
+            throw new IllegalArgumentException("Spill cache size must be between 1 and 2^30.");
+        }
+        this.spillCacheSize = spillCacheSize;
+        return this;
+    }
+
+    public int getSpillCacheSize() {
+        return spillCacheSize;
+    }
+
+    /**
+     * Set the tolerance used to weld vertices. When enabled, a new vertex that is
+     * within <code>epsilon</code> of an existing vertex in every component
+     * (position and color) is replaced with the closest existing vertex. Welded
+     * vertices are always stored in columnar storage.
+     * 
+     * @param epsilon Welding tolerance. <code>0</code> to only reuse exactly equal
+     *                vertices.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If <code>epsilon</code> is negative.
+     */
+    public MeshBuilderSettings vertexWeldEpsilon(float epsilon) throws IllegalArgumentException {
+        this.vertexWeldEpsilon = checkEpsilon(epsilon);
+        return this;
+    }
+
+    public float getVertexWeldEpsilon() {
+        return vertexWeldEpsilon;
+    }
+
+    /**
+     * Set the tolerance used to weld texture coordinates.
+     * 
+     * @param epsilon Welding tolerance. <code>0</code> to only reuse exactly equal
+     *                texture coordinates.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If <code>epsilon</code> is negative.
+     * @see #vertexWeldEpsilon(float)
+     */
+    public MeshBuilderSettings texCoordWeldEpsilon(float epsilon) throws IllegalArgumentException {
+        this.texCoordWeldEpsilon = checkEpsilon(epsilon);
+        return this;
+    }
+
+    public float getTexCoordWeldEpsilon() {
+        return texCoordWeldEpsilon;
+    }
+
+    /**
+     * Set the tolerance used to weld normals.
+     * 
+     * @param epsilon Welding tolerance. <code>0</code> to only reuse exactly equal
+     *                normals.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If <code>epsilon</code> is negative.
+     * @see #vertexWeldEpsilon(float)
+     */
+    public MeshBuilderSettings normalWeldEpsilon(float epsilon) throws IllegalArgumentException {
+        this.normalWeldEpsilon = checkEpsilon(epsilon);
+        return this;
+    }
+
+    public float getNormalWeldEpsilon() {
+        return normalWeldEpsilon;
+    }
+
+    /**
+     * Set the welding tolerance of vertices, texture coordinates and normals at
+     * once.
+     * 
+     * @param epsilon Welding tolerance.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If <code>epsilon</code> is negative.
+     * @see #vertexWeldEpsilon(float)
+     */
+    public MeshBuilderSettings weldEpsilon(float epsilon) throws IllegalArgumentException {
+        return vertexWeldEpsilon(epsilon).texCoordWeldEpsilon(epsilon).normalWeldEpsilon(epsilon);
+    }
+
+    /**
+     * Check whether any kind of welding is enabled.
+     * @return If any welding epsilon is set.
+     */
+    public boolean isWelding() {
+        return vertexWeldEpsilon > 0 || texCoordWeldEpsilon > 0 || normalWeldEpsilon > 0;
+    }
+
+    /**
+     * Set which vertex attributes the builder stores and exports. Meshes that
+     * don't use vertex colors can leave them out of the output with
+     * {@link VertexLayout#DETECT}, or out of storage as well with
+     * {@link VertexLayout#POSITION}.
+     *
+     * @param vertexLayout The vertex layout. Defaults to
+     *                     {@link VertexLayout#POSITION_COLOR}.
+     * @return <code>this</code>
+     */
+    public MeshBuilderSettings vertexLayout(VertexLayout vertexLayout) {
+        this.vertexLayout = Objects.requireNonNull(vertexLayout);
+        return this;
+    }
+
+    public VertexLayout getVertexLayout() {
+        return vertexLayout;
+    }
+
+    /**
+     * Set how many decimal places the builder's text exporters round float
+     * components to. Four or five decimals are plenty for most meshes and make
+     * OBJ files much smaller than full float precision.
+     *
+     * @param exportDecimals Number of decimal places, or
+     *                       {@link FloatFormatter#SHORTEST} (the default) to
+     *                       write the shortest text that parses back to the same
+     *                       float.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If <code>exportDecimals</code> is invalid.
+     * @see ConcurrentMeshBuilder#writeObj(java.nio.file.Path, boolean)
+     */
+    public MeshBuilderSettings exportDecimals(int exportDecimals) throws IllegalArgumentException {
+        this.exportDecimals = FloatFormatter.checkDecimals(exportDecimals);
+        return this;
+    }
+
+    public int getExportDecimals() {
+        return exportDecimals;
+    }
+
+    private static float checkEpsilon(float epsilon) throws IllegalArgumentException {
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("Epsilon may not be negative.");
+        }
+        return epsilon;
+    }
+}
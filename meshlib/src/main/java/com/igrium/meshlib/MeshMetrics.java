@@ -0,0 +1,343 @@
+package com.igrium.meshlib;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * <p>
+ * Counters describing how a {@link ConcurrentMeshBuilder} has been used:
+ * how well its values deduplicate, how often faces overlap, how long threads
+ * wait on its lock and how long each phase of the compile stage takes.
+ * </p>
+ * <p>
+ * Every counter is a <code>LongAdder</code>, so updating them from many
+ * threads at once doesn't contend, and metrics are always collected. Counters
+ * are read without stopping the builder, so values read while it's in use may
+ * be slightly inconsistent with each other.
+ * </p>
+ * <p>
+ * Every compile is also recorded as a <code>com.igrium.meshlib.Compile</code>
+ * JFR event, and the counters can be recorded periodically as a
+ * <code>com.igrium.meshlib.Metrics</code> event with
+ * {@link #setJfrEvents(boolean)}.
+ * </p>
+ *
+ * @see ConcurrentMeshBuilder#getMetrics()
+ */
+public final class MeshMetrics {
+
+    /**
+     * The phases of the compile stage that are timed.
+     */
+    public enum Phase {
+        /**
+         * Collecting and deduplicating vertices, texture coordinates and normals.
+         * Most builders index these as they're added, so this is usually
+         * negligible.
+         */
+        ATTRIBUTES,
+        /**
+         * Sorting faces by material and group.
+         */
+        SORT,
+        /**
+         * Collecting the mesh's faces.
+         */
+        FACES
+    }
+
+    /**
+     * Deduplication counters for one type of attribute.
+     */
+    public static final class AttributeMetrics {
+        final LongAdder lookups = new LongAdder();
+        final LongAdder misses = new LongAdder();
+
+        AttributeMetrics() {
+        }
+
+        // Called before the value is looked up.
+        void lookup() {
+            lookups.increment();
+        }
+
+        // Called when a lookup has to add its value.
+        void miss() {
+            misses.increment();
+        }
+
+        /**
+         * Get the number of values that have been looked up with
+         * <code>getOrAdd</code>.
+         *
+         * @return The number of lookups.
+         */
+        public long getLookups() {
+            return lookups.sum();
+        }
+
+        /**
+         * Get the number of lookups that found an existing value.
+         *
+         * @return The number of hits.
+         */
+        public long getHits() {
+            long misses = this.misses.sum();
+            return Math.max(0, lookups.sum() - misses);
+        }
+
+        /**
+         * Get the number of lookups that had to add their value.
+         *
+         * @return The number of misses.
+         */
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        void reset() {
+            lookups.reset();
+            misses.reset();
+        }
+    }
+
+    private final AttributeMetrics vertices = new AttributeMetrics();
+    private final AttributeMetrics texCoords = new AttributeMetrics();
+    private final AttributeMetrics normals = new AttributeMetrics();
+
+    final LongAdder facesAdded = new LongAdder();
+    final LongAdder overlapCollisions = new LongAdder();
+    final LongAdder overlapOverrides = new LongAdder();
+    final LongAdder overlapCulls = new LongAdder();
+
+    final LongAdder readLockWaitNanos = new LongAdder();
+    final LongAdder writeLockWaitNanos = new LongAdder();
+
+    private final LongAdder compiles = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+
+    private Runnable jfrHook;
+
+    MeshMetrics() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Get the deduplication counters of the builder's vertices.
+     * @return Vertex counters.
+     */
+    public AttributeMetrics getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Get the deduplication counters of the builder's texture coordinates.
+     * @return Texture coordinate counters.
+     */
+    public AttributeMetrics getTexCoords() {
+        return texCoords;
+    }
+
+    /**
+     * Get the deduplication counters of the builder's normals.
+     * @return Normal counters.
+     */
+    public AttributeMetrics getNormals() {
+        return normals;
+    }
+
+    /**
+     * Get the number of faces that have been passed to <code>putFace</code> or
+     * <code>putFaces</code>, including faces that were discarded by overlap
+     * checking.
+     *
+     * @return The number of faces added.
+     */
+    public long getFacesAdded() {
+        return facesAdded.sum();
+    }
+
+    /**
+     * Get the number of faces that overlapped an existing face.
+     *
+     * @return The number of overlap collisions.
+     */
+    public long getOverlapCollisions() {
+        return overlapCollisions.sum();
+    }
+
+    /**
+     * Get the number of overlap collisions where the new face replaced the
+     * existing face.
+     *
+     * @return The number of overrides.
+     */
+    public long getOverlapOverrides() {
+        return overlapOverrides.sum();
+    }
+
+    /**
+     * Get the number of overlap collisions where both faces were culled.
+     *
+     * @return The number of culled face pairs.
+     * @see MeshBuilderSettings#cullOpposingFaces(boolean)
+     */
+    public long getOverlapCulls() {
+        return overlapCulls.sum();
+    }
+
+    /**
+     * Get the total time that threads have spent waiting for the builder's read
+     * lock, which is taken while adding values and faces. Acquiring an
+     * uncontended lock isn't timed.
+     *
+     * @return The wait time in nanoseconds.
+     */
+    public long getReadLockWaitNanos() {
+        return readLockWaitNanos.sum();
+    }
+
+    /**
+     * Get the total time that threads have spent waiting for the builder's write
+     * lock, which is taken by the compile stage.
+     *
+     * @return The wait time in nanoseconds.
+     */
+    public long getWriteLockWaitNanos() {
+        return writeLockWaitNanos.sum();
+    }
+
+    /**
+     * Get the number of times the mesh has been compiled, including snapshots.
+     *
+     * @return The number of compiles.
+     */
+    public long getCompiles() {
+        return compiles.sum();
+    }
+
+    /**
+     * Get the total time spent in a phase of the compile stage, across every
+     * compile.
+     *
+     * @param phase The phase.
+     * @return The time in nanoseconds.
+     */
+    public long getCompileNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Reset every counter to zero.
+     */
+    public void reset() {
+        vertices.reset();
+        texCoords.reset();
+        normals.reset();
+        facesAdded.reset();
+        overlapCollisions.reset();
+        overlapOverrides.reset();
+        overlapCulls.reset();
+        readLockWaitNanos.reset();
+        writeLockWaitNanos.reset();
+        compiles.reset();
+        for (LongAdder nanos : phaseNanos) {
+            nanos.reset();
+        }
+    }
+
+    /**
+     * Set whether these counters are recorded as a periodic JFR event. The
+     * period is configured by the recording, and the event is only emitted
+     * while it's enabled there.
+     *
+     * @param enabled Whether to record the counters.
+     */
+    public synchronized void setJfrEvents(boolean enabled) {
+        if (enabled && jfrHook == null) {
+            jfrHook = this::emitJfrEvent;
+            FlightRecorder.addPeriodicEvent(MetricsEvent.class, jfrHook);
+        } else if (!enabled && jfrHook != null) {
+            FlightRecorder.removePeriodicEvent(jfrHook);
+            jfrHook = null;
+        }
+    }
+
+    /**
+     * Check whether these counters are recorded as a periodic JFR event.
+     * @return If JFR events are enabled.
+     */
+    public synchronized boolean isJfrEvents() {
+        return jfrHook != null;
+    }
+
+    private void emitJfrEvent() {
+        MetricsEvent event = new MetricsEvent();
+        event.metricsId = System.identityHashCode(this);
+        event.vertexHits = vertices.getHits();
+        event.vertexMisses = vertices.getMisses();
+        event.texCoordHits = texCoords.getHits();
+        event.texCoordMisses = texCoords.getMisses();
+        event.normalHits = normals.getHits();
+        event.normalMisses = normals.getMisses();
+        event.facesAdded = getFacesAdded();
+        event.overlapCollisions = getOverlapCollisions();
+        event.overlapOverrides = getOverlapOverrides();
+        event.overlapCulls = getOverlapCulls();
+        event.readLockWait = getReadLockWaitNanos();
+        event.writeLockWait = getWriteLockWaitNanos();
+        event.compiles = getCompiles();
+        event.commit();
+    }
+
+    /**
+     * Start timing a compile.
+     */
+    CompileTimer startCompile(boolean sort, boolean snapshot) {
+        return new CompileTimer(sort, snapshot);
+    }
+
+    /**
+     * Times the phases of one compile.
+     */
+    final class CompileTimer {
+        private final long[] nanos = new long[Phase.values().length];
+        private final CompileEvent event = new CompileEvent();
+
+        private CompileTimer(boolean sort, boolean snapshot) {
+            event.metricsId = System.identityHashCode(MeshMetrics.this);
+            event.sorted = sort;
+            event.snapshot = snapshot;
+            event.begin();
+        }
+
+        /**
+         * Record the time since <code>startNanos</code> against a phase.
+         */
+        void record(Phase phase, long startNanos) {
+            nanos[phase.ordinal()] += System.nanoTime() - startNanos;
+        }
+
+        /**
+         * Finish the compile, adding its timings to the counters.
+         */
+        void finish(MeshView view) {
+            compiles.increment();
+            for (Phase phase : Phase.values()) {
+                phaseNanos[phase.ordinal()].add(nanos[phase.ordinal()]);
+            }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.attributesTime = nanos[Phase.ATTRIBUTES.ordinal()];
+                event.sortTime = nanos[Phase.SORT.ordinal()];
+                event.facesTime = nanos[Phase.FACES.ordinal()];
+                event.faceCount = view.getNumFaces();
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.igrium.meshlib;
+
+import java.util.List;
+
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+/**
+ * <p>
+ * A read-only view of a compiled mesh, used by exporters to read a
+ * {@link ConcurrentMeshBuilder} without copying it. All indices are zero-based
+ * and refer to the view's own attribute tables.
+ * </p>
+ * <p>
+ * Views are only valid inside the {@link Reader} they were passed to. Each
+ * attribute can be read either as an object or component-by-component; the
+ * latter avoids allocation in builders that don't store attributes as objects.
+ * </p>
+ *
+ * @see ConcurrentMeshBuilder#compile(boolean, Reader)
+ */
+public interface MeshView {
+
+    /**
+     * Get the number of vertices in the mesh.
+     * @return Vertex count.
+     */
+    int getNumVertices();
+
+    /**
+     * Get a vertex in the mesh.
+     * @param index Vertex index.
+     * @return The vertex.
+     */
+    Vertex getVertex(int index);
+
+    /**
+     * Get the number of components in each vertex, in the order returned by
+     * <code>Vertex.get</code>.
+     *
+     * @return Vertex dimensions.
+     */
+    int getVertexDimensions();
+
+    /**
+     * Get a single component of a vertex.
+     *
+     * @param index     Vertex index.
+     * @param component Component index, as in <code>Vertex.get</code>.
+     * @return The component value.
+     */
+    float getVertexComponent(int index, int component);
+
+    /**
+     * Get the number of texture coordinates in the mesh.
+     * @return Texture coordinate count.
+     */
+    int getNumTexCoords();
+
+    /**
+     * Get a texture coordinate in the mesh.
+     * @param index Texture coordinate index.
+     * @return The texture coordinate.
+     */
+    Vector2 getTexCoord(int index);
+
+    /**
+     * Get a single component of a texture coordinate.
+     *
+     * @param index     Texture coordinate index.
+     * @param component Component index. <code>0</code> or <code>1</code>.
+     * @return The component value.
+     */
+    float getTexCoordComponent(int index, int component);
+
+    /**
+     * Get the number of normals in the mesh.
+     * @return Normal count.
+     */
+    int getNumNormals();
+
+    /**
+     * Get a normal in the mesh.
+     * @param index Normal index.
+     * @return The normal.
+     */
+    Vector3 getNormal(int index);
+
+    /**
+     * Get a single component of a normal.
+     *
+     * @param index     Normal index.
+     * @param component Component index. <code>0</code> through <code>2</code>.
+     * @return The component value.
+     */
+    float getNormalComponent(int index, int component);
+
+    /**
+     * Get the number of faces in the mesh.
+     * @return Face count.
+     */
+    int getNumFaces();
+
+    /**
+     * Visit every face in the mesh, in output order.
+     *
+     * @param <E>     The type of exception the visitor may throw.
+     * @param visitor The face visitor.
+     * @throws E If the visitor throws an exception.
+     */
+    default <E extends Exception> void forEachFace(FaceVisitor<E> visitor) throws E {
+        forEachFace(0, getNumFaces(), visitor);
+    }
+
+    /**
+     * Visit a range of faces in the mesh, in output order. Different ranges may
+     * be visited from multiple threads at once.
+     *
+     * @param <E>       The type of exception the visitor may throw.
+     * @param fromIndex The index of the first face to visit (inclusive).
+     * @param toIndex   The index of the last face to visit (exclusive).
+     * @param visitor   The face visitor.
+     * @throws E                         If the visitor throws an exception.
+     * @throws IndexOutOfBoundsException If the range is out of bounds.
+     */
+    <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor) throws E;
+
+    /**
+     * Receives the faces of a mesh view.
+     */
+    @FunctionalInterface
+    public interface FaceVisitor<E extends Exception> {
+
+        /**
+         * Visit a face. The index arrays may be re-used between faces, and may be
+         * longer than the face itself; only the first <code>vertexCount</code>
+         * elements are valid, and only until this method returns.
+         *
+         * @param vertexCount The number of vertices in the face.
+         * @param vertices    Vertex indices.
+         * @param texCoords   Texture coordinate indices. <code>null</code> if the
+         *                    face has no texture coordinates.
+         * @param normals     Normal indices. <code>null</code> if the face has no
+         *                    normals.
+         * @param material    The face's material. May be <code>null</code>.
+         * @param groups      The face's groups. Do not modify.
+         * @throws E If the visitor fails.
+         */
+        void visit(int vertexCount, int[] vertices, int[] texCoords, int[] normals, String material,
+                List<String> groups) throws E;
+    }
+
+    /**
+     * A function that reads a mesh view.
+     */
+    @FunctionalInterface
+    public interface Reader<R, E extends Exception> {
+
+        /**
+         * Read the mesh view.
+         *
+         * @param view The view. Only valid until this method returns.
+         * @return The result.
+         * @throws E If reading fails.
+         */
+        R read(MeshView view) throws E;
+    }
+}
@@ -0,0 +1,94 @@
+package com.igrium.meshlib;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A <code>ReentrantReadWriteLock</code> that adds up how long threads are
+ * blocked acquiring it. Every acquisition first tries the lock without
+ * waiting, so uncontended locking isn't timed at all.
+ */
+final class MeteredReadWriteLock implements ReadWriteLock {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final MeteredLock readLock;
+    private final MeteredLock writeLock;
+
+    MeteredReadWriteLock(LongAdder readWaitNanos, LongAdder writeWaitNanos) {
+        readLock = new MeteredLock(lock.readLock(), readWaitNanos);
+        writeLock = new MeteredLock(lock.writeLock(), writeWaitNanos);
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    private static final class MeteredLock implements Lock {
+        private final Lock lock;
+        private final LongAdder waitNanos;
+
+        MeteredLock(Lock lock, LongAdder waitNanos) {
+            this.lock = lock;
+            this.waitNanos = waitNanos;
+        }
+
+        @Override
+        public void lock() {
+            // Unlike tryLock(), a timed tryLock doesn't barge ahead of queued
+            // writers, so readers can't starve the compile stage.
+            try {
+                if (lock.tryLock(0, TimeUnit.NANOSECONDS))
+                    return;
+            } catch (InterruptedException e) {
+                // lock() ignores interrupts, so keep the flag for the caller.
+                Thread.currentThread().interrupt();
+            }
+
+            long start = System.nanoTime();
+            lock.lock();
+            waitNanos.add(System.nanoTime() - start);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (lock.tryLock(0, TimeUnit.NANOSECONDS))
+                return;
+
+            long start = System.nanoTime();
+            try {
+                lock.lockInterruptibly();
+            } finally {
+                waitNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            return lock.tryLock();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return lock.tryLock(time, unit);
+        }
+
+        @Override
+        public void unlock() {
+            lock.unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            return lock.newCondition();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.igrium.meshlib;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+/**
+ * A periodic JFR event with the counters of one mesh builder's
+ * {@link MeshMetrics}. Every counter is a running total.
+ */
+@Name("com.igrium.meshlib.Metrics")
+@Label("Mesh Builder Metrics")
+@Category("MeshLib")
+@Period("1 s")
+class MetricsEvent extends Event {
+
+    @Label("Metrics ID")
+    @Description("Identity hash of the builder's metrics, to tell builders apart")
+    int metricsId;
+
+    @Label("Vertex Hits")
+    long vertexHits;
+
+    @Label("Vertex Misses")
+    long vertexMisses;
+
+    @Label("Texture Coordinate Hits")
+    long texCoordHits;
+
+    @Label("Texture Coordinate Misses")
+    long texCoordMisses;
+
+    @Label("Normal Hits")
+    long normalHits;
+
+    @Label("Normal Misses")
+    long normalMisses;
+
+    @Label("Faces Added")
+    long facesAdded;
+
+    @Label("Overlap Collisions")
+    long overlapCollisions;
+
+    @Label("Overlap Overrides")
+    long overlapOverrides;
+
+    @Label("Overlap Culls")
+    long overlapCulls;
+
+    @Label("Read Lock Wait")
+    @Timespan
+    long readLockWait;
+
+    @Label("Write Lock Wait")
+    @Timespan
+    long writeLockWait;
+
+    @Label("Compiles")
+    long compiles;
+}
@@ -0,0 +1,677 @@
+package com.igrium.meshlib;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+/**
+ * <p>
+ * Loads an OBJ file into a {@link ConcurrentMeshBuilder}, so that new geometry
+ * can be added to an existing mesh. The file is memory-mapped and split into
+ * chunks at line boundaries, which are parsed in parallel without creating a
+ * string for every token.
+ * </p>
+ * <p>
+ * Loading takes two passes. The first adds every chunk's vertices, texture
+ * coordinates and normals to the builder. Once the number of values in each
+ * chunk is known, the second pass resolves face indices (including negative,
+ * relative ones) across chunks and adds the faces, along with the material and
+ * groups that were active where they were declared.
+ * </p>
+ * <p>
+ * <code>v</code>, <code>vt</code>, <code>vn</code>, <code>f</code>,
+ * <code>g</code> and <code>usemtl</code> statements are supported; anything
+ * else is ignored. Like the rest of the builder, values are deduplicated as
+ * they're added, so identical vertices in the file become one vertex. Faces in
+ * the <code>default</code> group are added without groups.
+ * </p>
+ */
+public class ObjImporter {
+
+    /**
+     * The default number of bytes in each chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+    // Statement types.
+    private static final int OTHER = 0;
+    private static final int VERTEX = 1;
+    private static final int TEX_COORD = 2;
+    private static final int NORMAL = 3;
+    private static final int FACE = 4;
+    private static final int GROUP = 5;
+    private static final int MATERIAL = 6;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private static final List<String> DEFAULT_GROUP = List.of("default");
+
+    private final ConcurrentMeshBuilder mesh;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Create an OBJ importer.
+     *
+     * @param mesh The mesh to load files into.
+     */
+    public ObjImporter(ConcurrentMeshBuilder mesh) {
+        this.mesh = Objects.requireNonNull(mesh);
+    }
+
+    /**
+     * Get the mesh that this importer loads files into.
+     * @return The mesh.
+     */
+    public ConcurrentMeshBuilder getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Set the pool to parse chunks in.
+     *
+     * @param pool The pool to use. Defaults to the common pool.
+     * @return <code>this</code>
+     */
+    public ObjImporter pool(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+        return this;
+    }
+
+    /**
+     * Set the approximate number of bytes in each chunk. Chunks are extended to
+     * the end of the line they stop in.
+     *
+     * @param chunkSize Chunk size in bytes. Defaults to
+     *                  {@link #DEFAULT_CHUNK_SIZE}.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If the chunk size is less than 1.
+     */
+    public ObjImporter chunkSize(int chunkSize) throws IllegalArgumentException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Load an OBJ file into the mesh.
+     *
+     * @param file The file to load.
+     * @return The number of faces that were added.
+     * @throws IOException If an I/O error occurs or the file is malformed. Values
+     *                     and faces read before the error remain in the mesh.
+     */
+    public int load(Path file) throws IOException {
+        List<Chunk> chunks;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            chunks = split(channel);
+        }
+
+        forEachChunk(chunks, Chunk::readAttributes);
+
+        // Work out where each chunk's values start and which material and groups
+        // are active at its start.
+        long vertices = 0, texCoords = 0, normals = 0;
+        int materialId = Face.NO_MATERIAL;
+        int groupSetId = Face.internGroups(null);
+        for (Chunk chunk : chunks) {
+            chunk.vertexOffset = vertices;
+            chunk.texCoordOffset = texCoords;
+            chunk.normalOffset = normals;
+            vertices += chunk.vertices.size;
+            texCoords += chunk.texCoords.size;
+            normals += chunk.normals.size;
+
+            chunk.startMaterialId = materialId;
+            chunk.startGroupSetId = groupSetId;
+            if (chunk.hasMaterial) {
+                materialId = chunk.endMaterialId;
+            }
+            if (chunk.hasGroups) {
+                groupSetId = chunk.endGroupSetId;
+            }
+        }
+
+        forEachChunk(chunks, chunk -> chunk.readFaces(chunks));
+
+        int faces = 0;
+        for (Chunk chunk : chunks) {
+            faces += chunk.numFaces;
+        }
+        return faces;
+    }
+
+    private interface ChunkTask {
+        void run(Chunk chunk) throws IOException;
+    }
+
+    private void forEachChunk(List<Chunk> chunks, ChunkTask task) throws IOException {
+        Consumer<Chunk> action = chunk -> {
+            try {
+                task.run(chunk);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            if (ForkJoinTask.getPool() == pool) {
+                chunks.parallelStream().forEach(action);
+            } else {
+                pool.submit(() -> chunks.parallelStream().forEach(action)).join();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Split a file into chunks that each end after a line break.
+     */
+    private List<Chunk> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            // Extend the chunk to the end of its last line.
+            long position = end - 1;
+            search: while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read < 0) {
+                    end = size;
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        end = position + i + 1;
+                        break search;
+                    }
+                }
+                position += read;
+                end = Math.min(size, position);
+            }
+
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line at byte " + start + " is too long.");
+            }
+            chunks.add(new Chunk(start, channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * A growable array of indexed references.
+     */
+    private static class RefList<T> {
+        @SuppressWarnings("unchecked")
+        IndexedReference<T>[] refs = new IndexedReference[64];
+        int size;
+
+        void add(IndexedReference<T> ref) {
+            if (size == refs.length) {
+                refs = Arrays.copyOf(refs, refs.length * 2);
+            }
+            refs[size++] = ref;
+        }
+    }
+
+    /**
+     * A line-aligned region of the file, along with everything the two passes
+     * learn about it.
+     */
+    private class Chunk {
+        final long start;
+        final MappedByteBuffer data;
+        final int limit;
+        int pos;
+
+        final RefList<Vertex> vertices = new RefList<>();
+        final RefList<Vector2> texCoords = new RefList<>();
+        final RefList<Vector3> normals = new RefList<>();
+
+        // The material and groups active at the end of this chunk, if it sets them.
+        boolean hasMaterial;
+        int endMaterialId;
+        boolean hasGroups;
+        int endGroupSetId;
+
+        long vertexOffset;
+        long texCoordOffset;
+        long normalOffset;
+        int startMaterialId;
+        int startGroupSetId;
+
+        int numFaces;
+
+        Chunk(long start, MappedByteBuffer data) {
+            this.start = start;
+            this.data = data;
+            this.limit = data.limit();
+        }
+
+        /**
+         * The first pass: add every value to the mesh and note the last material
+         * and groups.
+         */
+        void readAttributes() throws IOException {
+            float[] components = new float[6];
+            for (pos = 0; pos < limit; nextLine()) {
+                skipSpaces();
+                if (pos >= limit)
+                    break;
+                switch (keyword()) {
+                    case VERTEX -> {
+                        int count = readFloats(components, 3, 6);
+                        Vector3 position = new Vector3(components[0], components[1], components[2]);
+                        Vertex vertex = count >= 6
+                                ? new Vertex(position, new Vector3(components[3], components[4], components[5]))
+                                : new Vertex(position);
+                        vertices.add(mesh.getVertices().getOrAdd(vertex));
+                    }
+                    case TEX_COORD -> {
+                        float v = readFloats(components, 1, 3) >= 2 ? components[1] : 0;
+                        texCoords.add(mesh.getTexCoords().getOrAdd(new Vector2(components[0], v)));
+                    }
+                    case NORMAL -> {
+                        readFloats(components, 3, 3);
+                        normals.add(mesh.getNormals()
+                                .getOrAdd(new Vector3(components[0], components[1], components[2])));
+                    }
+                    case MATERIAL -> {
+                        hasMaterial = true;
+                        endMaterialId = readMaterial();
+                    }
+                    case GROUP -> {
+                        hasGroups = true;
+                        endGroupSetId = readGroups();
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        /**
+         * The second pass: add every face to the mesh.
+         */
+        @SuppressWarnings("unchecked")
+        void readFaces(List<Chunk> chunks) throws IOException {
+            int materialId = startMaterialId;
+            int groupSetId = startGroupSetId;
+            // Values seen so far in this chunk, for relative indices.
+            int vertexCount = 0, texCoordCount = 0, normalCount = 0;
+            long[] corners = new long[12];
+
+            for (pos = 0; pos < limit; nextLine()) {
+                skipSpaces();
+                if (pos >= limit)
+                    break;
+                switch (keyword()) {
+                    case VERTEX -> vertexCount++;
+                    case TEX_COORD -> texCoordCount++;
+                    case NORMAL -> normalCount++;
+                    case MATERIAL -> materialId = readMaterial();
+                    case GROUP -> groupSetId = readGroups();
+                    case FACE -> {
+                        int faceStart = pos;
+                        int count = 0;
+                        boolean hasTexCoords = false, hasNormals = false;
+                        while (true) {
+                            skipSpaces();
+                            if (atLineEnd())
+                                break;
+                            if (count * 3 == corners.length) {
+                                corners = Arrays.copyOf(corners, corners.length * 2);
+                            }
+                            long t = -1, n = -1;
+                            long v = resolve(readInt(), vertexOffset + vertexCount);
+                            if (peek() == '/') {
+                                pos++;
+                                if (peek() != '/') {
+                                    t = resolve(readInt(), texCoordOffset + texCoordCount);
+                                }
+                                if (peek() == '/') {
+                                    pos++;
+                                    n = resolve(readInt(), normalOffset + normalCount);
+                                }
+                            }
+                            if (count == 0) {
+                                hasTexCoords = t >= 0;
+                                hasNormals = n >= 0;
+                            } else if (hasTexCoords != t >= 0 || hasNormals != n >= 0) {
+                                throw malformed(faceStart, "Face mixes corners with and without attributes");
+                            }
+                            corners[count * 3] = v;
+                            corners[count * 3 + 1] = t;
+                            corners[count * 3 + 2] = n;
+                            count++;
+                        }
+                        if (count == 0) {
+                            throw malformed(faceStart, "Face has no vertices");
+                        }
+
+                        IndexedReference<Vertex>[] faceVertices = new IndexedReference[count];
+                        IndexedReference<Vector2>[] faceTexCoords = hasTexCoords ? new IndexedReference[count] : null;
+                        IndexedReference<Vector3>[] faceNormals = hasNormals ? new IndexedReference[count] : null;
+                        for (int i = 0; i < count; i++) {
+                            faceVertices[i] = find(chunks, corners[i * 3], VERTEX, start + faceStart);
+                            if (hasTexCoords) {
+                                faceTexCoords[i] = find(chunks, corners[i * 3 + 1], TEX_COORD, start + faceStart);
+                            }
+                            if (hasNormals) {
+                                faceNormals[i] = find(chunks, corners[i * 3 + 2], NORMAL, start + faceStart);
+                            }
+                        }
+                        mesh.putFace(Face.create(faceVertices, faceTexCoords, faceNormals, materialId, groupSetId));
+                        numFaces++;
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        /**
+         * Turn a 1-based or negative OBJ index into a 0-based index in the file.
+         */
+        private long resolve(int index, long seen) throws IOException {
+            if (index > 0)
+                return index - 1L;
+            if (index < 0 && seen + index >= 0)
+                return seen + index;
+            throw malformed(pos, "Invalid index " + index);
+        }
+
+        private int readMaterial() throws IOException {
+            skipSpaces();
+            int begin = pos;
+            while (!atLineEnd()) {
+                pos++;
+            }
+            int end = pos;
+            while (end > begin && isSpace(data.get(end - 1))) {
+                end--;
+            }
+            return end > begin ? Face.internMaterial(string(begin, end)) : Face.NO_MATERIAL;
+        }
+
+        private int readGroups() throws IOException {
+            List<String> groups = new ArrayList<>();
+            while (true) {
+                skipSpaces();
+                if (atLineEnd())
+                    break;
+                int begin = pos;
+                while (!atLineEnd() && !isSpace(data.get(pos))) {
+                    pos++;
+                }
+                groups.add(string(begin, pos));
+            }
+            return Face.internGroups(groups.equals(DEFAULT_GROUP) ? null : groups);
+        }
+
+        private String string(int begin, int end) {
+            byte[] bytes = new byte[end - begin];
+            data.get(begin, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Read floats until the end of the line.
+         *
+         * @return The number of floats read.
+         */
+        private int readFloats(float[] dest, int min, int max) throws IOException {
+            int lineStart = pos;
+            int count = 0;
+            while (true) {
+                skipSpaces();
+                if (atLineEnd())
+                    break;
+                float value = readFloat();
+                if (count < max) {
+                    dest[count] = value;
+                }
+                count++;
+            }
+            if (count < min) {
+                throw malformed(lineStart, "Expected at least " + min + " values");
+            }
+            return count;
+        }
+
+        private float readFloat() throws IOException {
+            int begin = pos;
+            boolean negative = false;
+            byte c = peek();
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                pos++;
+            }
+
+            long mantissa = 0;
+            int significantDigits = 0;
+            int exponent = 0;
+            boolean anyDigits = false;
+            while (isDigit(peek())) {
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (data.get(pos) - '0');
+                    if (mantissa != 0)
+                        significantDigits++;
+                } else {
+                    exponent++;
+                }
+                anyDigits = true;
+                pos++;
+            }
+            if (peek() == '.') {
+                pos++;
+                while (isDigit(peek())) {
+                    if (significantDigits < 18) {
+                        mantissa = mantissa * 10 + (data.get(pos) - '0');
+                        if (mantissa != 0)
+                            significantDigits++;
+                        exponent--;
+                    }
+                    anyDigits = true;
+                    pos++;
+                }
+            }
+            if (anyDigits && (peek() == 'e' || peek() == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if (peek() == '-' || peek() == '+') {
+                    negativeExponent = peek() == '-';
+                    pos++;
+                }
+                if (!isDigit(peek())) {
+                    return readFloatSlow(begin);
+                }
+                int value = 0;
+                while (isDigit(peek())) {
+                    value = Math.min(value * 10 + (data.get(pos) - '0'), 100000);
+                    pos++;
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+
+            if (!anyDigits || !(atLineEnd() || isSpace(peek())) || exponent < -22 || exponent > 22) {
+                return readFloatSlow(begin);
+            }
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return (float) (negative ? -value : value);
+        }
+
+        /**
+         * Parse a float the slow way, for values such as <code>NaN</code> or those
+         * with very large exponents.
+         */
+        private float readFloatSlow(int begin) throws IOException {
+            pos = begin;
+            while (!atLineEnd() && !isSpace(data.get(pos))) {
+                pos++;
+            }
+            String token = string(begin, pos);
+            try {
+                return Float.parseFloat(token);
+            } catch (NumberFormatException e) {
+                throw malformed(begin, "Invalid number '" + token + "'");
+            }
+        }
+
+        private int readInt() throws IOException {
+            int begin = pos;
+            boolean negative = false;
+            if (peek() == '-' || peek() == '+') {
+                negative = peek() == '-';
+                pos++;
+            }
+            if (!isDigit(peek())) {
+                throw malformed(begin, "Expected an index");
+            }
+            long value = 0;
+            while (isDigit(peek())) {
+                value = value * 10 + (data.get(pos) - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw malformed(begin, "Index is too large");
+                }
+                pos++;
+            }
+            return (int) (negative ? -value : value);
+        }
+
+        /**
+         * Read the keyword at the start of a line, leaving the position after it.
+         */
+        private int keyword() {
+            int begin = pos;
+            while (pos < limit && !isSpace(data.get(pos)) && data.get(pos) != '\n') {
+                pos++;
+            }
+            int length = pos - begin;
+            byte first = data.get(begin);
+            if (length == 1) {
+                return switch (first) {
+                    case 'v' -> VERTEX;
+                    case 'f' -> FACE;
+                    case 'g' -> GROUP;
+                    default -> OTHER;
+                };
+            }
+            if (length == 2 && first == 'v') {
+                return switch (data.get(begin + 1)) {
+                    case 't' -> TEX_COORD;
+                    case 'n' -> NORMAL;
+                    default -> OTHER;
+                };
+            }
+            if (length == 6 && first == 'u' && data.get(begin + 1) == 's' && data.get(begin + 2) == 'e'
+                    && data.get(begin + 3) == 'm' && data.get(begin + 4) == 't' && data.get(begin + 5) == 'l') {
+                return MATERIAL;
+            }
+            return OTHER;
+        }
+
+        private void nextLine() {
+            while (pos < limit && data.get(pos++) != '\n') {
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < limit && isSpace(data.get(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean atLineEnd() {
+            return pos >= limit || data.get(pos) == '\n' || data.get(pos) == '#';
+        }
+
+        private byte peek() {
+            return pos < limit ? data.get(pos) : (byte) '\n';
+        }
+
+        private IOException malformed(int position, String message) {
+            return new IOException(message + " at byte " + (start + position) + ".");
+        }
+    }
+
+    /**
+     * Find the reference of a value by its 0-based index in the file.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> IndexedReference<T> find(List<Chunk> chunks, long index, int type, long position)
+            throws IOException {
+        // Find the last chunk whose values start at or before the index. Chunks
+        // without values of this type share their offset with the next chunk.
+        int lo = 0, hi = chunks.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offset(chunks.get(mid), type) <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        Chunk chunk = chunks.get(lo);
+        RefList<?> list = switch (type) {
+            case VERTEX -> chunk.vertices;
+            case TEX_COORD -> chunk.texCoords;
+            default -> chunk.normals;
+        };
+        long local = index - offset(chunk, type);
+        if (local >= list.size) {
+            throw new IOException("Index " + (index + 1) + " is out of range at byte " + position + ".");
+        }
+        return (IndexedReference<T>) list.refs[(int) local];
+    }
+
+    private static long offset(Chunk chunk, int type) {
+        return switch (type) {
+            case VERTEX -> chunk.vertexOffset;
+            case TEX_COORD -> chunk.texCoordOffset;
+            default -> chunk.normalOffset;
+        };
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,251 @@
+package com.igrium.meshlib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * A concurrent hash table of faces keyed on their unordered vertex set. Two
+ * faces overlap if their sorted vertex indices are equal.
+ * </p>
+ * <p>
+ * Triangles and quads are keyed by their sorted indices packed into two
+ * <code>long</code>s, so they're checked without allocating. Larger faces are
+ * keyed by a hash of their sorted indices and compared in full when the hashes
+ * match. The table is split into stripes, each an open-addressing table
+ * guarded by its own monitor.
+ * </p>
+ * <p>
+ * If opposing faces are culled, a face that overlaps an existing face with the
+ * opposite winding removes it instead of being added. These are the faces
+ * between two adjacent closed shapes, which are never visible.
+ * </p>
+ */
+final class OverlapTable {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    private final boolean cullOpposing;
+    private final MeshMetrics metrics;
+
+    OverlapTable(boolean cullOpposing, MeshMetrics metrics) {
+        this.cullOpposing = cullOpposing;
+        this.metrics = metrics;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Add a face to the table.
+     *
+     * @param face     The face to add.
+     * @param override If an overlapping face exists, whether to replace it.
+     * @return The face that ended up in the table, or <code>null</code> if the
+     *         face was culled along with an opposing face.
+     */
+    Face put(Face face, boolean override) {
+        int count = face.getVertexCount();
+        long key0;
+        long key1;
+        int[] sorted = null;
+
+        if (count <= 4) {
+            // Missing corners sort last; the vertex count tells them apart.
+            int a = count > 0 ? face.getVertexIndex(0) : Integer.MAX_VALUE;
+            int b = count > 1 ? face.getVertexIndex(1) : Integer.MAX_VALUE;
+            int c = count > 2 ? face.getVertexIndex(2) : Integer.MAX_VALUE;
+            int d = count > 3 ? face.getVertexIndex(3) : Integer.MAX_VALUE;
+            int t;
+            // Sorting network for four values.
+            if (a > b) { t = a; a = b; b = t; }
+            if (c > d) { t = c; c = d; d = t; }
+            if (a > c) { t = a; a = c; c = t; }
+            if (b > d) { t = b; b = d; d = t; }
+            if (b > c) { t = b; b = c; c = t; }
+
+            key0 = ((long) a << 32) | (b & 0xFFFFFFFFL);
+            key1 = ((long) c << 32) | (d & 0xFFFFFFFFL);
+        } else {
+            sorted = sortedIndices(face);
+            long hash = 0;
+            for (int index : sorted) {
+                hash = mix(hash ^ index) + 0x9E3779B97F4A7C15L;
+            }
+            key0 = hash;
+            key1 = count;
+        }
+
+        long hash = mix(key0 ^ mix(key1 + 0x9E3779B97F4A7C15L));
+        Stripe stripe = stripes[(int) (hash >>> (64 - STRIPE_BITS))];
+        synchronized (stripe) {
+            return stripe.put(hash, key0, key1, sorted, face, override);
+        }
+    }
+
+    /**
+     * Copy every face in the table into a new list.
+     *
+     * @return All faces.
+     */
+    List<Face> values() {
+        List<Face> values = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Face face : stripe.faces) {
+                    if (face != null) {
+                        values.add(face);
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private final class Stripe {
+        long[] hashes = new long[INITIAL_CAPACITY];
+        long[] keys0 = new long[INITIAL_CAPACITY];
+        long[] keys1 = new long[INITIAL_CAPACITY];
+        Face[] faces = new Face[INITIAL_CAPACITY];
+        int size;
+
+        Face put(long hash, long key0, long key1, int[] sorted, Face face, boolean override) {
+            if ((size + 1) * 2 > faces.length) {
+                grow();
+            }
+
+            int mask = faces.length - 1;
+            for (int slot = (int) hash & mask;; slot = (slot + 1) & mask) {
+                Face existing = faces[slot];
+                if (existing == null) {
+                    hashes[slot] = hash;
+                    keys0[slot] = key0;
+                    keys1[slot] = key1;
+                    faces[slot] = face;
+                    size++;
+                    return face;
+                }
+
+                if (hashes[slot] == hash && keys0[slot] == key0 && keys1[slot] == key1
+                        && overlaps(existing, face, sorted)) {
+                    metrics.overlapCollisions.increment();
+                    if (cullOpposing && isReversed(existing, face)) {
+                        remove(slot);
+                        metrics.overlapCulls.increment();
+                        return null;
+                    }
+                    if (override) {
+                        faces[slot] = face;
+                        metrics.overlapOverrides.increment();
+                        return face;
+                    }
+                    return existing;
+                }
+            }
+        }
+
+        /**
+         * Remove the entry in a slot, shifting later entries of its probe
+         * sequence back so that they can still be found.
+         */
+        private void remove(int slot) {
+            int mask = faces.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; faces[next] != null; next = (next + 1) & mask) {
+                int home = (int) hashes[next] & mask;
+                // Only move entries whose home slot isn't between the hole and them.
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    hashes[hole] = hashes[next];
+                    keys0[hole] = keys0[next];
+                    keys1[hole] = keys1[next];
+                    faces[hole] = faces[next];
+                    hole = next;
+                }
+            }
+            faces[hole] = null;
+            size--;
+        }
+
+        private void grow() {
+            long[] oldHashes = hashes;
+            long[] oldKeys0 = keys0;
+            long[] oldKeys1 = keys1;
+            Face[] oldFaces = faces;
+
+            int capacity = oldFaces.length * 2;
+            hashes = new long[capacity];
+            keys0 = new long[capacity];
+            keys1 = new long[capacity];
+            faces = new Face[capacity];
+
+            int mask = capacity - 1;
+            for (int i = 0; i < oldFaces.length; i++) {
+                if (oldFaces[i] == null)
+                    continue;
+
+                int slot = (int) oldHashes[i] & mask;
+                while (faces[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                keys0[slot] = oldKeys0[i];
+                keys1[slot] = oldKeys1[i];
+                faces[slot] = oldFaces[i];
+            }
+        }
+    }
+
+    private static boolean overlaps(Face existing, Face face, int[] sorted) {
+        int count = face.getVertexCount();
+        if (existing.getVertexCount() != count)
+            return false;
+
+        // Packed keys already contain every index.
+        return count <= 4 || Arrays.equals(sortedIndices(existing), sorted);
+    }
+
+    /**
+     * Check if a face has the same vertices as another in the opposite winding
+     * order. Both faces must have the same number of vertices.
+     */
+    private static boolean isReversed(Face existing, Face face) {
+        int count = existing.getVertexCount();
+
+        for (int start = 0; start < count; start++) {
+            if (existing.getVertexIndex(start) != face.getVertexIndex(0))
+                continue;
+
+            int i = 1;
+            while (i < count && face.getVertexIndex(i) == existing.getVertexIndex(Math.floorMod(start - i, count))) {
+                i++;
+            }
+            if (i == count)
+                return true;
+        }
+        return false;
+    }
+
+    private static int[] sortedIndices(Face face) {
+        int[] indices = new int[face.getVertexCount()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = face.getVertexIndex(i);
+        }
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * The murmur3 64-bit finalizer.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
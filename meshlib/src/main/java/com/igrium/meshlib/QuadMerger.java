@@ -0,0 +1,585 @@
+package com.igrium.meshlib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+/**
+ * <p>
+ * An optional compile stage that merges adjacent coplanar quads into larger
+ * quads (greedy meshing). Only axis-aligned rectangles are merged, and only
+ * with rectangles in the same plane that share an entire edge and have the same
+ * winding, material, groups, vertex color, normal and texture mapping. Every
+ * plane is merged in parallel.
+ * </p>
+ * <p>
+ * Quads are first merged into strips along one axis, and then strips of equal
+ * width are stacked along the other. Each merged quad takes the place of the
+ * first face it was merged from, so sorted meshes stay sorted. Faces that
+ * can't be merged are kept as they are.
+ * </p>
+ *
+ * @see ConcurrentMeshBuilder#setQuadMerger(QuadMerger)
+ */
+public class QuadMerger {
+
+    // Number of faces each task classifies at once.
+    private static final int FACE_CHUNK_SIZE = 4096;
+
+    private boolean texCoordTiling;
+
+    /**
+     * Set whether texture coordinates may be assumed to tile. Quads can only be
+     * merged if their texture coordinates are the same linear function of their
+     * position. If tiling is allowed, that function may be offset by whole
+     * texture repeats between quads, so a grid of quads that each cover the
+     * whole texture is merged into a quad that repeats it. This is only correct
+     * for textures that wrap. Defaults to <code>false</code>.
+     *
+     * @param texCoordTiling Allow tiling.
+     * @return <code>this</code>
+     */
+    public QuadMerger texCoordTiling(boolean texCoordTiling) {
+        this.texCoordTiling = texCoordTiling;
+        return this;
+    }
+
+    public boolean isTexCoordTiling() {
+        return texCoordTiling;
+    }
+
+    private record SourceFace(int count, int[] vertices, int[] texCoords, int[] normals, String material,
+            List<String> groups) {
+    }
+
+    /**
+     * Maps a position in a quad's plane to a texture coordinate.
+     */
+    private record TexCoordMap(float us, float ut, float u0, float vs, float vt, float v0) {
+        Vector2 at(float s, float t) {
+            return new Vector2(us * s + ut * t + u0, vs * s + vt * t + v0);
+        }
+    }
+
+    /**
+     * Everything that quads must have in common to be merged.
+     *
+     * @param axis             The axis the plane is perpendicular to.
+     * @param plane            The plane's coordinate along that axis.
+     * @param counterClockwise Whether the quad is wound counter-clockwise in the
+     *                         plane's <code>(s, t)</code> coordinates.
+     */
+    private record PlaneKey(int axis, float plane, boolean counterClockwise, String material, List<String> groups,
+            Vector3 color, Vector3 normal, TexCoordMap texCoords) {
+    }
+
+    private record Candidate(PlaneKey key, float s0, float s1, float t0, float t1) {
+    }
+
+    /**
+     * A rectangle of one or more merged faces.
+     */
+    private static final class Region {
+        final PlaneKey key;
+        final float s0;
+        final float t0;
+        float s1;
+        float t1;
+        int[] faces;
+        int size;
+
+        Region(PlaneKey key, int face, Candidate candidate) {
+            this.key = key;
+            this.s0 = candidate.s0();
+            this.s1 = candidate.s1();
+            this.t0 = candidate.t0();
+            this.t1 = candidate.t1();
+            this.faces = new int[] { face };
+            this.size = 1;
+        }
+
+        void absorb(Region other) {
+            if (size + other.size > faces.length) {
+                faces = Arrays.copyOf(faces, Math.max(faces.length * 2, size + other.size));
+            }
+            System.arraycopy(other.faces, 0, faces, size, other.size);
+            size += other.size;
+        }
+
+        int firstFace() {
+            int first = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                first = Math.min(first, faces[i]);
+            }
+            return first;
+        }
+    }
+
+    /**
+     * Merge the quads in a mesh.
+     *
+     * @param mesh The mesh to merge.
+     * @param pool The pool to merge in.
+     * @return A new view of the merged mesh, which only contains the vertices,
+     *         texture coordinates and normals that its faces use.
+     */
+    public MeshView merge(MeshView mesh, ForkJoinPool pool) {
+        int numFaces = mesh.getNumFaces();
+        SourceFace[] faces = new SourceFace[numFaces];
+        Candidate[] candidates = new Candidate[numFaces];
+
+        int chunkCount = (numFaces + FACE_CHUNK_SIZE - 1) / FACE_CHUNK_SIZE;
+        inPool(pool, () -> IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+            int from = chunk * FACE_CHUNK_SIZE;
+            int[] next = { from };
+            mesh.forEachFace(from, Math.min(numFaces, from + FACE_CHUNK_SIZE),
+                    (count, vertices, texCoords, normals, material, groups) -> {
+                        SourceFace face = new SourceFace(count, Arrays.copyOf(vertices, count),
+                                texCoords != null ? Arrays.copyOf(texCoords, count) : null,
+                                normals != null ? Arrays.copyOf(normals, count) : null, material, groups);
+                        faces[next[0]] = face;
+                        candidates[next[0]] = classify(mesh, face);
+                        next[0]++;
+                    });
+        }));
+
+        // Every plane is a separate partition.
+        Map<PlaneKey, List<Region>> planes = new HashMap<>();
+        for (int i = 0; i < numFaces; i++) {
+            Candidate candidate = candidates[i];
+            if (candidate != null) {
+                planes.computeIfAbsent(candidate.key(), k -> new ArrayList<>())
+                        .add(new Region(candidate.key(), i, candidate));
+            }
+        }
+
+        List<List<Region>> merged = new ArrayList<>(planes.values());
+        inPool(pool, () -> IntStream.range(0, merged.size()).parallel()
+                .forEach(i -> merged.set(i, mergePlane(merged.get(i)))));
+
+        Region[] replacements = new Region[numFaces];
+        boolean[] consumed = new boolean[numFaces];
+        for (List<Region> regions : merged) {
+            for (Region region : regions) {
+                if (region.size < 2)
+                    continue;
+                for (int i = 0; i < region.size; i++) {
+                    consumed[region.faces[i]] = true;
+                }
+                replacements[region.firstFace()] = region;
+            }
+        }
+
+        MergedView.Builder builder = new MergedView.Builder(mesh);
+        for (int i = 0; i < numFaces; i++) {
+            if (replacements[i] != null) {
+                builder.addRegion(replacements[i], faces, candidates);
+            } else if (!consumed[i]) {
+                builder.addFace(faces[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void inPool(ForkJoinPool pool, Runnable task) {
+        if (ForkJoinTask.getPool() == pool) {
+            task.run();
+        } else {
+            pool.submit(task).join();
+        }
+    }
+
+    /**
+     * Check whether a face can be merged, and find its rectangle if so.
+     */
+    private Candidate classify(MeshView mesh, SourceFace face) {
+        if (face.count() != 4)
+            return null;
+
+        float[][] positions = new float[4][3];
+        for (int i = 0; i < 4; i++) {
+            for (int c = 0; c < 3; c++) {
+                positions[i][c] = mesh.getVertexComponent(face.vertices()[i], c);
+            }
+        }
+
+        int axis = -1;
+        for (int a = 0; a < 3 && axis < 0; a++) {
+            float value = positions[0][a];
+            if (positions[1][a] == value && positions[2][a] == value && positions[3][a] == value) {
+                axis = a;
+            }
+        }
+        if (axis < 0)
+            return null;
+
+        int sAxis = axis == 0 ? 1 : 0;
+        int tAxis = axis == 2 ? 1 : 2;
+        float s0 = Float.POSITIVE_INFINITY, s1 = Float.NEGATIVE_INFINITY;
+        float t0 = Float.POSITIVE_INFINITY, t1 = Float.NEGATIVE_INFINITY;
+        for (float[] position : positions) {
+            s0 = Math.min(s0, position[sAxis]);
+            s1 = Math.max(s1, position[sAxis]);
+            t0 = Math.min(t0, position[tAxis]);
+            t1 = Math.max(t1, position[tAxis]);
+        }
+        if (!(s0 < s1 && t0 < t1))
+            return null;
+
+        // Identify each corner as a bit pattern: 1 if it's on s1, 2 if it's on t1.
+        int[] corners = new int[4];
+        int seen = 0;
+        for (int i = 0; i < 4; i++) {
+            float s = positions[i][sAxis];
+            float t = positions[i][tAxis];
+            if (s != s0 && s != s1 || t != t0 && t != t1)
+                return null;
+            corners[i] = (s == s1 ? 1 : 0) | (t == t1 ? 2 : 0);
+            seen |= 1 << corners[i];
+        }
+        if (seen != 0b1111)
+            return null;
+
+        // Every edge must run along exactly one axis.
+        for (int i = 0; i < 4; i++) {
+            int diff = corners[i] ^ corners[(i + 1) % 4];
+            if (diff != 1 && diff != 2)
+                return null;
+        }
+        int start = indexOf(corners, 0);
+        boolean counterClockwise = corners[(start + 1) % 4] == 1;
+
+        Vector3 color = null;
+        int dimensions = mesh.getVertexDimensions();
+        if (dimensions >= 6) {
+            color = uniform(face.vertices(), (index, c) -> mesh.getVertexComponent(index, c + 3));
+            if (color == null)
+                return null;
+        }
+
+        Vector3 normal = null;
+        if (face.normals() != null) {
+            normal = uniform(face.normals(), mesh::getNormalComponent);
+            if (normal == null)
+                return null;
+        }
+
+        TexCoordMap texCoords = null;
+        if (face.texCoords() != null) {
+            texCoords = mapTexCoords(mesh, face.texCoords(), corners, s0, s1, t0, t1);
+            if (texCoords == null)
+                return null;
+        }
+
+        PlaneKey key = new PlaneKey(axis, positions[0][axis], counterClockwise, face.material(),
+                face.groups(), color, normal, texCoords);
+        return new Candidate(key, s0, s1, t0, t1);
+    }
+
+    private interface ComponentReader {
+        float get(int index, int component);
+    }
+
+    /**
+     * Get the value of three components if they're the same at every index.
+     */
+    private static Vector3 uniform(int[] indices, ComponentReader reader) {
+        float x = reader.get(indices[0], 0);
+        float y = reader.get(indices[0], 1);
+        float z = reader.get(indices[0], 2);
+        for (int i = 1; i < indices.length; i++) {
+            if (reader.get(indices[i], 0) != x || reader.get(indices[i], 1) != y || reader.get(indices[i], 2) != z)
+                return null;
+        }
+        return new Vector3(x, y, z);
+    }
+
+    /**
+     * Find the linear function from the plane to texture coordinates that a
+     * quad uses, if there is one.
+     */
+    private TexCoordMap mapTexCoords(MeshView mesh, int[] texCoords, int[] corners, float s0, float s1, float t0,
+            float t1) {
+        float[] u = new float[4];
+        float[] v = new float[4];
+        for (int i = 0; i < 4; i++) {
+            u[corners[i]] = mesh.getTexCoordComponent(texCoords[i], 0);
+            v[corners[i]] = mesh.getTexCoordComponent(texCoords[i], 1);
+        }
+        if (u[3] != u[1] + u[2] - u[0] || v[3] != v[1] + v[2] - v[0])
+            return null;
+
+        float us = (u[1] - u[0]) / (s1 - s0);
+        float ut = (u[2] - u[0]) / (t1 - t0);
+        float vs = (v[1] - v[0]) / (s1 - s0);
+        float vt = (v[2] - v[0]) / (t1 - t0);
+        float u0 = u[0] - us * s0 - ut * t0;
+        float v0 = v[0] - vs * s0 - vt * t0;
+        if (texCoordTiling) {
+            u0 -= (float) Math.floor(u0);
+            v0 -= (float) Math.floor(v0);
+        }
+        return new TexCoordMap(us, ut, u0, vs, vt, v0);
+    }
+
+    private static int indexOf(int[] array, int value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Greedily merge the rectangles in a plane, first into strips along
+     * <code>s</code> and then by stacking strips along <code>t</code>.
+     */
+    private static List<Region> mergePlane(List<Region> regions) {
+        regions.sort(Comparator.<Region>comparingDouble(r -> r.t0).thenComparingDouble(r -> r.t1)
+                .thenComparingDouble(r -> r.s0));
+        List<Region> strips = new ArrayList<>();
+        Region current = null;
+        for (Region region : regions) {
+            if (current != null && region.t0 == current.t0 && region.t1 == current.t1 && region.s0 == current.s1) {
+                current.s1 = region.s1;
+                current.absorb(region);
+            } else {
+                current = region;
+                strips.add(region);
+            }
+        }
+
+        strips.sort(Comparator.<Region>comparingDouble(r -> r.s0).thenComparingDouble(r -> r.s1)
+                .thenComparingDouble(r -> r.t0));
+        List<Region> merged = new ArrayList<>();
+        current = null;
+        for (Region strip : strips) {
+            if (current != null && strip.s0 == current.s0 && strip.s1 == current.s1 && strip.t0 == current.t1) {
+                current.t1 = strip.t1;
+                current.absorb(strip);
+            } else {
+                current = strip;
+                merged.add(strip);
+            }
+        }
+        return merged;
+    }
+
+    private record OutputFace(int[] vertices, int[] texCoords, int[] normals, String material,
+            List<String> groups) {
+    }
+
+    private record MergedView(int vertexDimensions, List<Vertex> vertices, List<Vector2> texCoords,
+            List<Vector3> normals, List<OutputFace> faces) implements MeshView {
+
+        /**
+         * Collects the attributes of the merged mesh. Merged quads reuse the
+         * vertices of the faces they were merged from, so they stay connected to
+         * faces that weren't merged.
+         */
+        static final class Builder {
+            private final MeshView mesh;
+            private final List<Vertex> vertices = new ArrayList<>();
+            private final List<Vector2> texCoords = new ArrayList<>();
+            private final List<Vector3> normals = new ArrayList<>();
+            private final int[] vertexRemap;
+            private final int[] texCoordRemap;
+            private final int[] normalRemap;
+            private final Map<Vector2, Integer> newTexCoords = new HashMap<>();
+            private final List<OutputFace> faces = new ArrayList<>();
+
+            Builder(MeshView mesh) {
+                this.mesh = mesh;
+                vertexRemap = newRemap(mesh.getNumVertices());
+                texCoordRemap = newRemap(mesh.getNumTexCoords());
+                normalRemap = newRemap(mesh.getNumNormals());
+            }
+
+            private static int[] newRemap(int size) {
+                int[] remap = new int[size];
+                Arrays.fill(remap, -1);
+                return remap;
+            }
+
+            void addFace(SourceFace face) {
+                int[] vertexIndices = new int[face.count()];
+                int[] texCoordIndices = face.texCoords() != null ? new int[face.count()] : null;
+                int[] normalIndices = face.normals() != null ? new int[face.count()] : null;
+
+                for (int i = 0; i < face.count(); i++) {
+                    vertexIndices[i] = remap(vertexRemap, face.vertices()[i], vertices, mesh::getVertex);
+                    if (texCoordIndices != null) {
+                        texCoordIndices[i] = remap(texCoordRemap, face.texCoords()[i], texCoords,
+                                mesh::getTexCoord);
+                    }
+                    if (normalIndices != null) {
+                        normalIndices[i] = remap(normalRemap, face.normals()[i], normals, mesh::getNormal);
+                    }
+                }
+                faces.add(new OutputFace(vertexIndices, texCoordIndices, normalIndices, face.material(),
+                        face.groups()));
+            }
+
+            private interface Getter<T> {
+                T get(int index);
+            }
+
+            private static <T> int remap(int[] remap, int index, List<T> values, Getter<T> getter) {
+                if (remap[index] < 0) {
+                    remap[index] = values.size();
+                    values.add(getter.get(index));
+                }
+                return remap[index];
+            }
+
+            /**
+             * Add a merged quad. Every corner of a region is a corner of one of
+             * the faces it absorbed, so that face's vertex and normal are used.
+             * Texture coordinates are only new if tiling moved them.
+             */
+            void addRegion(Region region, SourceFace[] sourceFaces, Candidate[] candidates) {
+                PlaneKey key = region.key;
+                float[] s = { region.s0, region.s1, region.s1, region.s0 };
+                float[] t = { region.t0, region.t0, region.t1, region.t1 };
+                if (!key.counterClockwise()) {
+                    // (s0, t0), (s0, t1), (s1, t1), (s1, t0)
+                    s = new float[] { region.s0, region.s0, region.s1, region.s1 };
+                    t = new float[] { region.t0, region.t1, region.t1, region.t0 };
+                }
+
+                int sAxis = key.axis() == 0 ? 1 : 0;
+                int tAxis = key.axis() == 2 ? 1 : 2;
+                int[] vertexIndices = new int[4];
+                int[] texCoordIndices = key.texCoords() != null ? new int[4] : null;
+                int[] normalIndices = key.normal() != null ? new int[4] : null;
+
+                for (int i = 0; i < 4; i++) {
+                    SourceFace face = null;
+                    int corner = -1;
+                    for (int f = 0; f < region.size && corner < 0; f++) {
+                        Candidate candidate = candidates[region.faces[f]];
+                        if ((candidate.s0() == s[i] || candidate.s1() == s[i])
+                                && (candidate.t0() == t[i] || candidate.t1() == t[i])) {
+                            face = sourceFaces[region.faces[f]];
+                            corner = findCorner(face, sAxis, s[i], tAxis, t[i]);
+                        }
+                    }
+                    if (corner < 0)
+                        throw new IllegalStateException("Merged quad has a corner that none of its faces have.");
+
+                    vertexIndices[i] = remap(vertexRemap, face.vertices()[corner], vertices, mesh::getVertex);
+                    if (texCoordIndices != null) {
+                        Vector2 texCoord = key.texCoords().at(s[i], t[i]);
+                        int source = face.texCoords()[corner];
+                        if (mesh.getTexCoordComponent(source, 0) == texCoord.x()
+                                && mesh.getTexCoordComponent(source, 1) == texCoord.y()) {
+                            texCoordIndices[i] = remap(texCoordRemap, source, texCoords, mesh::getTexCoord);
+                        } else {
+                            texCoordIndices[i] = intern(newTexCoords, texCoords, texCoord);
+                        }
+                    }
+                    if (normalIndices != null) {
+                        normalIndices[i] = remap(normalRemap, face.normals()[corner], normals, mesh::getNormal);
+                    }
+                }
+                faces.add(new OutputFace(vertexIndices, texCoordIndices, normalIndices, key.material(),
+                        key.groups()));
+            }
+
+            private int findCorner(SourceFace face, int sAxis, float s, int tAxis, float t) {
+                for (int i = 0; i < face.count(); i++) {
+                    int vertex = face.vertices()[i];
+                    if (mesh.getVertexComponent(vertex, sAxis) == s && mesh.getVertexComponent(vertex, tAxis) == t)
+                        return i;
+                }
+                return -1;
+            }
+
+            private static <T> int intern(Map<T, Integer> indices, List<T> values, T value) {
+                return indices.computeIfAbsent(value, v -> {
+                    values.add(v);
+                    return values.size() - 1;
+                });
+            }
+
+            MergedView build() {
+                return new MergedView(mesh.getVertexDimensions(), vertices, texCoords, normals, faces);
+            }
+        }
+
+        @Override
+        public int getNumVertices() {
+            return vertices.size();
+        }
+
+        @Override
+        public Vertex getVertex(int index) {
+            return vertices.get(index);
+        }
+
+        @Override
+        public int getVertexDimensions() {
+            return vertexDimensions;
+        }
+
+        @Override
+        public float getVertexComponent(int index, int component) {
+            return vertices.get(index).get(component);
+        }
+
+        @Override
+        public int getNumTexCoords() {
+            return texCoords.size();
+        }
+
+        @Override
+        public Vector2 getTexCoord(int index) {
+            return texCoords.get(index);
+        }
+
+        @Override
+        public float getTexCoordComponent(int index, int component) {
+            return texCoords.get(index).get(component);
+        }
+
+        @Override
+        public int getNumNormals() {
+            return normals.size();
+        }
+
+        @Override
+        public Vector3 getNormal(int index) {
+            return normals.get(index);
+        }
+
+        @Override
+        public float getNormalComponent(int index, int component) {
+            return normals.get(index).get(component);
+        }
+
+        @Override
+        public int getNumFaces() {
+            return faces.size();
+        }
+
+        @Override
+        public <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor)
+                throws E {
+            Objects.checkFromToIndex(fromIndex, toIndex, faces.size());
+            for (OutputFace face : faces.subList(fromIndex, toIndex)) {
+                visitor.visit(face.vertices().length, face.vertices(), face.texCoords(), face.normals(),
+                        face.material(), face.groups());
+            }
+        }
+    }
+}
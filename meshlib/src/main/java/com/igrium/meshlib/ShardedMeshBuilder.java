@@ -0,0 +1,460 @@
+package com.igrium.meshlib;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import com.igrium.meshlib.MeshMetrics.Phase;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+import de.javagl.obj.FloatTuple;
+
+/**
+ * A mesh builder where every thread writes into its own shard. Each shard is
+ * guarded by its own lock, which is only ever contended while the mesh is
+ * compiling. Shards are merged, deduplicated and re-indexed in the compile
+ * stage.
+ */
+final class ShardedMeshBuilder extends ConcurrentMeshBuilder {
+
+    // The only strong references to the shards. Threads only weakly reference
+    // their shard, so a thread that outlives the builder doesn't keep it alive.
+    private final Queue<Shard> shards = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<WeakReference<Shard>> localShard = new ThreadLocal<>();
+
+    private static class Shard {
+        final Lock lock;
+
+        final LocalReferenceMap<Vertex> vertices;
+        final LocalReferenceMap<Vector2> texCoords;
+        final LocalReferenceMap<Vector3> normals;
+
+        final List<Face> faces = new ArrayList<>();
+
+        Shard(Lock lock, LocalReferenceMap<Vertex> vertices, LocalReferenceMap<Vector2> texCoords,
+                LocalReferenceMap<Vector3> normals) {
+            this.lock = lock;
+            this.vertices = vertices;
+            this.texCoords = texCoords;
+            this.normals = normals;
+        }
+
+        // Must be called while holding the shard's lock.
+        ShardState capture() {
+            return new ShardState(vertices.capture(), texCoords.capture(), normals.capture(),
+                    new ArrayList<>(faces));
+        }
+    }
+
+    /**
+     * A copy of a shard's contents, which can be merged while the shard keeps
+     * being written to.
+     */
+    private record ShardState(LocalValues<Vertex> vertices, LocalValues<Vector2> texCoords,
+            LocalValues<Vector3> normals, List<Face> faces) {
+    }
+
+    /**
+     * A copy of a local reference map's values.
+     *
+     * @param values All values, by local index.
+     * @param reused Indices that <code>getOrAdd</code> has handed out.
+     */
+    private record LocalValues<T>(List<T> values, BitSet reused) {
+    }
+
+    ShardedMeshBuilder(MeshBuilderSettings settings) {
+        super(settings);
+    }
+
+    /**
+     * Get the calling thread's shard, creating it if the thread has none yet.
+     */
+    private Shard localShard() {
+        WeakReference<Shard> ref = localShard.get();
+        Shard shard = ref != null ? ref.get() : null;
+        if (shard == null) {
+            Lock lock = new ReentrantLock();
+            shard = new Shard(lock, new LocalReferenceMap<>(metrics.getVertices(), lock),
+                    new LocalReferenceMap<>(metrics.getTexCoords(), lock),
+                    new LocalReferenceMap<>(metrics.getNormals(), lock));
+            shards.add(shard);
+            localShard.set(new WeakReference<>(shard));
+        }
+        return shard;
+    }
+
+    private class LocalReferenceMap<T> extends ReferenceMap<T> {
+        private final Lock lock;
+        private final Map<T, IndexedReference<T>> set = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+        // Indices that getOrAdd has handed out. Only these may be merged with equal
+        // values from other shards; the rest were explicitly added as unique.
+        private final BitSet reused = new BitSet();
+
+        LocalReferenceMap(MeshMetrics.AttributeMetrics counters, Lock lock) {
+            super(counters);
+            this.lock = lock;
+        }
+
+        @Override
+        public IndexedReference<T> getOrAdd(T value) {
+            lock.lock();
+            try {
+                IndexedReference<T> ref = lookup(value);
+                reused.set(ref.index());
+                return ref;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public IndexedReference<T> add(T value) {
+            lock.lock();
+            try {
+                IndexedReference<T> ref = append(value);
+                set.putIfAbsent(value, ref);
+                return ref;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            lock.lock();
+            try {
+                return values.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Must be called while holding the shard's lock.
+        @Override
+        int[] resolve(T[] values, int count, boolean reuse) {
+            int[] indices = new int[count];
+            for (int i = 0; i < count; i++) {
+                T value = values[i];
+                IndexedReference<T> ref;
+                if (reuse) {
+                    ref = lookup(value);
+                    reused.set(ref.index());
+                } else {
+                    ref = append(value);
+                    set.putIfAbsent(value, ref);
+                }
+                indices[i] = ref.index();
+            }
+            return indices;
+        }
+
+        // Same rules as Shard.capture.
+        LocalValues<T> capture() {
+            return new LocalValues<>(new ArrayList<>(values), (BitSet) reused.clone());
+        }
+
+        private IndexedReference<T> lookup(T value) {
+            counters.lookup();
+            return set.computeIfAbsent(value, this::appendMissing);
+        }
+
+        private IndexedReference<T> appendMissing(T value) {
+            counters.miss();
+            return append(value);
+        }
+
+        private IndexedReference<T> append(T value) {
+            IndexedReference<T> ref = new IndexedReference<>(value, values.size());
+            values.add(value);
+            return ref;
+        }
+
+        @Override
+        T get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        float getComponent(int index, int component) {
+            return ((FloatTuple) values.get(index)).get(component);
+        }
+    }
+
+    /**
+     * The merged values of one attribute type across all shards.
+     *
+     * @param values    All merged values, in output order.
+     * @param remaps    For each shard, an array mapping its local indices to
+     *                  indices in <code>values</code>.
+     * @param canonical Global indices of every deduplicated value.
+     */
+    private record MergedAttribute<T>(List<T> values, int[][] remaps, Map<T, Integer> canonical) {
+    }
+
+    @Override
+    public ReferenceMap<Vertex> getVertices() {
+        return localShard().vertices;
+    }
+
+    @Override
+    public ReferenceMap<Vector2> getTexCoords() {
+        return localShard().texCoords;
+    }
+
+    @Override
+    public ReferenceMap<Vector3> getNormals() {
+        return localShard().normals;
+    }
+
+    @Override
+    public Collection<Face> getFaces() {
+        List<Face> faces = new ArrayList<>();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                faces.addAll(shard.faces);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return Collections.unmodifiableList(faces);
+    }
+
+    @Override
+    public Face putFace(Face face) {
+        Shard shard = localShard();
+        shard.lock.lock();
+        try {
+            shard.faces.add(face);
+        } finally {
+            shard.lock.unlock();
+        }
+        metrics.facesAdded.increment();
+        return face;
+    }
+
+    @Override
+    public void putFaces(FaceBatch batch) {
+        if (batch.isEmpty())
+            return;
+
+        // The shard's lock guards its reference maps too, so it's all that's needed.
+        Shard shard = localShard();
+        shard.lock.lock();
+        try {
+            int[] vertexIndices = shard.vertices.resolve(batch.getVertices(), batch.getNumVertices(),
+                    batch.isReuseVertices());
+            int[] texCoordIndices = shard.texCoords.resolve(batch.getTexCoords(), batch.getNumTexCoords(), true);
+            int[] normalIndices = shard.normals.resolve(batch.getNormals(), batch.getNumNormals(), true);
+            for (int i = 0; i < batch.size(); i++) {
+                shard.faces.add(batch.createFace(this, i, vertexIndices, texCoordIndices, normalIndices));
+            }
+            metrics.facesAdded.add(batch.size());
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOverlapChecking() {
+        return false;
+    }
+
+    @Override
+    Supplier<MeshView> captureView(boolean sort, MeshMetrics.CompileTimer timer) {
+        // Every thread only writes to its own shard, so each shard only has to be
+        // consistent with itself. Shards created after this point are simply left
+        // for the next compile.
+        List<ShardState> states = new ArrayList<>();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                states.add(shard.capture());
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return () -> merge(states, sort, timer);
+    }
+
+    private record MergedFace(Face face, int[] vertices, int[] texCoords, int[] normals) {
+    }
+
+    private MeshView merge(List<ShardState> shards, boolean sort, MeshMetrics.CompileTimer timer) {
+        long attributesStart = System.nanoTime();
+        var vertexFuture = CompletableFuture.supplyAsync(() -> mergeAttribute(shards, ShardState::vertices),
+                getCompilePool());
+        var texCoordFuture = CompletableFuture.supplyAsync(() -> mergeAttribute(shards, ShardState::texCoords),
+                getCompilePool());
+        MergedAttribute<Vector3> normals = mergeAttribute(shards, ShardState::normals);
+        MergedAttribute<Vertex> vertices = vertexFuture.join();
+        MergedAttribute<Vector2> texCoords = texCoordFuture.join();
+        timer.record(Phase.ATTRIBUTES, attributesStart);
+
+        long facesStart = System.nanoTime();
+        MergedFace[] faces = inCompilePool(() -> IntStream.range(0, shards.size()).parallel().boxed()
+                .flatMap(shardIndex -> {
+                    ShardState shard = shards.get(shardIndex);
+                    List<MergedFace> remapped = new ArrayList<>(shard.faces().size());
+
+                    for (Face face : shard.faces()) {
+                        remapped.add(new MergedFace(face,
+                                remap(face.getVertices(), shard.vertices(), vertices, shardIndex),
+                                remap(face.getTexCoords(), shard.texCoords(), texCoords, shardIndex),
+                                remap(face.getNormals(), shard.normals(), normals, shardIndex)));
+                    }
+                    return remapped.stream();
+                }).toArray(MergedFace[]::new));
+        timer.record(Phase.FACES, facesStart);
+
+        if (sort) {
+            long sortStart = System.nanoTime();
+            inCompilePool(() -> {
+                FaceOrder order = Face.order();
+                Arrays.parallelSort(faces, (a, b) -> order.compare(a.face(), b.face()));
+                return null;
+            });
+            timer.record(Phase.SORT, sortStart);
+        }
+
+        return new MergedView(vertices.values(), texCoords.values(), normals.values(), Arrays.asList(faces));
+    }
+
+    private record MergedView(List<Vertex> vertices, List<Vector2> texCoords, List<Vector3> normals,
+            List<MergedFace> faces) implements MeshView {
+
+        @Override
+        public int getNumVertices() {
+            return vertices.size();
+        }
+
+        @Override
+        public Vertex getVertex(int index) {
+            return vertices.get(index);
+        }
+
+        @Override
+        public int getVertexDimensions() {
+            return 6;
+        }
+
+        @Override
+        public float getVertexComponent(int index, int component) {
+            return vertices.get(index).get(component);
+        }
+
+        @Override
+        public int getNumTexCoords() {
+            return texCoords.size();
+        }
+
+        @Override
+        public Vector2 getTexCoord(int index) {
+            return texCoords.get(index);
+        }
+
+        @Override
+        public float getTexCoordComponent(int index, int component) {
+            return texCoords.get(index).get(component);
+        }
+
+        @Override
+        public int getNumNormals() {
+            return normals.size();
+        }
+
+        @Override
+        public Vector3 getNormal(int index) {
+            return normals.get(index);
+        }
+
+        @Override
+        public float getNormalComponent(int index, int component) {
+            return normals.get(index).get(component);
+        }
+
+        @Override
+        public int getNumFaces() {
+            return faces.size();
+        }
+
+        @Override
+        public <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor)
+                throws E {
+            for (MergedFace face : faces.subList(fromIndex, toIndex)) {
+                visitor.visit(face.vertices().length, face.vertices(), face.texCoords(), face.normals(),
+                        face.face().getMaterial(), Face.groupSet(face.face().getGroupSetId()));
+            }
+        }
+    }
+
+    private static <T> MergedAttribute<T> mergeAttribute(List<ShardState> shards,
+            Function<ShardState, LocalValues<T>> getter) {
+        List<T> values = new ArrayList<>();
+        Map<T, Integer> canonical = new HashMap<>();
+        int[][] remaps = new int[shards.size()][];
+
+        for (int s = 0; s < shards.size(); s++) {
+            LocalValues<T> map = getter.apply(shards.get(s));
+            int[] remap = new int[map.values().size()];
+
+            for (int i = 0; i < remap.length; i++) {
+                T value = map.values().get(i);
+                if (map.reused().get(i)) {
+                    remap[i] = canonical.computeIfAbsent(value, v -> {
+                        values.add(v);
+                        return values.size() - 1;
+                    });
+                } else {
+                    values.add(value);
+                    remap[i] = values.size() - 1;
+                }
+            }
+            remaps[s] = remap;
+        }
+
+        return new MergedAttribute<>(values, remaps, canonical);
+    }
+
+    private static <T> int[] remap(IndexedReference<T>[] refs, LocalValues<T> map,
+            MergedAttribute<T> merged, int shardIndex) {
+        if (refs == null)
+            return null;
+
+        int[] remap = merged.remaps()[shardIndex];
+        int[] indices = new int[refs.length];
+
+        for (int i = 0; i < refs.length; i++) {
+            IndexedReference<T> ref = refs[i];
+            int index = ref.index();
+            if (index < remap.length && map.values().get(index) == ref.value()) {
+                indices[i] = remap[index];
+            } else {
+                // The reference came from another shard; fall back to looking it up by value.
+                Integer global = merged.canonical().get(ref.value());
+                if (global == null) {
+                    throw new IllegalStateException("Face references a value that was never added to this mesh.");
+                }
+                indices[i] = global;
+            }
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,614 @@
+package com.igrium.meshlib;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import com.igrium.meshlib.MeshMetrics.Phase;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+import com.igrium.meshlib.util.MappedSegmentFile;
+
+import de.javagl.obj.FloatTuple;
+
+/**
+ * <p>
+ * A mesh builder that appends its values and faces to memory-mapped files
+ * rather than keeping them on the heap. Faces use the same record layout as
+ * {@link FaceArena}, and views read them straight from the mapped files.
+ * </p>
+ * <p>
+ * Deduplication is best-effort: only a bounded, direct-mapped cache of
+ * recently-added values is kept in memory, so equal values may be stored more
+ * than once if they're added far apart, or by several threads at the same
+ * time. The mesh is still correct, but may contain duplicate values.
+ * </p>
+ * <p>
+ * The spill files are only deleted when the builder is closed, so it should be
+ * used in a try-with-resources block.
+ * </p>
+ * 
+ * @see ConcurrentMeshBuilder#createSpilling(MeshBuilderSettings)
+ */
+public final class SpillingMeshBuilder extends ConcurrentMeshBuilder implements AutoCloseable {
+
+    // Faces per chunk when sorting.
+    private static final int SORT_CHUNK_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final int segmentBits;
+    // Every file the builder itself keeps open. Sorted face indices belong to
+    // their view and are closed once it has been read.
+    private final List<MappedSegmentFile> files = new CopyOnWriteArrayList<>();
+
+    private final SpillingReferenceMap<Vertex> vertices;
+    private final SpillingReferenceMap<Vector2> texCoords;
+    private final SpillingReferenceMap<Vector3> normals;
+
+    // Face records, which may span segments.
+    private final MappedSegmentFile faces;
+    // The byte position of every face's record plus one, by face index. Written
+    // with release semantics once the record is complete, so 0 marks a face that
+    // is still being added, and DISCARDED one that failed to be written.
+    private final MappedSegmentFile faceIndex;
+    private final AtomicLong faceCursor = new AtomicLong();
+    private final AtomicInteger faceCount = new AtomicInteger();
+    private final AtomicInteger discardedFaces = new AtomicInteger();
+
+    private static final long DISCARDED = -1;
+
+    SpillingMeshBuilder(MeshBuilderSettings settings, int segmentBits) throws IOException {
+        super(settings);
+        this.directory = settings.getSpillDirectory();
+        this.segmentBits = segmentBits;
+        int cacheSize = settings.getSpillCacheSize();
+
+        try {
+            int dimensions = getVertexLayout().getStoredDimensions();
+            vertices = new SpillingReferenceMap<>(metrics.getVertices(), openFile(), dimensions, cacheSize,
+                    (map, i) -> dimensions < 6
+                            ? new Vertex(map.getComponent(i, 0), map.getComponent(i, 1), map.getComponent(i, 2))
+                            : new Vertex(
+                                    new Vector3(map.getComponent(i, 0), map.getComponent(i, 1), map.getComponent(i, 2)),
+                                    new Vector3(map.getComponent(i, 3), map.getComponent(i, 4), map.getComponent(i, 5))));
+            texCoords = new SpillingReferenceMap<>(metrics.getTexCoords(), openFile(), 2, cacheSize,
+                    (map, i) -> new Vector2(map.getComponent(i, 0), map.getComponent(i, 1)));
+            normals = new SpillingReferenceMap<>(metrics.getNormals(), openFile(), 3, cacheSize,
+                    (map, i) -> new Vector3(map.getComponent(i, 0), map.getComponent(i, 1), map.getComponent(i, 2)));
+            faces = openFile();
+            faceIndex = openFile();
+        } catch (IOException | RuntimeException e) {
+            try {
+                close();
+            } catch (UncheckedIOException suppressed) {
+                e.addSuppressed(suppressed.getCause());
+            }
+            throw e;
+        }
+    }
+
+    private MappedSegmentFile openFile() throws IOException {
+        MappedSegmentFile file = new MappedSegmentFile(directory, segmentBits);
+        files.add(file);
+        return file;
+    }
+
+    private interface Decoder<T> {
+        T decode(ReferenceMap<T> map, int index);
+    }
+
+    private class SpillingReferenceMap<T extends FloatTuple> extends ReferenceMap<T> {
+        private final MappedSegmentFile file;
+        private final int dimensions;
+        private final Decoder<T> decoder;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+
+        // A direct-mapped cache of recently-added values. Values that have been
+        // evicted, or that are added by two threads at once, are simply added
+        // again.
+        private final AtomicReferenceArray<IndexedReference<T>> cache;
+        private final int cacheMask;
+
+        SpillingReferenceMap(MeshMetrics.AttributeMetrics counters, MappedSegmentFile file, int dimensions,
+                int cacheSize, Decoder<T> decoder) {
+            super(counters);
+            this.file = file;
+            this.dimensions = dimensions;
+            this.decoder = decoder;
+            int capacity = 1 << (32 - Integer.numberOfLeadingZeros(cacheSize - 1));
+            this.cache = new AtomicReferenceArray<>(capacity);
+            this.cacheMask = capacity - 1;
+        }
+
+        @Override
+        public IndexedReference<T> getOrAdd(T value) {
+            lock.readLock().lock();
+            try {
+                return lookupOrAppend(value);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public IndexedReference<T> add(T value) {
+            lock.readLock().lock();
+            try {
+                IndexedReference<T> ref = append(value);
+                cache.compareAndSet(slot(value), null, ref);
+                return ref;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return nextIndex.get();
+        }
+
+        @Override
+        int[] resolve(T[] values, int count, boolean reuse) {
+            int[] indices = new int[count];
+            for (int i = 0; i < count; i++) {
+                T value = values[i];
+                if (reuse) {
+                    indices[i] = lookupOrAppend(value).index();
+                } else {
+                    IndexedReference<T> ref = append(value);
+                    cache.compareAndSet(slot(value), null, ref);
+                    indices[i] = ref.index();
+                }
+            }
+            return indices;
+        }
+
+        private IndexedReference<T> lookupOrAppend(T value) {
+            counters.lookup();
+            int slot = slot(value);
+            IndexedReference<T> ref = cache.get(slot);
+            if (ref != null && ref.value().equals(value))
+                return ref;
+
+            counters.miss();
+            ref = append(value);
+            cache.set(slot, ref);
+            return ref;
+        }
+
+        private int slot(T value) {
+            int hash = value.hashCode() * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & cacheMask;
+        }
+
+        private IndexedReference<T> append(T value) {
+            int index = nextIndex.getAndIncrement();
+            long position = (long) index * dimensions * 4;
+            for (int c = 0; c < dimensions; c++) {
+                file.putFloat(position + c * 4, value.get(c));
+            }
+            return new IndexedReference<>(value, index);
+        }
+
+        @Override
+        T get(int index) {
+            return decoder.decode(this, index);
+        }
+
+        @Override
+        float getComponent(int index, int component) {
+            return file.getFloat(((long) index * dimensions + component) * 4);
+        }
+    }
+
+    @Override
+    public ReferenceMap<Vertex> getVertices() {
+        return vertices;
+    }
+
+    @Override
+    public ReferenceMap<Vector2> getTexCoords() {
+        return texCoords;
+    }
+
+    @Override
+    public ReferenceMap<Vector3> getNormals() {
+        return normals;
+    }
+
+    /**
+     * Read every face back from disk. This creates a <code>Face</code> object for
+     * every face in the mesh.
+     */
+    @Override
+    public Collection<Face> getFaces() {
+        lock.readLock().lock();
+        try {
+            int count = faceCount.get();
+            List<Face> faces = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long entry;
+                // The face may still be in the middle of being added.
+                while ((entry = faceIndex.getLongAcquire(i * 8L)) == 0) {
+                    Thread.onSpinWait();
+                }
+                if (entry != DISCARDED) {
+                    faces.add(readFace(entry - 1));
+                }
+            }
+            return Collections.unmodifiableList(faces);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the position of a face's record from a face index. Only valid for faces
+     * that are known to be complete, and weren't discarded.
+     */
+    private static long positionAt(MappedSegmentFile index, int face) {
+        return index.getLong(face * 8L) - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Face readFace(long position) {
+        int header = faces.getInt(position);
+        int count = FaceArena.headerVertexCount(header);
+        IndexedReference<Vertex>[] vertexRefs = new IndexedReference[count];
+        IndexedReference<Vector2>[] texCoordRefs = FaceArena.headerHasTexCoords(header)
+                ? new IndexedReference[count]
+                : null;
+        IndexedReference<Vector3>[] normalRefs = FaceArena.headerHasNormals(header)
+                ? new IndexedReference[count]
+                : null;
+
+        long offset = readRefs(vertices, vertexRefs, position + FaceArena.HEADER_SIZE * 4L);
+        if (texCoordRefs != null) {
+            offset = readRefs(texCoords, texCoordRefs, offset);
+        }
+        if (normalRefs != null) {
+            readRefs(normals, normalRefs, offset);
+        }
+        return Face.create(vertexRefs, texCoordRefs, normalRefs, faces.getInt(position + 4),
+                faces.getInt(position + 8));
+    }
+
+    private <T> long readRefs(ReferenceMap<T> map, IndexedReference<T>[] refs, long offset) {
+        for (int i = 0; i < refs.length; i++) {
+            int index = faces.getInt(offset);
+            refs[i] = new IndexedReference<>(map.get(index), index);
+            offset += 4;
+        }
+        return offset;
+    }
+
+    @Override
+    public Face putFace(Face face) {
+        // Read every index before a record is claimed, so a face that can't be
+        // read is rejected without leaving anything behind.
+        int count = face.getVertexCount();
+        FaceArena.checkVertexCount(count);
+        boolean hasTexCoords = face.hasTexCoords();
+        boolean hasNormals = face.hasNormals();
+        int[] indices = new int[count * 3];
+        for (int v = 0; v < count; v++) {
+            indices[v] = face.getVertexIndex(v);
+            if (hasTexCoords) {
+                indices[count + v] = face.getTexCoordIndex(v);
+            }
+            if (hasNormals) {
+                indices[count * 2 + v] = face.getNormalIndex(v);
+            }
+        }
+        int materialId = face.getMaterialId();
+        int groupSetId = face.getGroupSetId();
+        int length = FaceArena.recordLength(count, hasTexCoords, hasNormals);
+
+        lock.readLock().lock();
+        try {
+            long position = faceCursor.getAndAdd(length * 4L);
+            int index = faceCount.getAndIncrement();
+            try {
+                faces.putInt(position, FaceArena.createHeader(count, hasTexCoords, hasNormals));
+                faces.putInt(position + 4, materialId);
+                faces.putInt(position + 8, groupSetId);
+                long offset = writeIndices(indices, 0, count, position + FaceArena.HEADER_SIZE * 4L);
+                if (hasTexCoords) {
+                    offset = writeIndices(indices, count, count, offset);
+                }
+                if (hasNormals) {
+                    writeIndices(indices, count * 2, count, offset);
+                }
+                faceIndex.putLongRelease(index * 8L, position + 1);
+            } catch (RuntimeException e) {
+                discard(index, 1, e);
+                throw e;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.facesAdded.increment();
+        return face;
+    }
+
+    @Override
+    void putFaces(FaceBatch batch, int[] vertexIndices, int[] texCoordIndices, int[] normalIndices) {
+        // Reserve space for the whole batch at once.
+        long length = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            FaceArena.checkVertexCount(batch.getVertexCount(i));
+            length += FaceArena.recordLength(batch.getVertexCount(i), batch.getTexCoordOffset(i) >= 0,
+                    batch.getNormalOffset(i) >= 0);
+        }
+        long position = faceCursor.getAndAdd(length * 4);
+        int index = faceCount.getAndAdd(batch.size());
+
+        int i = 0;
+        try {
+            for (; i < batch.size(); i++) {
+                int count = batch.getVertexCount(i);
+                int texCoordOffset = batch.getTexCoordOffset(i);
+                int normalOffset = batch.getNormalOffset(i);
+
+                faces.putInt(position, FaceArena.createHeader(count, texCoordOffset >= 0, normalOffset >= 0));
+                faces.putInt(position + 4, batch.getMaterialId(i));
+                faces.putInt(position + 8, batch.getGroupSetId(i));
+                long start = position;
+
+                position = writeIndices(vertexIndices, batch.getVertexOffset(i), count,
+                        position + FaceArena.HEADER_SIZE * 4L);
+                if (texCoordOffset >= 0) {
+                    position = writeIndices(texCoordIndices, texCoordOffset, count, position);
+                }
+                if (normalOffset >= 0) {
+                    position = writeIndices(normalIndices, normalOffset, count, position);
+                }
+                faceIndex.putLongRelease((index + i) * 8L, start + 1);
+            }
+        } catch (RuntimeException e) {
+            discard(index + i, batch.size() - i, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Mark claimed faces that couldn't be written, so readers skip them instead
+     * of waiting for them forever.
+     */
+    private void discard(int from, int count, RuntimeException cause) {
+        for (int i = from; i < from + count; i++) {
+            try {
+                faceIndex.putLongRelease(i * 8L, DISCARDED);
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        discardedFaces.addAndGet(count);
+    }
+
+    private long writeIndices(int[] indices, int from, int count, long offset) {
+        for (int i = from; i < from + count; i++) {
+            faces.putInt(offset, indices[i]);
+            offset += 4;
+        }
+        return offset;
+    }
+
+    @Override
+    public boolean isOverlapChecking() {
+        return false;
+    }
+
+    @Override
+    Supplier<MeshView> captureView(boolean sort, MeshMetrics.CompileTimer timer) {
+        // Every value and face below these counts was written (or discarded) while
+        // holding the read lock, so they're all complete.
+        int numVertices = vertices.size();
+        int numTexCoords = texCoords.size();
+        int numNormals = normals.size();
+        int numFaces = faceCount.get();
+        int numDiscarded = discardedFaces.get();
+
+        return () -> {
+            if ((sort || numDiscarded > 0) && numFaces > 0) {
+                long sortStart = System.nanoTime();
+                MappedSegmentFile index = indexFaces(numFaces, sort);
+                timer.record(Phase.SORT, sortStart);
+                return new SpillView(numVertices, numTexCoords, numNormals, index, numFaces - numDiscarded);
+            }
+            return new SpillView(numVertices, numTexCoords, numNormals, faceIndex, numFaces);
+        };
+    }
+
+    @Override
+    void releaseView(MeshView view) throws UncheckedIOException {
+        if (view instanceof SpillView spillView && spillView.index != faceIndex) {
+            try {
+                spillView.index.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private long faceKeyAt(long position, FaceOrder order) {
+        return order != null ? order.key(faces.getInt(position + 4), faces.getInt(position + 8)) : 0;
+    }
+
+    /**
+     * Stable counting sort of the face index by material and group set, written
+     * to a new file so the sorted index doesn't have to fit on the heap either.
+     * Discarded faces are left out. The file belongs to the view that reads it.
+     *
+     * @param sort If <code>false</code>, faces keep the order they were added in,
+     *             and only discarded faces are left out.
+     */
+    private MappedSegmentFile indexFaces(int numFaces, boolean sort) {
+        int numChunks = (numFaces + SORT_CHUNK_SIZE - 1) / SORT_CHUNK_SIZE;
+        FaceOrder order = sort ? Face.order() : null;
+
+        // Count the faces with each key in every chunk.
+        @SuppressWarnings("unchecked")
+        Map<Long, int[]>[] chunkCounts = new Map[numChunks];
+        inCompilePool(() -> {
+            IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+                Map<Long, int[]> counts = new HashMap<>();
+                int end = Math.min(numFaces, (chunk + 1) * SORT_CHUNK_SIZE);
+                for (int i = chunk * SORT_CHUNK_SIZE; i < end; i++) {
+                    long entry = faceIndex.getLong(i * 8L);
+                    if (entry != DISCARDED) {
+                        counts.computeIfAbsent(faceKeyAt(entry - 1, order), k -> new int[1])[0]++;
+                    }
+                }
+                chunkCounts[chunk] = counts;
+            });
+            return null;
+        });
+
+        long[] keys = Arrays.stream(chunkCounts).flatMap(counts -> counts.keySet().stream())
+                .mapToLong(Long::longValue).distinct().sorted().toArray();
+
+        // Key-major offsets, so faces with the same key stay in order.
+        long[][] offsets = new long[numChunks][keys.length];
+        long next = 0;
+        for (int k = 0; k < keys.length; k++) {
+            for (int chunk = 0; chunk < numChunks; chunk++) {
+                offsets[chunk][k] = next;
+                int[] count = chunkCounts[chunk].get(keys[k]);
+                if (count != null) {
+                    next += count[0];
+                }
+            }
+        }
+
+        MappedSegmentFile sorted;
+        try {
+            sorted = new MappedSegmentFile(directory, segmentBits);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            inCompilePool(() -> {
+                IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+                    long[] cursors = offsets[chunk];
+                    int end = Math.min(numFaces, (chunk + 1) * SORT_CHUNK_SIZE);
+                    for (int i = chunk * SORT_CHUNK_SIZE; i < end; i++) {
+                        long entry = faceIndex.getLong(i * 8L);
+                        if (entry == DISCARDED)
+                            continue;
+
+                        int rank = Arrays.binarySearch(keys, faceKeyAt(entry - 1, order));
+                        sorted.putLong(cursors[rank]++ * 8, entry);
+                    }
+                });
+                return null;
+            });
+        } catch (RuntimeException e) {
+            try {
+                sorted.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return sorted;
+    }
+
+    private class SpillView extends AttributeView {
+        private final MappedSegmentFile index;
+        private final int numFaces;
+
+        SpillView(int numVertices, int numTexCoords, int numNormals, MappedSegmentFile index, int numFaces) {
+            super(numVertices, numTexCoords, numNormals);
+            this.index = index;
+            this.numFaces = numFaces;
+        }
+
+        @Override
+        public int getNumFaces() {
+            return numFaces;
+        }
+
+        @Override
+        public <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor)
+                throws E {
+            Objects.checkFromToIndex(fromIndex, toIndex, numFaces);
+            int[] vertexIndices = new int[4];
+            int[] texCoordIndices = new int[4];
+            int[] normalIndices = new int[4];
+
+            for (int i = fromIndex; i < toIndex; i++) {
+                long position = positionAt(index, i);
+                int header = faces.getInt(position);
+                int count = FaceArena.headerVertexCount(header);
+                if (count > vertexIndices.length) {
+                    vertexIndices = new int[count];
+                    texCoordIndices = new int[count];
+                    normalIndices = new int[count];
+                }
+
+                long offset = readIndices(vertexIndices, count, position + FaceArena.HEADER_SIZE * 4L);
+                boolean hasTexCoords = FaceArena.headerHasTexCoords(header);
+                if (hasTexCoords) {
+                    offset = readIndices(texCoordIndices, count, offset);
+                }
+                boolean hasNormals = FaceArena.headerHasNormals(header);
+                if (hasNormals) {
+                    readIndices(normalIndices, count, offset);
+                }
+
+                visitor.visit(count, vertexIndices, hasTexCoords ? texCoordIndices : null,
+                        hasNormals ? normalIndices : null, Face.materialName(faces.getInt(position + 4)),
+                        Face.groupSet(faces.getInt(position + 8)));
+            }
+        }
+
+        private long readIndices(int[] indices, int count, long offset) {
+            for (int i = 0; i < count; i++) {
+                indices[i] = faces.getInt(offset);
+                offset += 4;
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Close and delete every spill file. The builder and any views of it may not
+     * be used afterwards.
+     * 
+     * @throws UncheckedIOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws UncheckedIOException {
+        IOException error = null;
+        for (MappedSegmentFile file : files) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw new UncheckedIOException(error);
+        }
+    }
+}
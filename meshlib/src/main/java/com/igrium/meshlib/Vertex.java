@@ -10,8 +10,15 @@ import de.javagl.obj.FloatTuple;
  * @param color The vertex color. Used by Blender's OBJ parser.
  */
 public record Vertex(Vector3 pos, Vector3 color) implements FloatTuple {
+
+    /**
+     * The color of vertices that are created without one. Shared by all of them,
+     * so they don't each hold their own copy.
+     */
+    public static final Vector3 DEFAULT_COLOR = new Vector3(1, 1, 1);
+
     public Vertex(Vector3 pos) {
-        this(pos, new Vector3(1, 1, 1));
+        this(pos, DEFAULT_COLOR);
     }
 
     public Vertex(float x, float y, float z) {
@@ -0,0 +1,140 @@
+package com.igrium.meshlib;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+/**
+ * Which vertex attributes a {@link ConcurrentMeshBuilder} stores and exports.
+ * Every <code>Vertex</code> has a color, but most meshes never set it, in
+ * which case writing it out is wasted space.
+ *
+ * @see MeshBuilderSettings#vertexLayout(VertexLayout)
+ */
+public enum VertexLayout {
+    /**
+     * Only store and export vertex positions. Vertex colors are discarded.
+     * Builders with columnar storage or spill files only store three components
+     * per vertex. Vertices that only differ in color are only merged by columnar
+     * storage, which compares stored components.
+     */
+    POSITION(3),
+    /**
+     * Store and export vertex positions and colors. This is the default.
+     */
+    POSITION_COLOR(6),
+    /**
+     * Store vertex positions and colors, but only export colors if at least one
+     * vertex has a color other than {@link Vertex#DEFAULT_COLOR}. Vertices are
+     * checked in parallel when the mesh is compiled.
+     */
+    DETECT(6);
+
+    private final int storedDimensions;
+
+    private VertexLayout(int storedDimensions) {
+        this.storedDimensions = storedDimensions;
+    }
+
+    /**
+     * Get the number of components stored for every vertex.
+     * @return Stored vertex dimensions.
+     */
+    int getStoredDimensions() {
+        return storedDimensions;
+    }
+
+    /**
+     * Apply this layout to a compiled view, hiding colors if they shouldn't be
+     * exported.
+     */
+    MeshView apply(MeshView view, ForkJoinPool pool) {
+        if (view.getVertexDimensions() < 6 || this == POSITION_COLOR)
+            return view;
+        if (this == DETECT && hasColors(view, pool))
+            return view;
+        return new PositionView(view);
+    }
+
+    private static boolean hasColors(MeshView view, ForkJoinPool pool) {
+        Vector3 base = Vertex.DEFAULT_COLOR;
+        IntStream vertices = IntStream.range(0, view.getNumVertices()).parallel();
+        ForkJoinTask<Boolean> task = ForkJoinTask.adapt(() -> vertices.anyMatch(
+                i -> view.getVertexComponent(i, 3) != base.x() || view.getVertexComponent(i, 4) != base.y()
+                        || view.getVertexComponent(i, 5) != base.z()));
+        return ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+    }
+
+    /**
+     * A view that only exposes vertex positions.
+     */
+    private record PositionView(MeshView mesh) implements MeshView {
+
+        @Override
+        public int getNumVertices() {
+            return mesh.getNumVertices();
+        }
+
+        @Override
+        public Vertex getVertex(int index) {
+            return new Vertex(mesh.getVertex(index).pos());
+        }
+
+        @Override
+        public int getVertexDimensions() {
+            return 3;
+        }
+
+        @Override
+        public float getVertexComponent(int index, int component) {
+            if (component >= 3) {
+                throw new IndexOutOfBoundsException(component);
+            }
+            return mesh.getVertexComponent(index, component);
+        }
+
+        @Override
+        public int getNumTexCoords() {
+            return mesh.getNumTexCoords();
+        }
+
+        @Override
+        public Vector2 getTexCoord(int index) {
+            return mesh.getTexCoord(index);
+        }
+
+        @Override
+        public float getTexCoordComponent(int index, int component) {
+            return mesh.getTexCoordComponent(index, component);
+        }
+
+        @Override
+        public int getNumNormals() {
+            return mesh.getNumNormals();
+        }
+
+        @Override
+        public Vector3 getNormal(int index) {
+            return mesh.getNormal(index);
+        }
+
+        @Override
+        public float getNormalComponent(int index, int component) {
+            return mesh.getNormalComponent(index, component);
+        }
+
+        @Override
+        public int getNumFaces() {
+            return mesh.getNumFaces();
+        }
+
+        @Override
+        public <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor)
+                throws E {
+            mesh.forEachFace(fromIndex, toIndex, visitor);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.igrium.meshlib.io;
+
+import java.util.List;
+
+import com.igrium.meshlib.MeshView;
+
+/**
+ * Decides which partition each face of a mesh is exported to by a
+ * {@link PartitionedObjWriter}. Partitioners are called from many threads at
+ * once, so they must be thread-safe.
+ */
+@FunctionalInterface
+public interface FacePartitioner {
+
+    /**
+     * Get the partition a face belongs in. The arguments are the same as
+     * <code>MeshView.FaceVisitor.visit</code>.
+     *
+     * @param mesh        The mesh the face is in.
+     * @param vertexCount The number of vertices in the face.
+     * @param vertices    Vertex indices.
+     * @param material    The face's material. May be <code>null</code>.
+     * @param groups      The face's groups.
+     * @return The name of the partition, which its file is named after. May not
+     *         be <code>null</code>.
+     * @see PartitionedObjWriter#write(MeshView, java.nio.file.Path,
+     *      java.util.concurrent.ForkJoinPool)
+     */
+    String partition(MeshView mesh, int vertexCount, int[] vertices, String material, List<String> groups);
+
+    /**
+     * Partition faces by their material. Faces without a material go in the
+     * <code>default</code> partition.
+     *
+     * @return The partitioner.
+     */
+    static FacePartitioner byMaterial() {
+        return (mesh, vertexCount, vertices, material, groups) -> material != null ? material : "default";
+    }
+
+    /**
+     * Partition faces by their groups. Faces in the same set of groups share a
+     * partition, which is named after the groups like an OBJ <code>g</code>
+     * statement. Faces without groups go in the <code>default</code> partition.
+     *
+     * @return The partitioner.
+     */
+    static FacePartitioner byGroups() {
+        return (mesh, vertexCount, vertices, material, groups) -> groups == null || groups.isEmpty() ? "default"
+                : String.join(" ", groups);
+    }
+
+    /**
+     * Partition faces by the cell of a uniform grid that their centroid falls in.
+     * Partitions are named <code>cell_x_y_z</code> after the cell's integer
+     * coordinates.
+     *
+     * @param cellSize The width of each grid cell.
+     * @return The partitioner.
+     * @throws IllegalArgumentException If the cell size isn't positive.
+     */
+    static FacePartitioner byGrid(float cellSize) throws IllegalArgumentException {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive.");
+        }
+        return (mesh, vertexCount, vertices, material, groups) -> {
+            float x = 0, y = 0, z = 0;
+            for (int i = 0; i < vertexCount; i++) {
+                x += mesh.getVertexComponent(vertices[i], 0);
+                y += mesh.getVertexComponent(vertices[i], 1);
+                z += mesh.getVertexComponent(vertices[i], 2);
+            }
+            return "cell_" + (long) Math.floor(x / vertexCount / cellSize)
+                    + "_" + (long) Math.floor(y / vertexCount / cellSize)
+                    + "_" + (long) Math.floor(z / vertexCount / cellSize);
+        };
+    }
+}
@@ -0,0 +1,216 @@
+package com.igrium.meshlib.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * Writes floats as ASCII text directly into a <code>ByteBuffer</code>, without
+ * creating any strings.
+ * </p>
+ * <p>
+ * By default, values are written in plain decimal notation with the fewest
+ * decimal places that still parse back to exactly the same float. A formatter
+ * can instead round every value to a fixed number of decimal places, which is
+ * faster and makes the output considerably smaller when full precision isn't
+ * needed. Trailing zeros are trimmed in both modes. Values too large or too
+ * small for plain notation to be reasonable fall back to
+ * <code>Float.toString</code>.
+ * </p>
+ */
+public class FloatFormatter {
+
+    /**
+     * The maximum number of bytes a single call to <code>write</code> may
+     * produce.
+     */
+    public static final int MAX_LENGTH = 32;
+
+    /**
+     * Use the fewest decimal places that round-trip, rather than a fixed number.
+     */
+    public static final int SHORTEST = -1;
+
+    /**
+     * The maximum number of fixed decimal places.
+     */
+    public static final int MAX_FIXED_DECIMALS = 9;
+
+    private static final float MIN_PLAIN = 1e-5f;
+    private static final float MAX_PLAIN = 1e9f;
+    private static final int MAX_DECIMALS = 15;
+
+    private static final double[] POW10 = new double[MAX_DECIMALS + 1];
+    private static final long[] LONG_POW10 = new long[MAX_DECIMALS + 1];
+
+    // Relative error of a double division, with a bit to spare.
+    private static final double ROUNDING_MARGIN = 0x1p-51;
+
+    static {
+        long pow = 1;
+        for (int i = 0; i <= MAX_DECIMALS; i++) {
+            LONG_POW10[i] = pow;
+            POW10[i] = pow;
+            pow *= 10;
+        }
+    }
+
+    private final byte[] digits = new byte[20];
+    private final int decimals;
+
+    /**
+     * Create a float formatter that writes the shortest text that round-trips.
+     */
+    public FloatFormatter() {
+        this(SHORTEST);
+    }
+
+    /**
+     * Create a float formatter.
+     *
+     * @param decimals The number of decimal places to round values to, or
+     *                 {@link #SHORTEST} to write the fewest decimal places that
+     *                 round-trip.
+     * @throws IllegalArgumentException If <code>decimals</code> is negative (other
+     *                                  than <code>SHORTEST</code>) or greater
+     *                                  than <code>MAX_FIXED_DECIMALS</code>.
+     */
+    public FloatFormatter(int decimals) throws IllegalArgumentException {
+        this.decimals = checkDecimals(decimals);
+    }
+
+    /**
+     * Get the number of decimal places values are rounded to.
+     * @return Decimal places, or {@link #SHORTEST}.
+     */
+    public int getDecimals() {
+        return decimals;
+    }
+
+    /**
+     * Write a float to a buffer.
+     *
+     * @param value  The value to write.
+     * @param buffer The buffer to write to. Must have at least
+     *               <code>MAX_LENGTH</code> bytes remaining.
+     */
+    public void write(float value, ByteBuffer buffer) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            writeFallback(value, buffer);
+            return;
+        }
+
+        if (decimals != SHORTEST) {
+            writeFixed(value, buffer);
+            return;
+        }
+
+        if (Float.floatToRawIntBits(value) < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+
+        if (value == 0) {
+            buffer.put((byte) '0');
+        } else if (value < MIN_PLAIN || value >= MAX_PLAIN) {
+            writeFallback(value, buffer);
+        } else {
+            writeShortest(value, buffer);
+        }
+    }
+
+    private void writeShortest(float value, ByteBuffer buffer) {
+        // Any decimal strictly inside this interval parses back to the same float.
+        double lower = ((double) value + Math.nextDown(value)) / 2;
+        double upper = ((double) value + Math.nextUp(value)) / 2;
+        double margin = value * ROUNDING_MARGIN;
+
+        for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+            long mantissa = Math.round(value * POW10[decimals]);
+            double candidate = mantissa / POW10[decimals];
+
+            if (candidate - lower > margin && upper - candidate > margin) {
+                writeDecimal(mantissa, decimals, buffer);
+                return;
+            }
+        }
+
+        writeFallback(value, buffer);
+    }
+
+    private void writeFixed(float value, ByteBuffer buffer) {
+        float magnitude = Math.abs(value);
+        if (magnitude >= MAX_PLAIN) {
+            writeFallback(value, buffer);
+            return;
+        }
+
+        // MAX_PLAIN * 10^MAX_FIXED_DECIMALS fits in a long.
+        long mantissa = Math.round(magnitude * POW10[decimals]);
+        // Don't write values that round to zero as "-0".
+        if (mantissa != 0 && value < 0) {
+            buffer.put((byte) '-');
+        }
+        writeDecimal(mantissa, decimals, buffer);
+    }
+
+    /**
+     * Write <code>mantissa / 10^decimals</code>, trimming trailing zeros.
+     */
+    void writeDecimal(long mantissa, int decimals, ByteBuffer buffer) {
+        while (decimals > 0 && mantissa % 10 == 0) {
+            mantissa /= 10;
+            decimals--;
+        }
+
+        long integer = mantissa / LONG_POW10[decimals];
+        long fraction = mantissa % LONG_POW10[decimals];
+        writeLong(integer, buffer);
+
+        if (decimals > 0) {
+            buffer.put((byte) '.');
+            // Leading zeros of the fraction.
+            for (long pow = LONG_POW10[decimals - 1]; pow > fraction && pow > 1; pow /= 10) {
+                buffer.put((byte) '0');
+            }
+            writeLong(fraction, buffer);
+        }
+    }
+
+    /**
+     * Write a non-negative integer.
+     *
+     * @param value  The value to write.
+     * @param buffer The buffer to write to.
+     */
+    void writeLong(long value, ByteBuffer buffer) {
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        while (length > 0) {
+            buffer.put(digits[--length]);
+        }
+    }
+
+    /**
+     * Check that a number of decimal places is valid for a formatter.
+     *
+     * @param decimals The number of decimal places, or {@link #SHORTEST}.
+     * @return <code>decimals</code>
+     * @throws IllegalArgumentException If it isn't valid.
+     */
+    public static int checkDecimals(int decimals) throws IllegalArgumentException {
+        if (decimals != SHORTEST && (decimals < 0 || decimals > MAX_FIXED_DECIMALS)) {
+            throw new IllegalArgumentException(
+                    "Decimal places must be between 0 and " + MAX_FIXED_DECIMALS + ", or SHORTEST.");
+        }
+        return decimals;
+    }
+
+    private static void writeFallback(float value, ByteBuffer buffer) {
+        buffer.put(Float.toString(value).getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,625 @@
+package com.igrium.meshlib.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+import com.igrium.meshlib.MeshView;
+
+/**
+ * <p>
+ * Writes a {@link MeshView} as a binary glTF (GLB) file. The mesh becomes a
+ * single glTF mesh with one triangulated primitive per material, whose vertex
+ * positions, colors, texture coordinates and normals are written as float
+ * buffers and whose indices are written as <code>short</code>s or
+ * <code>int</code>s, depending on how many vertices it has.
+ * </p>
+ * <p>
+ * glTF vertices have a single index, so every distinct combination of vertex,
+ * texture coordinate and normal indices in a primitive becomes one glTF
+ * vertex. Faces are grouped and deduplicated in parallel; the binary chunk is
+ * then streamed to the channel straight from the mesh. Texture coordinates are
+ * flipped vertically to match glTF's top-left origin.
+ * </p>
+ * <p>
+ * A writer re-uses its buffer between calls, so it may be used to write many
+ * meshes, but not from multiple threads at once.
+ * </p>
+ */
+public class GlbWriter {
+
+    /**
+     * The default size of the output buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    // Number of faces each task groups at once.
+    private static final int FACE_CHUNK_SIZE = 4096;
+
+    private static final int GLB_MAGIC = 0x46546C67; // "glTF"
+    private static final int GLB_VERSION = 2;
+    private static final int JSON_CHUNK = 0x4E4F534A; // "JSON"
+    private static final int BIN_CHUNK = 0x004E4942; // "BIN\0"
+
+    private static final int UNSIGNED_SHORT = 5123;
+    private static final int UNSIGNED_INT = 5125;
+    private static final int FLOAT = 5126;
+    private static final int ARRAY_BUFFER = 34962;
+    private static final int ELEMENT_ARRAY_BUFFER = 34963;
+    private static final int TRIANGLES = 4;
+
+    private final ByteBuffer buffer;
+    private boolean interleaved = true;
+
+    private WritableByteChannel channel;
+
+    /**
+     * Create a GLB writer with the default buffer size.
+     */
+    public GlbWriter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a GLB writer.
+     *
+     * @param bufferSize The size of the output buffer in bytes.
+     * @throws IllegalArgumentException If the buffer size is too small.
+     */
+    public GlbWriter(int bufferSize) throws IllegalArgumentException {
+        if (bufferSize < 64) {
+            throw new IllegalArgumentException("Buffer size must be at least 64");
+        }
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Set whether each primitive's vertex attributes are interleaved in one
+     * buffer view, or written to a separate buffer view each.
+     *
+     * @param interleaved Whether to interleave attributes. Defaults to
+     *                    <code>true</code>.
+     * @return <code>this</code>
+     */
+    public GlbWriter interleaved(boolean interleaved) {
+        this.interleaved = interleaved;
+        return this;
+    }
+
+    public boolean isInterleaved() {
+        return interleaved;
+    }
+
+    /**
+     * Write a mesh to a channel, grouping its faces in the common pool.
+     *
+     * @param mesh    The mesh to write.
+     * @param channel The channel to write to. Will not be closed.
+     * @throws IOException If an I/O error occurs, or if the mesh is too large
+     *                     for a GLB file.
+     */
+    public void write(MeshView mesh, WritableByteChannel channel) throws IOException {
+        write(mesh, channel, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Write a mesh to a channel.
+     *
+     * @param mesh    The mesh to write.
+     * @param channel The channel to write to. Will not be closed.
+     * @param pool    The pool to group and deduplicate faces in.
+     * @throws IOException If an I/O error occurs, or if the mesh is too large
+     *                     for a GLB file.
+     */
+    public void write(MeshView mesh, WritableByteChannel channel, ForkJoinPool pool) throws IOException {
+        List<Primitive> primitives = groupFaces(mesh, pool);
+        inPool(pool, () -> primitives.parallelStream().forEach(primitive -> primitive.build(mesh)));
+
+        boolean colors = mesh.getVertexDimensions() >= 6;
+        long binLength = layout(primitives, colors);
+        byte[] json = createJson(primitives, colors, binLength).getBytes(StandardCharsets.UTF_8);
+        int jsonLength = align(json.length);
+        long totalLength = 12 + 8 + jsonLength + (binLength > 0 ? 8 + binLength : 0);
+        if (totalLength > 0xFFFFFFFFL) {
+            throw new IOException("Mesh is too large for a GLB file.");
+        }
+
+        this.channel = channel;
+        buffer.clear();
+        try {
+            ensureSpace(20);
+            buffer.putInt(GLB_MAGIC);
+            buffer.putInt(GLB_VERSION);
+            buffer.putInt((int) totalLength);
+            buffer.putInt(jsonLength);
+            buffer.putInt(JSON_CHUNK);
+            putBytes(json);
+            for (int i = json.length; i < jsonLength; i++) {
+                putByte((byte) ' ');
+            }
+
+            if (binLength > 0) {
+                ensureSpace(8);
+                buffer.putInt((int) binLength);
+                buffer.putInt(BIN_CHUNK);
+                for (Primitive primitive : primitives) {
+                    writeVertices(mesh, primitive, colors);
+                    writeIndices(primitive);
+                }
+            }
+            flush();
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    private static void inPool(ForkJoinPool pool, Runnable task) {
+        if (ForkJoinTask.getPool() == pool) {
+            task.run();
+        } else {
+            pool.submit(task).join();
+        }
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+
+    /**
+     * Everything faces must have in common to share a primitive.
+     */
+    private record PrimitiveKey(String material, boolean texCoords, boolean normals) {
+    }
+
+    /**
+     * A growable list of <code>int</code>s.
+     */
+    private static class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+
+    private static class Primitive {
+        final PrimitiveKey key;
+        // Vertex, texture coordinate and normal index of every corner. Absent
+        // attributes are -1.
+        final IntList corners = new IntList();
+        final IntList faceSizes = new IntList();
+
+        // Distinct corners, in the same layout as corners.
+        int[] vertices;
+        int vertexCount;
+        int[] indices;
+        final float[] min = new float[3];
+        final float[] max = new float[3];
+
+        // Byte offsets of this primitive's data in the binary chunk.
+        long[] attributeOffsets;
+        long indexOffset;
+
+        Primitive(PrimitiveKey key) {
+            this.key = key;
+        }
+
+        boolean shortIndices() {
+            // The largest value of an index type is reserved for primitive restart.
+            return vertexCount < 0xFFFF;
+        }
+
+        /**
+         * Deduplicate corners into vertices and triangulate every face as a fan.
+         */
+        void build(MeshView mesh) {
+            int cornerCount = corners.size / 3;
+            int[] values = corners.values;
+            int capacity = Integer.highestOneBit(Math.max(cornerCount * 2, 16) - 1) << 1;
+            int mask = capacity - 1;
+            int[] slots = new int[capacity];
+            int[] remap = new int[cornerCount];
+            vertices = new int[cornerCount * 3];
+
+            for (int c = 0; c < cornerCount; c++) {
+                int v = values[c * 3], t = values[c * 3 + 1], n = values[c * 3 + 2];
+                int hash = (v * 0x9E3779B9 + t) * 0x9E3779B9 + n;
+                hash ^= hash >>> 16;
+                int slot = hash & mask;
+                while (true) {
+                    int existing = slots[slot] - 1;
+                    if (existing < 0) {
+                        slots[slot] = vertexCount + 1;
+                        vertices[vertexCount * 3] = v;
+                        vertices[vertexCount * 3 + 1] = t;
+                        vertices[vertexCount * 3 + 2] = n;
+                        remap[c] = vertexCount++;
+                        break;
+                    }
+                    if (vertices[existing * 3] == v && vertices[existing * 3 + 1] == t
+                            && vertices[existing * 3 + 2] == n) {
+                        remap[c] = existing;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            }
+
+            int triangles = 0;
+            for (int f = 0; f < faceSizes.size; f++) {
+                triangles += faceSizes.values[f] - 2;
+            }
+            indices = new int[triangles * 3];
+            int corner = 0;
+            int next = 0;
+            for (int f = 0; f < faceSizes.size; f++) {
+                int size = faceSizes.values[f];
+                for (int i = 1; i < size - 1; i++) {
+                    indices[next++] = remap[corner];
+                    indices[next++] = remap[corner + i];
+                    indices[next++] = remap[corner + i + 1];
+                }
+                corner += size;
+            }
+
+            Arrays.fill(min, Float.POSITIVE_INFINITY);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+            for (int i = 0; i < vertexCount; i++) {
+                for (int axis = 0; axis < 3; axis++) {
+                    float value = mesh.getVertexComponent(vertices[i * 3], axis);
+                    min[axis] = Math.min(min[axis], value);
+                    max[axis] = Math.max(max[axis], value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Group faces into primitives, keeping the order in which each primitive's
+     * faces appear in the mesh.
+     */
+    private static List<Primitive> groupFaces(MeshView mesh, ForkJoinPool pool) {
+        int numFaces = mesh.getNumFaces();
+        int chunkCount = (numFaces + FACE_CHUNK_SIZE - 1) / FACE_CHUNK_SIZE;
+        @SuppressWarnings("unchecked")
+        Map<PrimitiveKey, Primitive>[] chunks = new Map[chunkCount];
+
+        inPool(pool, () -> IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+            Map<PrimitiveKey, Primitive> primitives = new LinkedHashMap<>();
+            int from = chunk * FACE_CHUNK_SIZE;
+            mesh.forEachFace(from, Math.min(numFaces, from + FACE_CHUNK_SIZE),
+                    (count, vertices, texCoords, normals, material, groups) -> {
+                        if (count < 3)
+                            return;
+                        PrimitiveKey key = new PrimitiveKey(material, texCoords != null, normals != null);
+                        Primitive primitive = primitives.computeIfAbsent(key, Primitive::new);
+                        for (int i = 0; i < count; i++) {
+                            primitive.corners.add(vertices[i]);
+                            primitive.corners.add(texCoords != null ? texCoords[i] : -1);
+                            primitive.corners.add(normals != null ? normals[i] : -1);
+                        }
+                        primitive.faceSizes.add(count);
+                    });
+            chunks[chunk] = primitives;
+        }));
+
+        Map<PrimitiveKey, Primitive> merged = new LinkedHashMap<>();
+        for (Map<PrimitiveKey, Primitive> chunk : chunks) {
+            for (Primitive part : chunk.values()) {
+                Primitive primitive = merged.get(part.key);
+                if (primitive == null) {
+                    merged.put(part.key, part);
+                } else {
+                    primitive.corners.addAll(part.corners);
+                    primitive.faceSizes.addAll(part.faceSizes);
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Get the number of float components of each of a primitive's attributes, in
+     * the order they're written: position, color, texture coordinate and
+     * normal. Absent attributes have 0 components.
+     */
+    private static int[] attributeSizes(Primitive primitive, boolean colors) {
+        return new int[] { 3, colors ? 3 : 0, primitive.key.texCoords() ? 2 : 0, primitive.key.normals() ? 3 : 0 };
+    }
+
+    private static int stride(int[] sizes) {
+        return (sizes[0] + sizes[1] + sizes[2] + sizes[3]) * 4;
+    }
+
+    /**
+     * Assign every primitive's data a place in the binary chunk.
+     *
+     * @return The length of the binary chunk.
+     */
+    private long layout(List<Primitive> primitives, boolean colors) {
+        long offset = 0;
+        for (Primitive primitive : primitives) {
+            int[] sizes = attributeSizes(primitive, colors);
+            primitive.attributeOffsets = new long[sizes.length];
+            if (interleaved) {
+                long attributeOffset = 0;
+                for (int a = 0; a < sizes.length; a++) {
+                    primitive.attributeOffsets[a] = offset + attributeOffset;
+                    attributeOffset += sizes[a] * 4;
+                }
+                offset += (long) primitive.vertexCount * stride(sizes);
+            } else {
+                for (int a = 0; a < sizes.length; a++) {
+                    primitive.attributeOffsets[a] = offset;
+                    offset += (long) primitive.vertexCount * sizes[a] * 4;
+                }
+            }
+            primitive.indexOffset = offset;
+            offset += align(primitive.indices.length * (primitive.shortIndices() ? 2 : 4));
+        }
+        return offset;
+    }
+
+    private String createJson(List<Primitive> primitives, boolean colors, long binLength) {
+        JsonArray materials = new JsonArray();
+        Map<String, Integer> materialIds = new LinkedHashMap<>();
+        JsonArray meshPrimitives = new JsonArray();
+        JsonArray accessors = new JsonArray();
+        JsonArray bufferViews = new JsonArray();
+        String[] attributeNames = { "POSITION", "COLOR_0", "TEXCOORD_0", "NORMAL" };
+        String[] attributeTypes = { "VEC3", "VEC3", "VEC2", "VEC3" };
+
+        for (Primitive primitive : primitives) {
+            int[] sizes = attributeSizes(primitive, colors);
+            StringBuilder attributes = new StringBuilder();
+
+            int interleavedView = -1;
+            if (interleaved) {
+                interleavedView = bufferViews.size();
+                bufferViews.add("{\"buffer\":0,\"byteOffset\":" + primitive.attributeOffsets[0] + ",\"byteLength\":"
+                        + (long) primitive.vertexCount * stride(sizes) + ",\"byteStride\":" + stride(sizes)
+                        + ",\"target\":" + ARRAY_BUFFER + "}");
+            }
+
+            for (int a = 0; a < sizes.length; a++) {
+                if (sizes[a] == 0)
+                    continue;
+                String accessor;
+                if (interleaved) {
+                    accessor = "{\"bufferView\":" + interleavedView + ",\"byteOffset\":"
+                            + (primitive.attributeOffsets[a] - primitive.attributeOffsets[0]);
+                } else {
+                    accessor = "{\"bufferView\":" + bufferViews.size() + ",\"byteOffset\":0";
+                    bufferViews.add("{\"buffer\":0,\"byteOffset\":" + primitive.attributeOffsets[a]
+                            + ",\"byteLength\":" + (long) primitive.vertexCount * sizes[a] * 4 + ",\"target\":"
+                            + ARRAY_BUFFER + "}");
+                }
+                accessor += ",\"componentType\":" + FLOAT + ",\"count\":" + primitive.vertexCount + ",\"type\":\""
+                        + attributeTypes[a] + "\"";
+                if (a == 0) {
+                    accessor += ",\"min\":" + floats(primitive.min) + ",\"max\":" + floats(primitive.max);
+                }
+
+                if (attributes.length() > 0) {
+                    attributes.append(',');
+                }
+                attributes.append('"').append(attributeNames[a]).append("\":").append(accessors.size());
+                accessors.add(accessor + "}");
+            }
+
+            int indexSize = primitive.shortIndices() ? 2 : 4;
+            int indexView = bufferViews.size();
+            bufferViews.add("{\"buffer\":0,\"byteOffset\":" + primitive.indexOffset + ",\"byteLength\":"
+                    + (long) primitive.indices.length * indexSize + ",\"target\":" + ELEMENT_ARRAY_BUFFER + "}");
+            int indexAccessor = accessors.size();
+            accessors.add("{\"bufferView\":" + indexView + ",\"byteOffset\":0,\"componentType\":"
+                    + (primitive.shortIndices() ? UNSIGNED_SHORT : UNSIGNED_INT) + ",\"count\":"
+                    + primitive.indices.length + ",\"type\":\"SCALAR\"}");
+
+            String meshPrimitive = "{\"attributes\":{" + attributes + "},\"indices\":" + indexAccessor + ",\"mode\":"
+                    + TRIANGLES;
+            String material = primitive.key.material();
+            if (material != null) {
+                Integer id = materialIds.get(material);
+                if (id == null) {
+                    id = materials.size();
+                    materialIds.put(material, id);
+                    materials.add("{\"name\":" + quote(material)
+                            + ",\"pbrMetallicRoughness\":{\"metallicFactor\":0}}");
+                }
+                meshPrimitive += ",\"material\":" + id;
+            }
+            meshPrimitives.add(meshPrimitive + "}");
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"asset\":{\"version\":\"2.0\",\"generator\":\"meshlib\"}");
+        if (primitives.isEmpty()) {
+            json.append(",\"scene\":0,\"scenes\":[{\"nodes\":[]}]");
+        } else {
+            json.append(",\"scene\":0,\"scenes\":[{\"nodes\":[0]}],\"nodes\":[{\"mesh\":0}]");
+            json.append(",\"meshes\":[{\"primitives\":").append(meshPrimitives).append("}]");
+            json.append(",\"accessors\":").append(accessors);
+            json.append(",\"bufferViews\":").append(bufferViews);
+            json.append(",\"buffers\":[{\"byteLength\":").append(binLength).append("}]");
+        }
+        if (materials.size() > 0) {
+            json.append(",\"materials\":").append(materials);
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * A JSON array of already-serialized elements.
+     */
+    private static class JsonArray {
+        private final List<String> elements = new ArrayList<>();
+
+        void add(String element) {
+            elements.add(element);
+        }
+
+        int size() {
+            return elements.size();
+        }
+
+        @Override
+        public String toString() {
+            return "[" + String.join(",", elements) + "]";
+        }
+    }
+
+    private static String floats(float[] values) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(values[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private void writeVertices(MeshView mesh, Primitive primitive, boolean colors) throws IOException {
+        int[] sizes = attributeSizes(primitive, colors);
+        if (interleaved) {
+            int stride = stride(sizes);
+            for (int i = 0; i < primitive.vertexCount; i++) {
+                ensureSpace(stride);
+                for (int a = 0; a < sizes.length; a++) {
+                    if (sizes[a] > 0) {
+                        putAttribute(mesh, primitive, i, a);
+                    }
+                }
+            }
+        } else {
+            for (int a = 0; a < sizes.length; a++) {
+                if (sizes[a] == 0)
+                    continue;
+                for (int i = 0; i < primitive.vertexCount; i++) {
+                    ensureSpace(sizes[a] * 4);
+                    putAttribute(mesh, primitive, i, a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Put one attribute of one vertex. The caller must ensure there's space.
+     */
+    private void putAttribute(MeshView mesh, Primitive primitive, int vertex, int attribute) {
+        int[] vertices = primitive.vertices;
+        switch (attribute) {
+            case 0 -> {
+                int v = vertices[vertex * 3];
+                buffer.putFloat(mesh.getVertexComponent(v, 0));
+                buffer.putFloat(mesh.getVertexComponent(v, 1));
+                buffer.putFloat(mesh.getVertexComponent(v, 2));
+            }
+            case 1 -> {
+                int v = vertices[vertex * 3];
+                buffer.putFloat(mesh.getVertexComponent(v, 3));
+                buffer.putFloat(mesh.getVertexComponent(v, 4));
+                buffer.putFloat(mesh.getVertexComponent(v, 5));
+            }
+            case 2 -> {
+                int t = vertices[vertex * 3 + 1];
+                buffer.putFloat(mesh.getTexCoordComponent(t, 0));
+                buffer.putFloat(1 - mesh.getTexCoordComponent(t, 1));
+            }
+            default -> {
+                int n = vertices[vertex * 3 + 2];
+                buffer.putFloat(mesh.getNormalComponent(n, 0));
+                buffer.putFloat(mesh.getNormalComponent(n, 1));
+                buffer.putFloat(mesh.getNormalComponent(n, 2));
+            }
+        }
+    }
+
+    private void writeIndices(Primitive primitive) throws IOException {
+        int[] indices = primitive.indices;
+        if (primitive.shortIndices()) {
+            for (int index : indices) {
+                ensureSpace(2);
+                buffer.putShort((short) index);
+            }
+            if ((indices.length & 1) != 0) {
+                ensureSpace(2);
+                buffer.putShort((short) 0);
+            }
+        } else {
+            for (int index : indices) {
+                ensureSpace(4);
+                buffer.putInt(index);
+            }
+        }
+    }
+
+    private void putByte(byte value) throws IOException {
+        ensureSpace(1);
+        buffer.put(value);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,206 @@
+package com.igrium.meshlib.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+import com.igrium.meshlib.MeshView;
+
+/**
+ * <p>
+ * Writes a {@link MeshView} as an OBJ file. Unlike <code>ObjWriter</code>, no
+ * intermediate <code>Obj</code> or strings are created; text is formatted
+ * straight into a direct buffer which is flushed to a channel whenever it
+ * fills up.
+ * </p>
+ * <p>
+ * A writer re-uses its buffer between calls, so it may be used to write many
+ * meshes, but not from multiple threads at once.
+ * </p>
+ */
+public class ObjStreamWriter {
+
+    /**
+     * The default size of the output buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    // Enough space for one index triplet or float component, plus separators.
+    private static final int TOKEN_SPACE = FloatFormatter.MAX_LENGTH + 4;
+
+    private final ByteBuffer buffer;
+    private FloatFormatter formatter = new FloatFormatter();
+
+    private WritableByteChannel channel;
+
+    /**
+     * Create an OBJ stream writer with the default buffer size.
+     */
+    public ObjStreamWriter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create an OBJ stream writer.
+     *
+     * @param bufferSize The size of the output buffer in bytes.
+     * @throws IllegalArgumentException If the buffer size is too small.
+     */
+    public ObjStreamWriter(int bufferSize) throws IllegalArgumentException {
+        if (bufferSize < TOKEN_SPACE * 4) {
+            throw new IllegalArgumentException("Buffer size must be at least " + TOKEN_SPACE * 4);
+        }
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Set how many decimal places float components are rounded to. Most meshes
+     * don't need full float precision, and fewer decimals make for smaller files
+     * that are faster to write.
+     *
+     * @param decimals Number of decimal places, or
+     *                 {@link FloatFormatter#SHORTEST} (the default) to write the
+     *                 shortest text that parses back to the same float.
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If <code>decimals</code> is invalid.
+     * @see FloatFormatter#FloatFormatter(int)
+     */
+    public ObjStreamWriter decimals(int decimals) throws IllegalArgumentException {
+        this.formatter = new FloatFormatter(decimals);
+        return this;
+    }
+
+    public int getDecimals() {
+        return formatter.getDecimals();
+    }
+
+    /**
+     * Write a mesh to a channel.
+     *
+     * @param mesh    The mesh to write.
+     * @param channel The channel to write to. Will not be closed.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(MeshView mesh, WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.clear();
+        try {
+            int vertexDimensions = mesh.getVertexDimensions();
+            int numVertices = mesh.getNumVertices();
+            for (int i = 0; i < numVertices; i++) {
+                putKeyword('v');
+                for (int c = 0; c < vertexDimensions; c++) {
+                    putFloat(mesh.getVertexComponent(i, c));
+                }
+                buffer.put((byte) '\n');
+            }
+
+            int numTexCoords = mesh.getNumTexCoords();
+            for (int i = 0; i < numTexCoords; i++) {
+                putKeyword('v', 't');
+                putFloat(mesh.getTexCoordComponent(i, 0));
+                putFloat(mesh.getTexCoordComponent(i, 1));
+                buffer.put((byte) '\n');
+            }
+
+            int numNormals = mesh.getNumNormals();
+            for (int i = 0; i < numNormals; i++) {
+                putKeyword('v', 'n');
+                putFloat(mesh.getNormalComponent(i, 0));
+                putFloat(mesh.getNormalComponent(i, 1));
+                putFloat(mesh.getNormalComponent(i, 2));
+                buffer.put((byte) '\n');
+            }
+
+            mesh.forEachFace(new FaceWriter());
+            flush();
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    private class FaceWriter implements MeshView.FaceVisitor<IOException> {
+        String material;
+        List<String> groups = List.of();
+
+        @Override
+        public void visit(int vertexCount, int[] vertices, int[] texCoords, int[] normals, String material,
+                List<String> groups) throws IOException {
+            if (groups == null) {
+                groups = List.of();
+            }
+            if (!groups.equals(this.groups)) {
+                this.groups = groups;
+                putLine(groups.isEmpty() ? "g default" : "g " + String.join(" ", groups));
+            }
+
+            if (!Objects.equals(material, this.material)) {
+                this.material = material;
+                // A bare usemtl clears the material, so later faces don't inherit it.
+                putLine(material != null ? "usemtl " + material : "usemtl");
+            }
+
+            putKeyword('f');
+            for (int i = 0; i < vertexCount; i++) {
+                ensureSpace(TOKEN_SPACE);
+                buffer.put((byte) ' ');
+                formatter.writeLong(vertices[i] + 1, buffer);
+
+                if (texCoords != null || normals != null) {
+                    buffer.put((byte) '/');
+                    if (texCoords != null) {
+                        formatter.writeLong(texCoords[i] + 1, buffer);
+                    }
+                }
+                if (normals != null) {
+                    buffer.put((byte) '/');
+                    formatter.writeLong(normals[i] + 1, buffer);
+                }
+            }
+            buffer.put((byte) '\n');
+        }
+    }
+
+    private void putKeyword(char... keyword) throws IOException {
+        ensureSpace(TOKEN_SPACE);
+        for (char c : keyword) {
+            buffer.put((byte) c);
+        }
+    }
+
+    private void putFloat(float value) throws IOException {
+        ensureSpace(TOKEN_SPACE);
+        buffer.put((byte) ' ');
+        formatter.write(value, buffer);
+    }
+
+    private void putLine(String line) throws IOException {
+        byte[] bytes = (line + '\n').getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,255 @@
+package com.igrium.meshlib.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * A channel that gzips everything written to it, compressing on many threads at
+ * once. Like <code>pigz</code>, the data is cut into fixed-size blocks, each of
+ * which is compressed as its own gzip member by a task in a fork-join pool.
+ * The members are written to the target channel in order, and concatenated
+ * members are a valid gzip file that any gzip reader (including
+ * <code>GZIPInputStream</code>) decompresses as one stream.
+ * </p>
+ * <p>
+ * Blocks are compressed while the next ones are being filled, and finished
+ * members are written as soon as they're ready, so producing, compressing and
+ * writing the data overlap. Only a bounded number of blocks are in flight at
+ * once; writes block once that many are waiting to be compressed.
+ * </p>
+ * <p>
+ * Because blocks don't share a dictionary, the output is slightly larger than
+ * that of a single-threaded <code>GZIPOutputStream</code>. Like the other
+ * writers in this package, this channel may not be written to from multiple
+ * threads at once.
+ * </p>
+ */
+public class ParallelGzipChannel implements WritableByteChannel {
+
+    /**
+     * The default number of uncompressed bytes in each block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, // Magic
+            Deflater.DEFLATED, // Compression method
+            0, // Flags
+            0, 0, 0, 0, // Modification time
+            0, // Extra flags
+            (byte) 0xff // Unknown OS
+    };
+    private static final int TRAILER_SIZE = 8;
+
+    private final WritableByteChannel target;
+    private final ForkJoinPool pool;
+    private final int blockSize;
+    private final int level;
+    private final int maxInFlight;
+
+    private final Queue<ForkJoinTask<Member>> pending = new ArrayDeque<>();
+    // Blocks and deflaters that aren't in use, shared with compression tasks.
+    private final Queue<byte[]> freeBlocks = new ConcurrentLinkedQueue<>();
+    private final Queue<Deflater> freeDeflaters = new ConcurrentLinkedQueue<>();
+
+    private byte[] block;
+    private int blockLength;
+    private boolean anyMembers;
+    private boolean finished;
+    private boolean open = true;
+
+    /**
+     * Create a parallel gzip channel with the default block size and compression
+     * level.
+     *
+     * @param target The channel to write compressed data to.
+     * @param pool   The pool to compress blocks in.
+     */
+    public ParallelGzipChannel(WritableByteChannel target, ForkJoinPool pool) {
+        this(target, pool, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Create a parallel gzip channel.
+     *
+     * @param target    The channel to write compressed data to.
+     * @param pool      The pool to compress blocks in.
+     * @param blockSize The number of uncompressed bytes in each block. Larger
+     *                  blocks compress slightly better but use more memory.
+     * @param level     The compression level, from 0 to 9, or
+     *                  <code>Deflater.DEFAULT_COMPRESSION</code>.
+     * @throws IllegalArgumentException If the block size or compression level is
+     *                                  invalid.
+     */
+    public ParallelGzipChannel(WritableByteChannel target, ForkJoinPool pool, int blockSize, int level)
+            throws IllegalArgumentException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.target = Objects.requireNonNull(target);
+        this.pool = Objects.requireNonNull(pool);
+        this.blockSize = blockSize;
+        this.level = level;
+        this.maxInFlight = Math.max(2, pool.getParallelism() * 2);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open || finished) {
+            throw new ClosedChannelException();
+        }
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            if (block == null) {
+                block = takeBlock();
+                blockLength = 0;
+            }
+            int length = Math.min(src.remaining(), blockSize - blockLength);
+            src.get(block, blockLength, length);
+            blockLength += length;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Compress any remaining data and write every member to the target channel,
+     * without closing it. Nothing more may be written afterwards.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void finish() throws IOException {
+        if (finished)
+            return;
+        finished = true;
+        // An empty gzip file still needs one member.
+        if (block != null || !anyMembers) {
+            if (block == null) {
+                block = takeBlock();
+                blockLength = 0;
+            }
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeMember(pending.poll());
+        }
+        Deflater deflater;
+        while ((deflater = freeDeflaters.poll()) != null) {
+            deflater.end();
+        }
+        freeBlocks.clear();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Finish the gzip stream and close the target channel.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open)
+            return;
+        try {
+            finish();
+        } finally {
+            open = false;
+            target.close();
+        }
+    }
+
+    private byte[] takeBlock() {
+        byte[] block = freeBlocks.poll();
+        return block != null ? block : new byte[blockSize];
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        block = null;
+        blockLength = 0;
+        anyMembers = true;
+
+        pending.add(pool.submit(() -> compress(data, length)));
+
+        // Write whatever is already done, and wait for the oldest block if too
+        // many are in flight.
+        while (!pending.isEmpty() && (pending.size() > maxInFlight || pending.peek().isDone())) {
+            writeMember(pending.poll());
+        }
+    }
+
+    private void writeMember(ForkJoinTask<Member> task) throws IOException {
+        Member member = task.join();
+        ByteBuffer buffer = ByteBuffer.wrap(member.data(), 0, member.length());
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private record Member(byte[] data, int length) {
+    }
+
+    /**
+     * Compress a block into a complete gzip member.
+     */
+    private Member compress(byte[] block, int length) {
+        Deflater deflater = freeDeflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(block, 0, length);
+
+            byte[] out = new byte[HEADER.length + length + (length >> 8) + 64 + TRAILER_SIZE];
+            System.arraycopy(HEADER, 0, out, 0, HEADER.length);
+            int outLength = HEADER.length;
+
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (outLength == out.length - TRAILER_SIZE) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                outLength += deflater.deflate(out, outLength, out.length - TRAILER_SIZE - outLength);
+            }
+
+            putIntLE(out, outLength, (int) crc.getValue());
+            putIntLE(out, outLength + 4, length);
+            return new Member(out, outLength + TRAILER_SIZE);
+        } finally {
+            deflater.reset();
+            freeDeflaters.add(deflater);
+            freeBlocks.add(block);
+        }
+    }
+
+    private static void putIntLE(byte[] dest, int offset, int value) {
+        dest[offset] = (byte) value;
+        dest[offset + 1] = (byte) (value >>> 8);
+        dest[offset + 2] = (byte) (value >>> 16);
+        dest[offset + 3] = (byte) (value >>> 24);
+    }
+}
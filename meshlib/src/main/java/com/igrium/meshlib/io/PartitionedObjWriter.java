@@ -0,0 +1,357 @@
+package com.igrium.meshlib.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import com.igrium.meshlib.MeshView;
+import com.igrium.meshlib.Vertex;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+/**
+ * <p>
+ * Splits a {@link MeshView} into partitions with a {@link FacePartitioner} and
+ * writes each partition to its own OBJ file. Every partition is renumbered to
+ * only contain the vertices, texture coordinates and normals its faces use, so
+ * each file can be loaded on its own.
+ * </p>
+ * <p>
+ * Faces are partitioned in parallel, and then every partition is written by
+ * its own task in the given pool, so large exports can use every core and
+ * write to several files at once.
+ * </p>
+ */
+public class PartitionedObjWriter {
+
+    // Number of faces each task partitions at once.
+    private static final int FACE_CHUNK_SIZE = 4096;
+
+    private final FacePartitioner partitioner;
+    private int decimals = FloatFormatter.SHORTEST;
+
+    /**
+     * Create a partitioned OBJ writer.
+     *
+     * @param partitioner The partitioner to split the mesh with.
+     */
+    public PartitionedObjWriter(FacePartitioner partitioner) {
+        this.partitioner = Objects.requireNonNull(partitioner);
+    }
+
+    /**
+     * Get the partitioner this writer splits meshes with.
+     * @return The partitioner.
+     */
+    public FacePartitioner getPartitioner() {
+        return partitioner;
+    }
+
+    /**
+     * Set how many decimal places float components are rounded to.
+     *
+     * @param decimals Number of decimal places, or
+     *                 {@link FloatFormatter#SHORTEST} (the default).
+     * @return <code>this</code>
+     * @throws IllegalArgumentException If <code>decimals</code> is invalid.
+     * @see ObjStreamWriter#decimals(int)
+     */
+    public PartitionedObjWriter decimals(int decimals) throws IllegalArgumentException {
+        this.decimals = FloatFormatter.checkDecimals(decimals);
+        return this;
+    }
+
+    public int getDecimals() {
+        return decimals;
+    }
+
+    /**
+     * Write a mesh as one OBJ file per partition. Each file is named after its
+     * partition and overwritten if it exists. Characters that might not be
+     * allowed in a file name, including path separators, are replaced with
+     * underscores, so files are always written directly into the directory. If
+     * two partitions would end up with the same file name (ignoring case), a
+     * number is appended to the later one. Faces keep their relative order
+     * within each partition.
+     *
+     * @param mesh      The mesh to write.
+     * @param directory The directory to write the files to. Must exist.
+     * @param pool      The pool to partition the mesh and write the files in.
+     * @return The file of every partition, sorted by partition name.
+     * @throws IOException If an I/O error occurs.
+     */
+    public SortedMap<String, Path> write(MeshView mesh, Path directory, ForkJoinPool pool) throws IOException {
+        int numFaces = mesh.getNumFaces();
+        Map<String, Integer> partitionIds = new ConcurrentHashMap<>();
+        AtomicInteger nextId = new AtomicInteger();
+        int[] partitionOf = new int[numFaces];
+
+        int chunkCount = (numFaces + FACE_CHUNK_SIZE - 1) / FACE_CHUNK_SIZE;
+        inPool(pool, () -> IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+            int from = chunk * FACE_CHUNK_SIZE;
+            int[] next = { from };
+            mesh.forEachFace(from, Math.min(numFaces, from + FACE_CHUNK_SIZE),
+                    (count, vertices, texCoords, normals, material, groups) -> {
+                        String name = Objects.requireNonNull(
+                                partitioner.partition(mesh, count, vertices, material, groups),
+                                "Partition name may not be null.");
+                        partitionOf[next[0]++] = partitionIds.computeIfAbsent(name,
+                                n -> nextId.getAndIncrement());
+                    });
+        }));
+
+        // Bucket face indices by partition, keeping them in order.
+        int[] offsets = new int[nextId.get() + 1];
+        for (int partition : partitionOf) {
+            offsets[partition + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        int[] faces = new int[numFaces];
+        int[] cursors = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int face = 0; face < numFaces; face++) {
+            faces[cursors[partitionOf[face]]++] = face;
+        }
+
+        SortedMap<String, Path> files = new TreeMap<>();
+        partitionIds.forEach((name, id) -> files.put(name, null));
+        // Assigned in partition name order, so the same partitions always get the same files.
+        Set<String> usedNames = new HashSet<>();
+        for (Map.Entry<String, Path> entry : files.entrySet()) {
+            String fileName = toFileName(entry.getKey());
+            String unique = fileName;
+            for (int i = 2; !usedNames.add(unique.toLowerCase(Locale.ROOT)); i++) {
+                unique = fileName + "_" + i;
+            }
+            entry.setValue(directory.resolve(unique + ".obj"));
+        }
+
+        ThreadLocal<ObjStreamWriter> writers = ThreadLocal.withInitial(() -> new ObjStreamWriter().decimals(decimals));
+        try {
+            inPool(pool, () -> partitionIds.entrySet().parallelStream().forEach(entry -> {
+                int id = entry.getValue();
+                int[] partitionFaces = Arrays.copyOfRange(faces, offsets[id], offsets[id + 1]);
+                PartitionView view = new PartitionView(mesh, partitionFaces);
+
+                try (FileChannel channel = FileChannel.open(files.get(entry.getKey()), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writers.get().write(view, channel);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return Collections.unmodifiableSortedMap(files);
+    }
+
+    /**
+     * Replace every character that might not be allowed in a file name with an
+     * underscore. Dots are only allowed after the first character, so names
+     * like <code>..</code> can't refer to another directory.
+     */
+    static String toFileName(String name) {
+        if (name.isEmpty())
+            return "_";
+
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean allowed = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-'
+                    || c == '_' || c == '.' && i > 0;
+            builder.append(allowed ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    private static void inPool(ForkJoinPool pool, Runnable task) {
+        if (ForkJoinTask.getPool() == pool) {
+            task.run();
+        } else {
+            pool.submit(task).join();
+        }
+    }
+
+    /**
+     * A growable list of <code>int</code>s.
+     */
+    private static class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void addAll(int[] indices, int count) {
+            if (size + count > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + count));
+            }
+            System.arraycopy(indices, 0, values, size, count);
+            size += count;
+        }
+
+        /**
+         * Sort and remove duplicates.
+         */
+        int[] toSortedSet() {
+            int[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int length = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (length == 0 || sorted[length - 1] != sorted[i]) {
+                    sorted[length++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, length);
+        }
+    }
+
+    /**
+     * One partition of a mesh. Attributes are renumbered by the order of their
+     * index in the original mesh.
+     */
+    private static class PartitionView implements MeshView {
+        private final MeshView mesh;
+        private final int[] faces;
+        // Sorted indices in the original mesh of every attribute the partition uses.
+        private final int[] vertices;
+        private final int[] texCoords;
+        private final int[] normals;
+
+        PartitionView(MeshView mesh, int[] faces) {
+            this.mesh = mesh;
+            this.faces = faces;
+
+            IntList vertices = new IntList();
+            IntList texCoords = new IntList();
+            IntList normals = new IntList();
+            forEachRun(0, faces.length, (count, v, vt, vn, material, groups) -> {
+                vertices.addAll(v, count);
+                if (vt != null) {
+                    texCoords.addAll(vt, count);
+                }
+                if (vn != null) {
+                    normals.addAll(vn, count);
+                }
+            });
+            this.vertices = vertices.toSortedSet();
+            this.texCoords = texCoords.toSortedSet();
+            this.normals = normals.toSortedSet();
+        }
+
+        /**
+         * Visit the original faces in a range of this partition, grouping
+         * consecutive faces into one call.
+         */
+        private <E extends Exception> void forEachRun(int fromIndex, int toIndex, FaceVisitor<E> visitor)
+                throws E {
+            int start = fromIndex;
+            while (start < toIndex) {
+                int end = start + 1;
+                while (end < toIndex && faces[end] == faces[end - 1] + 1) {
+                    end++;
+                }
+                mesh.forEachFace(faces[start], faces[end - 1] + 1, visitor);
+                start = end;
+            }
+        }
+
+        @Override
+        public int getNumVertices() {
+            return vertices.length;
+        }
+
+        @Override
+        public Vertex getVertex(int index) {
+            return mesh.getVertex(vertices[index]);
+        }
+
+        @Override
+        public int getVertexDimensions() {
+            return mesh.getVertexDimensions();
+        }
+
+        @Override
+        public float getVertexComponent(int index, int component) {
+            return mesh.getVertexComponent(vertices[index], component);
+        }
+
+        @Override
+        public int getNumTexCoords() {
+            return texCoords.length;
+        }
+
+        @Override
+        public Vector2 getTexCoord(int index) {
+            return mesh.getTexCoord(texCoords[index]);
+        }
+
+        @Override
+        public float getTexCoordComponent(int index, int component) {
+            return mesh.getTexCoordComponent(texCoords[index], component);
+        }
+
+        @Override
+        public int getNumNormals() {
+            return normals.length;
+        }
+
+        @Override
+        public Vector3 getNormal(int index) {
+            return mesh.getNormal(normals[index]);
+        }
+
+        @Override
+        public float getNormalComponent(int index, int component) {
+            return mesh.getNormalComponent(normals[index], component);
+        }
+
+        @Override
+        public int getNumFaces() {
+            return faces.length;
+        }
+
+        @Override
+        public <E extends Exception> void forEachFace(int fromIndex, int toIndex, FaceVisitor<E> visitor)
+                throws E {
+            Objects.checkFromToIndex(fromIndex, toIndex, faces.length);
+            int[][] local = { new int[4], new int[4], new int[4] };
+
+            forEachRun(fromIndex, toIndex, (count, v, vt, vn, material, groups) -> {
+                if (count > local[0].length) {
+                    local[0] = new int[count];
+                    local[1] = new int[count];
+                    local[2] = new int[count];
+                }
+                visitor.visit(count, remap(v, count, vertices, local[0]), remap(vt, count, texCoords, local[1]),
+                        remap(vn, count, normals, local[2]), material, groups);
+            });
+        }
+
+        private static int[] remap(int[] indices, int count, int[] sortedSet, int[] dest) {
+            if (indices == null)
+                return null;
+
+            for (int i = 0; i < count; i++) {
+                dest[i] = Arrays.binarySearch(sortedSet, indices[i]);
+            }
+            return dest;
+        }
+    }
+}
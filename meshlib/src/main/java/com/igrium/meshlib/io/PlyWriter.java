@@ -0,0 +1,256 @@
+package com.igrium.meshlib.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.igrium.meshlib.MeshView;
+
+/**
+ * <p>
+ * Writes a {@link MeshView} as a binary little-endian PLY file. Vertex records
+ * hold the position, the RGB color (as <code>uchar</code>s) and, if the mesh
+ * has any, the normal and texture coordinate of each vertex. Faces are written
+ * as lists of vertex indices. PLY has no notion of materials or groups, so
+ * they're dropped.
+ * </p>
+ * <p>
+ * PLY vertices have a single index, so if the mesh has texture coordinates or
+ * normals, every distinct combination of vertex, texture coordinate and
+ * normal indices becomes one PLY vertex. Otherwise, the mesh's vertices are
+ * written as they are. Either way, records are encoded straight into a direct
+ * buffer which is flushed to a channel whenever it fills up.
+ * </p>
+ * <p>
+ * A writer re-uses its buffer between calls, so it may be used to write many
+ * meshes, but not from multiple threads at once.
+ * </p>
+ */
+public class PlyWriter {
+
+    /**
+     * The default size of the output buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 22;
+
+    // Enough space for the largest vertex record.
+    private static final int RECORD_SPACE = 11 * 4;
+
+    private final ByteBuffer buffer;
+
+    private WritableByteChannel channel;
+
+    /**
+     * Create a PLY writer with the default buffer size.
+     */
+    public PlyWriter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a PLY writer.
+     *
+     * @param bufferSize The size of the output buffer in bytes.
+     * @throws IllegalArgumentException If the buffer size is too small.
+     */
+    public PlyWriter(int bufferSize) throws IllegalArgumentException {
+        if (bufferSize < RECORD_SPACE * 4) {
+            throw new IllegalArgumentException("Buffer size must be at least " + RECORD_SPACE * 4);
+        }
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Write a mesh to a channel.
+     *
+     * @param mesh    The mesh to write.
+     * @param channel The channel to write to. Will not be closed.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(MeshView mesh, WritableByteChannel channel) throws IOException {
+        boolean colors = mesh.getVertexDimensions() >= 6;
+        boolean texCoords = mesh.getNumTexCoords() > 0;
+        boolean normals = mesh.getNumNormals() > 0;
+        CornerTable corners = texCoords || normals ? new CornerTable() : null;
+
+        // Index corners and find the largest face so the header can be written.
+        int[] maxVertexCount = new int[1];
+        mesh.forEachFace((count, vertices, faceTexCoords, faceNormals, material, groups) -> {
+            maxVertexCount[0] = Math.max(maxVertexCount[0], count);
+            if (corners != null) {
+                for (int i = 0; i < count; i++) {
+                    corners.indexOf(vertices[i], faceTexCoords != null ? faceTexCoords[i] : -1,
+                            faceNormals != null ? faceNormals[i] : -1);
+                }
+            }
+        });
+        boolean shortCounts = maxVertexCount[0] <= 0xFF;
+        int numVertices = corners != null ? corners.size : mesh.getNumVertices();
+
+        this.channel = channel;
+        buffer.clear();
+        try {
+            putHeader(numVertices, mesh.getNumFaces(), colors, texCoords, normals, shortCounts);
+
+            for (int i = 0; i < numVertices; i++) {
+                ensureSpace(RECORD_SPACE);
+                int v = corners != null ? corners.values[i * 3] : i;
+                buffer.putFloat(mesh.getVertexComponent(v, 0));
+                buffer.putFloat(mesh.getVertexComponent(v, 1));
+                buffer.putFloat(mesh.getVertexComponent(v, 2));
+                if (colors) {
+                    buffer.put(toByte(mesh.getVertexComponent(v, 3)));
+                    buffer.put(toByte(mesh.getVertexComponent(v, 4)));
+                    buffer.put(toByte(mesh.getVertexComponent(v, 5)));
+                }
+                if (normals) {
+                    int n = corners.values[i * 3 + 2];
+                    buffer.putFloat(n >= 0 ? mesh.getNormalComponent(n, 0) : 0);
+                    buffer.putFloat(n >= 0 ? mesh.getNormalComponent(n, 1) : 0);
+                    buffer.putFloat(n >= 0 ? mesh.getNormalComponent(n, 2) : 0);
+                }
+                if (texCoords) {
+                    int t = corners.values[i * 3 + 1];
+                    buffer.putFloat(t >= 0 ? mesh.getTexCoordComponent(t, 0) : 0);
+                    buffer.putFloat(t >= 0 ? mesh.getTexCoordComponent(t, 1) : 0);
+                }
+            }
+
+            mesh.forEachFace((count, vertices, faceTexCoords, faceNormals, material, groups) -> {
+                ensureSpace(4);
+                if (shortCounts) {
+                    buffer.put((byte) count);
+                } else {
+                    buffer.putInt(count);
+                }
+                for (int i = 0; i < count; i++) {
+                    ensureSpace(4);
+                    buffer.putInt(corners != null
+                            ? corners.indexOf(vertices[i], faceTexCoords != null ? faceTexCoords[i] : -1,
+                                    faceNormals != null ? faceNormals[i] : -1)
+                            : vertices[i]);
+                }
+            });
+            flush();
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    private void putHeader(int numVertices, int numFaces, boolean colors, boolean texCoords, boolean normals,
+            boolean shortCounts) throws IOException {
+        StringBuilder header = new StringBuilder();
+        header.append("ply\n");
+        header.append("format binary_little_endian 1.0\n");
+        header.append("comment Written by meshlib\n");
+        header.append("element vertex ").append(numVertices).append('\n');
+        for (String property : List.of("x", "y", "z")) {
+            header.append("property float ").append(property).append('\n');
+        }
+        if (colors) {
+            for (String property : List.of("red", "green", "blue")) {
+                header.append("property uchar ").append(property).append('\n');
+            }
+        }
+        if (normals) {
+            for (String property : List.of("nx", "ny", "nz")) {
+                header.append("property float ").append(property).append('\n');
+            }
+        }
+        if (texCoords) {
+            for (String property : List.of("s", "t")) {
+                header.append("property float ").append(property).append('\n');
+            }
+        }
+        header.append("element face ").append(numFaces).append('\n');
+        header.append("property list ").append(shortCounts ? "uchar" : "int").append(" int vertex_indices\n");
+        header.append("end_header\n");
+
+        byte[] bytes = header.toString().getBytes(StandardCharsets.US_ASCII);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private static byte toByte(float color) {
+        return (byte) Math.round(Math.max(0, Math.min(1, color)) * 255);
+    }
+
+    /**
+     * Assigns consecutive indices to distinct vertex, texture coordinate and
+     * normal index triplets.
+     */
+    private static class CornerTable {
+        int[] values = new int[48];
+        int size;
+        private int[] slots = new int[32];
+
+        int indexOf(int v, int t, int n) {
+            int mask = slots.length - 1;
+            int hash = (v * 0x9E3779B9 + t) * 0x9E3779B9 + n;
+            hash ^= hash >>> 16;
+            for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+                int existing = slots[slot] - 1;
+                if (existing < 0) {
+                    return add(slot, v, t, n);
+                }
+                if (values[existing * 3] == v && values[existing * 3 + 1] == t && values[existing * 3 + 2] == n) {
+                    return existing;
+                }
+            }
+        }
+
+        private int add(int slot, int v, int t, int n) {
+            int index = size++;
+            if (size * 3 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[index * 3] = v;
+            values[index * 3 + 1] = t;
+            values[index * 3 + 2] = n;
+            slots[slot] = index + 1;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return index;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int i = 0; i < size; i++) {
+                int hash = (values[i * 3] * 0x9E3779B9 + values[i * 3 + 1]) * 0x9E3779B9 + values[i * 3 + 2];
+                hash ^= hash >>> 16;
+                int slot = hash & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = i + 1;
+            }
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
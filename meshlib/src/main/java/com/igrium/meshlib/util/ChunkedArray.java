@@ -0,0 +1,88 @@
+package com.igrium.meshlib.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * An append-only array that grows in chunks rather than copying its contents.
+ * Chunk <code>n</code> holds <code>FIRST_CHUNK_SIZE &lt;&lt; n</code> elements, so a
+ * fixed directory of chunks covers the entire <code>int</code> index space and
+ * existing elements never move.
+ * </p>
+ * <p>
+ * Chunks are allocated lock-free, so any number of threads may
+ * <code>set</code> distinct indices concurrently. This class does not track its
+ * own size; callers are expected to hand out indices themselves (usually with
+ * an atomic counter). Reads are only guaranteed to observe writes that
+ * happen-before them, such as writes made before a lock was released.
+ * </p>
+ */
+public class ChunkedArray<T> {
+    static final int FIRST_CHUNK_BITS = 10;
+    static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_BITS;
+    static final int NUM_CHUNKS = 32 - FIRST_CHUNK_BITS;
+
+    private final AtomicReferenceArray<Object[]> chunks = new AtomicReferenceArray<>(NUM_CHUNKS);
+
+    /**
+     * Set the element at a given index, allocating its chunk if needed.
+     *
+     * @param index Index to set.
+     * @param value The new value.
+     * @throws IndexOutOfBoundsException If the index is negative.
+     */
+    public void set(int index, T value) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        int chunk = chunkOf(index);
+        getOrAllocChunk(chunk)[offsetOf(index, chunk)] = value;
+    }
+
+    /**
+     * Get the element at a given index.
+     *
+     * @param index Index to get.
+     * @return The element, or <code>null</code> if it was never set.
+     * @throws IndexOutOfBoundsException If the index is negative.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        int chunk = chunkOf(index);
+        Object[] array = chunks.get(chunk);
+        return array != null ? (T) array[offsetOf(index, chunk)] : null;
+    }
+
+    private Object[] getOrAllocChunk(int chunk) {
+        Object[] array = chunks.get(chunk);
+        if (array != null)
+            return array;
+
+        Object[] newArray = new Object[chunkSize(chunk)];
+        if (chunks.compareAndSet(chunk, null, newArray)) {
+            return newArray;
+        } else {
+            return chunks.get(chunk);
+        }
+    }
+
+    static int chunkSize(int chunk) {
+        // The last chunk only needs to reach Integer.MAX_VALUE.
+        return chunk == NUM_CHUNKS - 1 ? FIRST_CHUNK_SIZE : FIRST_CHUNK_SIZE << chunk;
+    }
+
+    static int chunkOf(int index) {
+        // Shift the index so chunk n starts at 2^(n + FIRST_CHUNK_BITS). Done in
+        // long space so the last chunk doesn't overflow.
+        long shifted = (long) index + FIRST_CHUNK_SIZE;
+        return 63 - Long.numberOfLeadingZeros(shifted) - FIRST_CHUNK_BITS;
+    }
+
+    static int offsetOf(int index, int chunk) {
+        return (int) ((long) index + FIRST_CHUNK_SIZE - ((long) FIRST_CHUNK_SIZE << chunk));
+    }
+
+    static void checkIndex(int index) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException(index);
+    }
+}
@@ -0,0 +1,56 @@
+package com.igrium.meshlib.util;
+
+import static com.igrium.meshlib.util.ChunkedArray.checkIndex;
+import static com.igrium.meshlib.util.ChunkedArray.chunkOf;
+import static com.igrium.meshlib.util.ChunkedArray.chunkSize;
+import static com.igrium.meshlib.util.ChunkedArray.offsetOf;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A primitive version of {@link ChunkedArray} that stores <code>float</code>s
+ * without boxing them. The same concurrency rules apply.
+ */
+public class ChunkedFloatArray {
+    private final AtomicReferenceArray<float[]> chunks = new AtomicReferenceArray<>(ChunkedArray.NUM_CHUNKS);
+
+    /**
+     * Set the element at a given index, allocating its chunk if needed.
+     *
+     * @param index Index to set.
+     * @param value The new value.
+     * @throws IndexOutOfBoundsException If the index is negative.
+     */
+    public void set(int index, float value) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        int chunk = chunkOf(index);
+        getOrAllocChunk(chunk)[offsetOf(index, chunk)] = value;
+    }
+
+    /**
+     * Get the element at a given index.
+     *
+     * @param index Index to get.
+     * @return The element, or <code>0</code> if it was never set.
+     * @throws IndexOutOfBoundsException If the index is negative.
+     */
+    public float get(int index) throws IndexOutOfBoundsException {
+        checkIndex(index);
+        int chunk = chunkOf(index);
+        float[] array = chunks.get(chunk);
+        return array != null ? array[offsetOf(index, chunk)] : 0;
+    }
+
+    private float[] getOrAllocChunk(int chunk) {
+        float[] array = chunks.get(chunk);
+        if (array != null)
+            return array;
+
+        float[] newArray = new float[chunkSize(chunk)];
+        if (chunks.compareAndSet(chunk, null, newArray)) {
+            return newArray;
+        } else {
+            return chunks.get(chunk);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.igrium.meshlib.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.javagl.obj.FloatTuple;
+
+/**
+ * <p>
+ * A thread-safe table of fixed-size float tuples stored in primitive columns
+ * (one {@link ChunkedFloatArray} per component) and addressed by
+ * <code>int</code> handles. Handles are dense and assigned in insertion order.
+ * </p>
+ * <p>
+ * Deduplication uses an open-addressing hash table keyed on the bits of each
+ * component, compared the same way as <code>Float.equals</code>. The table is
+ * split into stripes which are locked independently, so threads only contend
+ * when they hash into the same stripe.
+ * </p>
+ */
+public class FloatAttributeTable {
+    private static final int STRIPE_BITS = 6;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+
+    private final int dimensions;
+    private final ChunkedFloatArray[] columns;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    private static class Stripe {
+        // Handle + 1 so that 0 can mark an empty slot.
+        int[] slots = new int[INITIAL_STRIPE_CAPACITY];
+        int[] hashes = new int[INITIAL_STRIPE_CAPACITY];
+        int size;
+    }
+
+    /**
+     * Create a float attribute table.
+     *
+     * @param dimensions The number of components in every tuple.
+     */
+    public FloatAttributeTable(int dimensions) {
+        this.dimensions = dimensions;
+        this.columns = new ChunkedFloatArray[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            columns[i] = new ChunkedFloatArray();
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Get the number of components in every tuple.
+     * @return Tuple dimensions.
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Get the number of tuples in the table.
+     * @return Tuple count.
+     */
+    public int size() {
+        return nextIndex.get();
+    }
+
+    /**
+     * Get a single component of a tuple.
+     *
+     * @param handle    Tuple handle.
+     * @param component Component index.
+     * @return The component value.
+     */
+    public float get(int handle, int component) {
+        return columns[component].get(handle);
+    }
+
+    /**
+     * Find the handle of a tuple, adding it if it does not exist.
+     *
+     * @param value The tuple. Only its first <code>getDimensions()</code>
+     *              components are read.
+     * @return The tuple's handle.
+     */
+    public int getOrAdd(FloatTuple value) {
+        return getOrAdd(value, null);
+    }
+
+    /**
+     * Find the handle of a tuple, adding it if it does not exist.
+     *
+     * @param value  The tuple. Only its first <code>getDimensions()</code>
+     *               components are read.
+     * @param misses Incremented if the tuple had to be added. May be
+     *               <code>null</code>.
+     * @return The tuple's handle.
+     */
+    public int getOrAdd(FloatTuple value, LongAdder misses) {
+        int hash = hash(value);
+        Stripe stripe = stripes[hash >>> (32 - STRIPE_BITS)];
+
+        synchronized (stripe) {
+            int mask = stripe.slots.length - 1;
+            int slot = hash & mask;
+            int handle;
+            while ((handle = stripe.slots[slot] - 1) >= 0) {
+                if (stripe.hashes[slot] == hash && matches(handle, value)) {
+                    return handle;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            handle = append(value);
+            insert(stripe, slot, handle, hash);
+            if (misses != null) {
+                misses.increment();
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * Add a tuple to the table, even if an equal one already exists. If it
+     * doesn't, future calls to <code>getOrAdd</code> will return the new tuple.
+     *
+     * @param value The tuple.
+     * @return The new tuple's handle.
+     */
+    public int add(FloatTuple value) {
+        int hash = hash(value);
+        Stripe stripe = stripes[hash >>> (32 - STRIPE_BITS)];
+
+        synchronized (stripe) {
+            int handle = append(value);
+
+            int mask = stripe.slots.length - 1;
+            int slot = hash & mask;
+            int existing;
+            while ((existing = stripe.slots[slot] - 1) >= 0) {
+                if (stripe.hashes[slot] == hash && matches(existing, value)) {
+                    return handle;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            insert(stripe, slot, handle, hash);
+            return handle;
+        }
+    }
+
+    /**
+     * Add a tuple to the table without registering it for deduplication.
+     *
+     * @param value The tuple.
+     * @return The new tuple's handle.
+     */
+    public int append(FloatTuple value) {
+        int handle = nextIndex.getAndIncrement();
+        for (int c = 0; c < dimensions; c++) {
+            columns[c].set(handle, value.get(c));
+        }
+        return handle;
+    }
+
+    private void insert(Stripe stripe, int slot, int handle, int hash) {
+        stripe.slots[slot] = handle + 1;
+        stripe.hashes[slot] = hash;
+        stripe.size++;
+
+        // Keep the load factor at or below 1/2 so probe sequences stay short.
+        if (stripe.size * 2 > stripe.slots.length) {
+            rehash(stripe);
+        }
+    }
+
+    private static void rehash(Stripe stripe) {
+        int[] oldSlots = stripe.slots;
+        int[] oldHashes = stripe.hashes;
+        int[] slots = new int[oldSlots.length * 2];
+        int[] hashes = new int[slots.length];
+        int mask = slots.length - 1;
+
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] == 0)
+                continue;
+
+            int slot = oldHashes[i] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = oldSlots[i];
+            hashes[slot] = oldHashes[i];
+        }
+
+        stripe.slots = slots;
+        stripe.hashes = hashes;
+    }
+
+    private boolean matches(int handle, FloatTuple value) {
+        for (int c = 0; c < dimensions; c++) {
+            if (Float.floatToIntBits(columns[c].get(handle)) != Float.floatToIntBits(value.get(c)))
+                return false;
+        }
+        return true;
+    }
+
+    private int hash(FloatTuple value) {
+        int hash = 0;
+        for (int c = 0; c < dimensions; c++) {
+            hash = hash * 31 + Float.floatToIntBits(value.get(c));
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The murmur3 finalizer. Float bit patterns are heavily structured, so the
+     * stripe and slot bits need to be mixed thoroughly.
+     */
+    static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,103 @@
+package com.igrium.meshlib.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * A thread-safe table that hands out a small, dense <code>int</code> ID for
+ * every distinct value added to it. Equal values always receive the same ID,
+ * and IDs are assigned in the order values were first interned, starting at
+ * <code>0</code>.
+ * </p>
+ * <p>
+ * Values can never be removed, so this is only suitable for small sets of
+ * values that are used many times, such as material names.
+ * </p>
+ */
+public class InternTable<T> {
+
+    private final Map<T, Integer> ids = new ConcurrentHashMap<>();
+    private final ChunkedArray<T> values = new ChunkedArray<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Get the ID of a value, assigning a new one if it hasn't been interned yet.
+     *
+     * @param value The value. Should be immutable.
+     * @return The value's ID.
+     * @throws NullPointerException If the value is <code>null</code>.
+     */
+    public int intern(T value) throws NullPointerException {
+        Integer id = ids.get(value);
+        if (id != null)
+            return id;
+
+        return ids.computeIfAbsent(value, v -> {
+            int newId = nextId.getAndIncrement();
+            values.set(newId, v);
+            return newId;
+        });
+    }
+
+    /**
+     * Get the value with a given ID.
+     *
+     * @param id The ID, as returned by <code>intern</code>.
+     * @return The value.
+     * @throws IndexOutOfBoundsException If no value has been given this ID.
+     */
+    public T get(int id) throws IndexOutOfBoundsException {
+        T value = id < nextId.get() ? values.get(id) : null;
+        if (value == null) {
+            throw new IndexOutOfBoundsException(id);
+        }
+        return value;
+    }
+
+    /**
+     * Rank every value interned so far. Values that are still being interned
+     * by another thread rank after all others, in ID order.
+     *
+     * @param comparator The order to rank values in.
+     * @return An array with the rank of every ID, from <code>0</code> to
+     *         <code>size() - 1</code>.
+     */
+    public int[] ranks(Comparator<? super T> comparator) {
+        int size = nextId.get();
+        // Read every value once, so values set while sorting can't change the order.
+        Object[] snapshot = new Object[size];
+        Integer[] ids = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            snapshot[i] = values.get(i);
+            ids[i] = i;
+        }
+        Arrays.sort(ids, (a, b) -> {
+            @SuppressWarnings("unchecked")
+            T valueA = (T) snapshot[a];
+            @SuppressWarnings("unchecked")
+            T valueB = (T) snapshot[b];
+            if (valueA == null || valueB == null) {
+                return valueA != null ? -1 : valueB != null ? 1 : Integer.compare(a, b);
+            }
+            return comparator.compare(valueA, valueB);
+        });
+
+        int[] ranks = new int[size];
+        for (int rank = 0; rank < size; rank++) {
+            ranks[ids[rank]] = rank;
+        }
+        return ranks;
+    }
+
+    /**
+     * Get the number of values that have been interned.
+     * @return The number of IDs handed out.
+     */
+    public int size() {
+        return nextId.get();
+    }
+}
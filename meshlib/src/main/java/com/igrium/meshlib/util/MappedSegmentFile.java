@@ -0,0 +1,196 @@
+package com.igrium.meshlib.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * A temporary file that is memory-mapped in fixed-size segments, so it can be
+ * far larger than the heap. Segments are mapped as they're first accessed,
+ * which grows the file. Values are addressed by their byte position in the
+ * file and stored in native byte order.
+ * </p>
+ * <p>
+ * All methods are thread-safe, as long as no two threads write to the same
+ * position at once. Like any other memory, writes are only guaranteed to be
+ * visible to other threads after some other synchronization. The file is
+ * deleted once it's closed, so it must stay open for as long as it's read.
+ * </p>
+ */
+public class MappedSegmentFile implements Closeable {
+
+    /**
+     * The default segment size, as a power of two (64 MiB).
+     */
+    public static final int DEFAULT_SEGMENT_BITS = 26;
+
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final int segmentBits;
+    private final long segmentMask;
+    private final AtomicReferenceArray<ByteBuffer> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+
+    /**
+     * Create a new temporary file.
+     *
+     * @param directory   Directory to create the file in.
+     * @param segmentBits The size of each segment, as a power of two. Must be at
+     *                    least <code>3</code> so that aligned values never span
+     *                    segments.
+     * @throws IOException              If the file can't be created.
+     * @throws IllegalArgumentException If the segment size is out of range.
+     */
+    public MappedSegmentFile(Path directory, int segmentBits) throws IOException, IllegalArgumentException {
+        if (segmentBits < 3 || segmentBits > 30) {
+            throw new IllegalArgumentException("Segment bits must be between 3 and 30.");
+        }
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L << segmentBits) - 1;
+
+        Path file = Files.createTempFile(directory, "meshlib", ".bin");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Get the size of each segment.
+     * @return Segment size in bytes.
+     */
+    public int getSegmentSize() {
+        return 1 << segmentBits;
+    }
+
+    /**
+     * Write an <code>int</code>.
+     *
+     * @param position Byte position. Must be a multiple of <code>4</code>.
+     * @param value    The value.
+     * @throws UncheckedIOException If the segment can't be mapped.
+     */
+    public void putInt(long position, int value) throws UncheckedIOException {
+        segment(position).putInt((int) (position & segmentMask), value);
+    }
+
+    /**
+     * Read an <code>int</code>.
+     *
+     * @param position Byte position. Must be a multiple of <code>4</code>.
+     * @return The value.
+     * @throws UncheckedIOException If the segment can't be mapped.
+     */
+    public int getInt(long position) throws UncheckedIOException {
+        return segment(position).getInt((int) (position & segmentMask));
+    }
+
+    /**
+     * Write a <code>float</code>.
+     *
+     * @param position Byte position. Must be a multiple of <code>4</code>.
+     * @param value    The value.
+     * @throws UncheckedIOException If the segment can't be mapped.
+     */
+    public void putFloat(long position, float value) throws UncheckedIOException {
+        segment(position).putFloat((int) (position & segmentMask), value);
+    }
+
+    /**
+     * Read a <code>float</code>.
+     *
+     * @param position Byte position. Must be a multiple of <code>4</code>.
+     * @return The value.
+     * @throws UncheckedIOException If the segment can't be mapped.
+     */
+    public float getFloat(long position) throws UncheckedIOException {
+        return segment(position).getFloat((int) (position & segmentMask));
+    }
+
+    /**
+     * Write a <code>long</code>.
+     *
+     * @param position Byte position. Must be a multiple of <code>8</code>.
+     * @param value    The value.
+     * @throws UncheckedIOException If the segment can't be mapped.
+     */
+    public void putLong(long position, long value) throws UncheckedIOException {
+        segment(position).putLong((int) (position & segmentMask), value);
+    }
+
+    /**
+     * Read a <code>long</code>.
+     *
+     * @param position Byte position. Must be a multiple of <code>8</code>.
+     * @return The value.
+     * @throws UncheckedIOException If the segment can't be mapped.
+     */
+    public long getLong(long position) throws UncheckedIOException {
+        return segment(position).getLong((int) (position & segmentMask));
+    }
+
+    /**
+     * Write a <code>long</code> with release semantics, so that every write made
+     * before it is visible to a thread that reads it with
+     * <code>getLongAcquire</code>.
+     *
+     * @param position Byte position. Must be a multiple of <code>8</code>.
+     * @param value    The value.
+     * @throws UncheckedIOException If the segment can't be mapped.
+     */
+    public void putLongRelease(long position, long value) throws UncheckedIOException {
+        LONG.setRelease(segment(position), (int) (position & segmentMask), value);
+    }
+
+    /**
+     * Read a <code>long</code> with acquire semantics.
+     *
+     * @param position Byte position. Must be a multiple of <code>8</code>.
+     * @return The value.
+     * @throws UncheckedIOException If the segment can't be mapped.
+     * @see #putLongRelease(long, long)
+     */
+    public long getLongAcquire(long position) throws UncheckedIOException {
+        return (long) LONG.getAcquire(segment(position), (int) (position & segmentMask));
+    }
+
+    private ByteBuffer segment(long position) throws UncheckedIOException {
+        int index = (int) (position >>> segmentBits);
+        ByteBuffer segment = segments.get(index);
+        return segment != null ? segment : map(index);
+    }
+
+    private synchronized ByteBuffer map(int index) throws UncheckedIOException {
+        ByteBuffer segment = segments.get(index);
+        if (segment != null)
+            return segment;
+
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, (long) index << segmentBits, 1L << segmentBits)
+                    .order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.set(index, segment);
+        return segment;
+    }
+
+    /**
+     * Close and delete the file.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,304 @@
+package com.igrium.meshlib.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.javagl.obj.FloatTuple;
+
+/**
+ * <p>
+ * A thread-safe spatial hash grid that deduplicates float tuples within a
+ * tolerance. Tuples are stored in a {@link FloatAttributeTable}; when a new
+ * tuple is within <code>epsilon</code> of an existing one in every component,
+ * the closest existing tuple is returned instead.
+ * </p>
+ * <p>
+ * The first three components are quantized into cells of size
+ * <code>epsilon</code>, so any match must lie in one of the neighbouring
+ * cells. Cells are grouped into blocks, and each block hashes onto one of a
+ * fixed number of locked stripes. A lookup locks every stripe its neighbourhood
+ * touches (in a fixed order) so that two threads can never both add tuples
+ * which should have been welded.
+ * </p>
+ */
+public class WeldingGrid {
+    private static final int BLOCK_BITS = 3;
+    private static final int STRIPE_BITS = 8;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final FloatAttributeTable table;
+    private final float epsilon;
+    private final int gridDimensions;
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    /**
+     * Each stripe maps cell keys to linked lists of tuple handles. Only accessed
+     * while holding the lock.
+     */
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+
+        // Open-addressing map of cell key -> first entry + 1.
+        long[] keys = new long[INITIAL_CAPACITY];
+        int[] heads = new int[INITIAL_CAPACITY];
+        int cellCount;
+
+        // Entries form a singly-linked list per cell. next[i] is the next entry + 1.
+        int[] handles = new int[INITIAL_CAPACITY];
+        int[] next = new int[INITIAL_CAPACITY];
+        int entryCount;
+    }
+
+    /**
+     * Create a welding grid.
+     *
+     * @param table   The table to store tuples in. Tuples added to the table
+     *                through any other means won't be found by the grid.
+     * @param epsilon The welding tolerance. Must be positive.
+     * @throws IllegalArgumentException If <code>epsilon</code> is not positive.
+     */
+    public WeldingGrid(FloatAttributeTable table, float epsilon) throws IllegalArgumentException {
+        if (!(epsilon > 0)) {
+            throw new IllegalArgumentException("Epsilon must be positive.");
+        }
+        this.table = table;
+        this.epsilon = epsilon;
+        this.gridDimensions = Math.min(table.getDimensions(), 3);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Get the welding tolerance.
+     * @return Epsilon.
+     */
+    public float getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Find the closest tuple within <code>epsilon</code> of a value, adding the
+     * value if there is none.
+     *
+     * @param value The tuple.
+     * @return The handle of the existing or new tuple.
+     */
+    public int getOrAdd(FloatTuple value) {
+        return resolve(value, true, null);
+    }
+
+    /**
+     * Find the closest tuple within <code>epsilon</code> of a value, adding the
+     * value if there is none.
+     *
+     * @param value  The tuple.
+     * @param misses Incremented if the value had to be added. May be
+     *               <code>null</code>.
+     * @return The handle of the existing or new tuple.
+     */
+    public int getOrAdd(FloatTuple value, LongAdder misses) {
+        return resolve(value, true, misses);
+    }
+
+    /**
+     * Add a tuple, even if a close one already exists. Future calls to
+     * <code>getOrAdd</code> may weld to it.
+     *
+     * @param value The tuple.
+     * @return The new tuple's handle.
+     */
+    public int add(FloatTuple value) {
+        return resolve(value, false, null);
+    }
+
+    private int resolve(FloatTuple value, boolean weld, LongAdder misses) {
+        long cx = cellOf(value, 0);
+        long cy = cellOf(value, 1);
+        long cz = cellOf(value, 2);
+
+        int[] locked = lockNeighbourhood(cx, cy, cz);
+        try {
+            if (weld) {
+                int existing = findClosest(value, cx, cy, cz);
+                if (existing >= 0)
+                    return existing;
+            }
+
+            int handle = table.append(value);
+            insert(stripeOf(cx, cy, cz), cellKey(cx, cy, cz), handle);
+            if (misses != null) {
+                misses.increment();
+            }
+            return handle;
+        } finally {
+            for (int i = locked.length - 1; i >= 0; i--) {
+                stripes[locked[i]].lock.unlock();
+            }
+        }
+    }
+
+    private long cellOf(FloatTuple value, int component) {
+        if (component >= gridDimensions)
+            return 0;
+        return (long) Math.floor((double) value.get(component) / epsilon);
+    }
+
+    // The neighbourhood only extends along axes that are part of the grid.
+    private int rangeOf(int axis) {
+        return axis < gridDimensions ? 1 : 0;
+    }
+
+    private int[] lockNeighbourhood(long cx, long cy, long cz) {
+        int ry = rangeOf(1), rz = rangeOf(2);
+        long bx0 = (cx - 1) >> BLOCK_BITS, bx1 = (cx + 1) >> BLOCK_BITS;
+        long by0 = (cy - ry) >> BLOCK_BITS, by1 = (cy + ry) >> BLOCK_BITS;
+        long bz0 = (cz - rz) >> BLOCK_BITS, bz1 = (cz + rz) >> BLOCK_BITS;
+
+        int[] indices = new int[8];
+        int count = 0;
+        for (long bx = bx0; bx <= bx1; bx++) {
+            for (long by = by0; by <= by1; by++) {
+                for (long bz = bz0; bz <= bz1; bz++) {
+                    indices[count++] = blockStripe(bx, by, bz);
+                }
+            }
+        }
+
+        // Lock in a consistent order to avoid deadlocks.
+        Arrays.sort(indices, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || indices[unique - 1] != indices[i]) {
+                indices[unique++] = indices[i];
+            }
+        }
+
+        int[] locked = Arrays.copyOf(indices, unique);
+        for (int index : locked) {
+            stripes[index].lock.lock();
+        }
+        return locked;
+    }
+
+    private int findClosest(FloatTuple value, long cx, long cy, long cz) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int dimensions = table.getDimensions();
+
+        int ry = rangeOf(1), rz = rangeOf(2);
+        for (long x = cx - 1; x <= cx + 1; x++) {
+            for (long y = cy - ry; y <= cy + ry; y++) {
+                for (long z = cz - rz; z <= cz + rz; z++) {
+                    Stripe stripe = stripeOf(x, y, z);
+                    int entry = find(stripe, cellKey(x, y, z)) - 1;
+
+                    while (entry >= 0) {
+                        int handle = stripe.handles[entry];
+                        double distance = 0;
+                        boolean inRange = true;
+
+                        for (int c = 0; c < dimensions; c++) {
+                            double delta = table.get(handle, c) - value.get(c);
+                            if (Math.abs(delta) > epsilon) {
+                                inRange = false;
+                                break;
+                            }
+                            distance += delta * delta;
+                        }
+
+                        if (inRange && (distance < bestDistance || distance == bestDistance && handle < best)) {
+                            best = handle;
+                            bestDistance = distance;
+                        }
+                        entry = stripe.next[entry] - 1;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Returns the first entry + 1 of a cell, or 0 if it's empty.
+    private static int find(Stripe stripe, long key) {
+        int mask = stripe.keys.length - 1;
+        int slot = (int) key & mask;
+        int head;
+        while ((head = stripe.heads[slot]) != 0) {
+            if (stripe.keys[slot] == key)
+                return head;
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    private static void insert(Stripe stripe, long key, int handle) {
+        if (stripe.entryCount == stripe.handles.length) {
+            stripe.handles = Arrays.copyOf(stripe.handles, stripe.handles.length * 2);
+            stripe.next = Arrays.copyOf(stripe.next, stripe.next.length * 2);
+        }
+        int entry = stripe.entryCount++;
+        stripe.handles[entry] = handle;
+
+        int mask = stripe.keys.length - 1;
+        int slot = (int) key & mask;
+        while (stripe.heads[slot] != 0 && stripe.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (stripe.heads[slot] == 0) {
+            stripe.keys[slot] = key;
+            stripe.cellCount++;
+        }
+        stripe.next[entry] = stripe.heads[slot];
+        stripe.heads[slot] = entry + 1;
+
+        if (stripe.cellCount * 2 > stripe.keys.length) {
+            rehash(stripe);
+        }
+    }
+
+    private static void rehash(Stripe stripe) {
+        long[] oldKeys = stripe.keys;
+        int[] oldHeads = stripe.heads;
+        long[] keys = new long[oldKeys.length * 2];
+        int[] heads = new int[keys.length];
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] == 0)
+                continue;
+
+            int slot = (int) oldKeys[i] & mask;
+            while (heads[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            heads[slot] = oldHeads[i];
+        }
+
+        stripe.keys = keys;
+        stripe.heads = heads;
+    }
+
+    private Stripe stripeOf(long cx, long cy, long cz) {
+        return stripes[blockStripe(cx >> BLOCK_BITS, cy >> BLOCK_BITS, cz >> BLOCK_BITS)];
+    }
+
+    private static int blockStripe(long bx, long by, long bz) {
+        return (int) (cellKey(bx, by, bz) >>> (64 - STRIPE_BITS));
+    }
+
+    /**
+     * Hash cell coordinates into a key. Distinct cells may collide, which only
+     * costs a few extra distance checks since candidates are always verified.
+     */
+    private static long cellKey(long x, long y, long z) {
+        long hash = x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+        // SplitMix64 finalizer.
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,97 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+public class FaceArenaTest {
+
+    @Test
+    public void testReadBack() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().compactFaces(true));
+        FaceArena arena = mesh.getFaceArena();
+        int stone = Face.internMaterial("stone");
+        int groups = Face.internGroups(List.of("b", "a"));
+
+        int tri = arena.addTriangle(0, 1, 2, stone, groups);
+        int quad = arena.addQuad(3, 4, 5, 6, Face.NO_MATERIAL, groups);
+        int ngon = arena.add(5, new int[] { 7, 8, 9, 10, 11 }, null, new int[] { 0, 1, 2, 3, 4 }, stone, groups);
+
+        assertEquals(3, arena.size());
+        assertEquals(3, arena.getVertexCount(tri));
+        assertEquals(2, arena.getVertex(tri, 2));
+        assertEquals(stone, arena.getMaterialId(tri));
+        assertEquals(List.of("b", "a"), Face.groupSet(arena.getGroupSetId(tri)));
+        assertEquals(6, arena.getVertex(quad, 3));
+        assertEquals(Face.NO_MATERIAL, arena.getMaterialId(quad));
+        assertFalse(arena.hasTexCoords(ngon));
+        assertTrue(arena.hasNormals(ngon));
+        assertEquals(-1, arena.getTexCoord(ngon, 0));
+        assertEquals(4, arena.getNormal(ngon, 4));
+        assertEquals(11, arena.getVertex(ngon, 4));
+    }
+
+    @RepeatedTest(3)
+    public void testMatchesFaceObjects() {
+        ConcurrentMeshBuilder objects = ConcurrentMeshBuilder.create();
+        ConcurrentMeshBuilder compact = ConcurrentMeshBuilder.create(new MeshBuilderSettings().compactFaces(true));
+
+        ShardedMeshBuilderTest.buildGrid(objects, 20);
+        ShardedMeshBuilderTest.buildGrid(compact, 20);
+
+        assertEquals(objects.getFaces().size(), compact.getFaces().size());
+        assertEquals(ShardedMeshBuilderTest.describeFaces(objects.toObj(true)),
+                ShardedMeshBuilderTest.describeFaces(compact.toObj(true)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBrokenFaceLeavesNoRecord() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().compactFaces(true));
+        IndexedReference<Vertex> ref = mesh.getVertices().getOrAdd(new Vertex(0, 0, 0));
+        Face broken = Face.create(new IndexedReference[] { ref, ref, null }, null, null, null, null);
+
+        assertThrows(NullPointerException.class, () -> mesh.putFace(broken));
+        mesh.getFaceArena().addTriangle(0, 0, 0, Face.NO_MATERIAL, 0);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertEquals(1, mesh.getFaces().size());
+            assertEquals(1, (int) mesh.compile(true, MeshView::getNumFaces));
+        });
+    }
+
+    @Test
+    public void testManyFacesAcrossBlocks() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().compactFaces(true));
+        FaceArena arena = mesh.getFaceArena();
+        int faces = FaceArena.BLOCK_SIZE;
+
+        IntStream.range(0, faces).parallel().forEach(i -> {
+            int v = mesh.getVertices().getOrAddIndex(new Vertex(i, 0, 0));
+            if (i % 2 == 0) {
+                arena.addTriangle(v, v, v, Face.NO_MATERIAL, 0);
+            } else {
+                arena.addQuad(v, v, v, v, Face.NO_MATERIAL, 0);
+            }
+        });
+
+        int count = mesh.compile(true, view -> {
+            int[] seen = new int[1];
+            view.forEachFace((vertexCount, vertices, texCoords, normals, material, groups) -> {
+                assertEquals(vertices[0], vertices[vertexCount - 1]);
+                seen[0]++;
+            });
+            return seen[0];
+        });
+        assertEquals(faces, count);
+    }
+}
@@ -0,0 +1,138 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.math.Vector2;
+
+import de.javagl.obj.Obj;
+
+public class FaceBatchTest {
+
+    private static final MeshBuilderSettings[] SETTINGS = {
+            new MeshBuilderSettings(),
+            new MeshBuilderSettings().overlapChecking(true),
+            new MeshBuilderSettings().sharded(true),
+            new MeshBuilderSettings().columnarStorage(true),
+            new MeshBuilderSettings().weldEpsilon(.01f),
+            new MeshBuilderSettings().faceBucketing(true),
+            new MeshBuilderSettings().compactFaces(true)
+    };
+
+    @RepeatedTest(3)
+    public void testMatchesFaceBuilder() {
+        ConcurrentMeshBuilder expected = ConcurrentMeshBuilder.create();
+        ShardedMeshBuilderTest.buildGrid(expected, 20);
+        Obj expectedObj = expected.toObj(true);
+
+        for (MeshBuilderSettings settings : SETTINGS) {
+            ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(settings);
+            buildGrid(mesh, 20);
+            Obj obj = mesh.toObj(true);
+
+            assertEquals(expectedObj.getNumVertices(), obj.getNumVertices());
+            assertEquals(expectedObj.getNumTexCoords(), obj.getNumTexCoords());
+            assertEquals(ShardedMeshBuilderTest.describeFaces(expectedObj),
+                    ShardedMeshBuilderTest.describeFaces(obj));
+        }
+    }
+
+    @Test
+    public void testUniqueVertices() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        FaceBatch batch = new FaceBatch().reuseVertices(false);
+        Vertex shared = new Vertex(0, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            batch.add(shared, new Vertex(1, 0, 0), new Vertex(0, 0, 1));
+        }
+        mesh.putFaces(batch);
+
+        assertEquals(30, mesh.getVertices().size());
+        assertEquals(10, mesh.getFaces().size());
+    }
+
+    @Test
+    public void testClear() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        FaceBatch batch = new FaceBatch();
+        batch.add(new Vertex(0, 0, 0), new Vertex(1, 0, 0), new Vertex(0, 0, 1));
+        mesh.putFaces(batch);
+        batch.clear();
+        assertTrue(batch.isEmpty());
+
+        batch.add(new Vertex(0, 0, 0), new Vertex(0, 0, 1), new Vertex(0, 1, 0));
+        mesh.putFaces(batch);
+
+        assertEquals(4, mesh.getVertices().size());
+        assertEquals(2, mesh.getFaces().size());
+    }
+
+    @Test
+    public void testWeldedFacesHoldStoredValues() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().vertexWeldEpsilon(.01f));
+        FaceBatch batch = new FaceBatch();
+        batch.add(new Vertex(0, 0, 0), new Vertex(1, 0, 0), new Vertex(0, 0, 1));
+        batch.add(new Vertex(.005f, 0, 0), new Vertex(0, 0, 1), new Vertex(0, 1, 0));
+        mesh.putFaces(batch);
+
+        assertEquals(4, mesh.getVertices().size());
+        for (Face face : mesh.getFaces()) {
+            for (IndexedReference<Vertex> ref : face.getVertices()) {
+                assertEquals(mesh.getVertices().get(ref.index()), ref.value());
+            }
+        }
+    }
+
+    @Test
+    public void testColumnarFacesOnlyKeepIndices() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().columnarStorage(true));
+        buildGrid(mesh, 4);
+
+        Collection<Face> faces = mesh.getFaces();
+        assertEquals(16, faces.size());
+        for (Face face : faces) {
+            assertInstanceOf(IndexedFace.class, face);
+            assertEquals(4, face.getTexCoords().length);
+            assertNull(face.getNormals());
+            for (IndexedReference<Vertex> ref : face.getVertices()) {
+                assertEquals(mesh.getVertices().get(ref.index()), ref.value());
+            }
+        }
+    }
+
+    /**
+     * The same grid as <code>ShardedMeshBuilderTest.buildGrid</code>, added one
+     * row per batch.
+     */
+    private static void buildGrid(ConcurrentMeshBuilder mesh, int size) {
+        Vector2[] texCoords = new Vector2[] {
+                new Vector2(0, 0),
+                new Vector2(0, 1),
+                new Vector2(1, 1),
+                new Vector2(1, 0)
+        };
+        List<String> groups = List.of("grid");
+
+        IntStream.range(0, size).parallel().forEach(z -> {
+            FaceBatch batch = new FaceBatch();
+            for (int x = 0; x < size; x++) {
+                batch.add(new Vertex[] {
+                        new Vertex(x, 0, z),
+                        new Vertex(x + 1, 0, z),
+                        new Vertex(x + 1, 0, z + 1),
+                        new Vertex(x, 0, z + 1)
+                }, texCoords, null, x < size / 2 ? "left" : "right", groups);
+            }
+            mesh.putFaces(batch);
+        });
+    }
+}
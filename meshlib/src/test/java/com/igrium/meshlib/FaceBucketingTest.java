@@ -0,0 +1,42 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+public class FaceBucketingTest {
+
+    @RepeatedTest(3)
+    public void testMatchesSortedCompile() {
+        ConcurrentMeshBuilder sorted = ConcurrentMeshBuilder.create();
+        ConcurrentMeshBuilder bucketed = ConcurrentMeshBuilder.create(new MeshBuilderSettings().faceBucketing(true));
+
+        ShardedMeshBuilderTest.buildGrid(sorted, 20);
+        ShardedMeshBuilderTest.buildGrid(bucketed, 20);
+
+        assertEquals(listKeys(sorted), listKeys(bucketed));
+        assertEquals(ShardedMeshBuilderTest.describeFaces(sorted.toObj(true)),
+                ShardedMeshBuilderTest.describeFaces(bucketed.toObj(true)));
+    }
+
+    @Test
+    public void testOverlapCheckingUnsupported() {
+        assertThrows(IllegalArgumentException.class, () -> ConcurrentMeshBuilder
+                .create(new MeshBuilderSettings().faceBucketing(true).overlapChecking(true)));
+    }
+
+    private static List<String> listKeys(ConcurrentMeshBuilder mesh) {
+        return mesh.compile(true, view -> {
+            List<String> keys = new ArrayList<>();
+            view.forEachFace((count, vertices, texCoords, normals, material, groups) -> {
+                keys.add(material + " " + groups);
+            });
+            return keys;
+        });
+    }
+}
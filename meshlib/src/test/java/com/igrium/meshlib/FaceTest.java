@@ -0,0 +1,83 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class FaceTest {
+
+    @Test
+    public void testGroupSetsAreInterned() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        Face a = triangle(mesh).material("stone").groups("b", "a").build(mesh);
+        Face b = triangle(mesh).material("stone").groups("a", "b").build(mesh);
+        Face c = triangle(mesh).material("stone").groups("a").build(mesh);
+
+        assertEquals(a.getGroupSetId(), b.getGroupSetId());
+        assertNotEquals(a.getGroupSetId(), c.getGroupSetId());
+        assertSame(Face.groupSet(a.getGroupSetId()), Face.groupSet(b.getGroupSetId()));
+        assertEquals(List.of("a", "b"), a.getGroups());
+        assertEquals(0, a.compareTo(b));
+        assertTrue(c.compareTo(a) < 0);
+    }
+
+    @Test
+    public void testGroupsKeepOrder() {
+        int ab = Face.internGroups(List.of("a", "b"));
+        int ba = Face.internGroups(List.of("b", "a"));
+        assertNotEquals(ab, ba);
+        assertEquals(List.of("b", "a"), Face.groupSet(ba));
+        assertFalse(Face.groupSet(ab).contains(null));
+
+        // getGroups returns a copy that can be changed freely.
+        Face face = Face.create(new IndexedReference[0], null, null, null, List.of("b", "a"));
+        face.getGroups().add("c");
+        assertEquals(List.of("b", "a"), face.getGroups());
+    }
+
+    @Test
+    public void testOrderIsByName() {
+        // Intern in reverse order, so IDs disagree with names.
+        Face z = Face.create(new IndexedReference[0], null, null, "order-z", List.of("order-y"));
+        Face y = Face.create(new IndexedReference[0], null, null, "order-z", List.of("order-x"));
+        Face a = Face.create(new IndexedReference[0], null, null, "order-a", null);
+
+        Face[] faces = { z, y, a };
+        Arrays.sort(faces, Face.order());
+        assertArrayEquals(new Face[] { a, y, z }, faces);
+        assertTrue(a.compareTo(y) < 0);
+        assertTrue(y.compareTo(z) < 0);
+    }
+
+    @Test
+    public void testMaterials() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        Face none = triangle(mesh).build(mesh);
+        Face stone = triangle(mesh).material("stone").build(mesh);
+
+        assertNull(none.getMaterial());
+        assertEquals(Face.NO_MATERIAL, none.getMaterialId());
+        assertTrue(none.compareTo(stone) < 0);
+
+        none.setMaterial("stone");
+        assertEquals("stone", none.getMaterial());
+        assertEquals(stone.getMaterialId(), none.getMaterialId());
+    }
+
+    private static FaceBuilder triangle(ConcurrentMeshBuilder mesh) {
+        return new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(0, 1, 0)
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.GenerationDriver.CellRange;
+
+public class GenerationDriverTest {
+
+    @Test
+    public void testForkJoinPool() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+            GenerationDriver driver = new GenerationDriver(mesh).pool(pool).minChunkSize(4);
+            assertEachCellOnce(driver, new CellRange(0, 0, 0, 10, 8, 6));
+            assertEquals(480, mesh.getFaces().size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            GenerationDriver driver = new GenerationDriver(ConcurrentMeshBuilder.create()).executor(executor, 3);
+            assertEachCellOnce(driver, new CellRange(-5, 3, 0, 20, 13, 1));
+            assertEachCellOnce(driver, CellRange.of(1000));
+            assertEachCellOnce(driver, CellRange.of(0, 4));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testException() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            RuntimeException thrown = new IllegalStateException("Bad cell");
+            CompletableFuture<Void> future = new GenerationDriver(ConcurrentMeshBuilder.create()).pool(pool)
+                    .generate(CellRange.of(100, 100), (mesh, x, y, z) -> {
+                        if (x == 50 && y == 50)
+                            throw thrown;
+                    });
+            ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertSame(thrown, e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicInteger generated = new AtomicInteger();
+        CompletableFuture<?>[] future = new CompletableFuture<?>[1];
+        CompletableFuture<Void> started = new CompletableFuture<>();
+
+        future[0] = new GenerationDriver(ConcurrentMeshBuilder.create()).executor(executor, 2).minChunkSize(1)
+                .generate(CellRange.of(1000, 1000), (mesh, x, y, z) -> {
+                    started.join();
+                    if (generated.incrementAndGet() == 100) {
+                        future[0].cancel(false);
+                    }
+                });
+        started.complete(null);
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(future[0].isCancelled());
+        assertTrue(generated.get() < 1000);
+    }
+
+    @Test
+    public void testWaitsForRunningCells() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+            assertWaitsForRunningCells(new GenerationDriver(mesh).pool(pool).minChunkSize(1), false);
+            assertWaitsForRunningCells(new GenerationDriver(mesh).executor(executor, 4).minChunkSize(1), false);
+            assertWaitsForRunningCells(new GenerationDriver(mesh).pool(pool).minChunkSize(1), true);
+            assertWaitsForRunningCells(new GenerationDriver(mesh).executor(executor, 4).minChunkSize(1), true);
+        } finally {
+            pool.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Stop generation while other cells are still running, and check that the
+     * future only completes once they've finished.
+     */
+    private static void assertWaitsForRunningCells(GenerationDriver driver, boolean cancel) {
+        AtomicInteger running = new AtomicInteger();
+        CompletableFuture<Void> stop = new CompletableFuture<>();
+        CompletableFuture<Void> future = driver.generate(CellRange.of(64), (mesh, x, y, z) -> {
+            running.incrementAndGet();
+            try {
+                if (x == 0) {
+                    stop.complete(null);
+                    if (!cancel)
+                        throw new IllegalStateException("Bad cell");
+                }
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        if (cancel) {
+            stop.join();
+            assertTrue(future.cancel(false));
+        }
+
+        if (cancel) {
+            assertThrows(CancellationException.class, future::join);
+        } else {
+            assertThrows(CompletionException.class, future::join);
+        }
+        assertEquals(0, running.get());
+        assertEquals(cancel, future.isCancelled());
+    }
+
+    private static void assertEachCellOnce(GenerationDriver driver, CellRange range) throws Exception {
+        int sizeX = range.maxX() - range.minX();
+        int sizeY = range.maxY() - range.minY();
+        AtomicIntegerArray counts = new AtomicIntegerArray((int) range.size());
+
+        driver.generate(range, (mesh, x, y, z) -> {
+            int index = (x - range.minX()) + sizeX * ((y - range.minY()) + sizeY * (z - range.minZ()));
+            counts.incrementAndGet(index);
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(x, y, z),
+                    new Vertex(x + 1, y, z),
+                    new Vertex(x + 1, y + 1, z)
+            }).build(mesh);
+        }).get(10, TimeUnit.SECONDS);
+
+        for (int i = 0; i < counts.length(); i++) {
+            assertEquals(1, counts.get(i));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class MeshMetricsTest {
+
+    @Test
+    public void testDedupeCounters() {
+        for (MeshBuilderSettings settings : new MeshBuilderSettings[] {
+                new MeshBuilderSettings(),
+                new MeshBuilderSettings().columnarStorage(true),
+                new MeshBuilderSettings().sharded(true),
+                new MeshBuilderSettings().vertexWeldEpsilon(0.001f) }) {
+            ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(settings);
+            ShardedMeshBuilderTest.buildGrid(mesh, 20);
+            MeshMetrics metrics = mesh.getMetrics();
+
+            // Sharded builders may index a value once per shard.
+            assertEquals(1600, (int) metrics.getVertices().getLookups());
+            assertTrue(metrics.getVertices().getMisses() >= 21 * 21);
+            assertEquals(1600, (int) (metrics.getVertices().getHits() + metrics.getVertices().getMisses()));
+            assertEquals(1600, (int) metrics.getTexCoords().getLookups());
+            assertEquals(0, (int) metrics.getNormals().getLookups());
+            assertEquals(400, (int) metrics.getFacesAdded());
+        }
+    }
+
+    @Test
+    public void testExactMisses() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        ShardedMeshBuilderTest.buildGrid(mesh, 20);
+        MeshMetrics metrics = mesh.getMetrics();
+
+        assertEquals(21 * 21, (int) metrics.getVertices().getMisses());
+        assertEquals(1600 - 21 * 21, (int) metrics.getVertices().getHits());
+        assertEquals(4, (int) metrics.getTexCoords().getMisses());
+    }
+
+    @Test
+    public void testOverlapCounters() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(true);
+        Vertex[] quad = {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(1, 0, 1),
+                new Vertex(0, 0, 1)
+        };
+        new FaceBuilder(quad).build(mesh);
+        new FaceBuilder(quad).material("other").build(mesh);
+        mesh.setPrioritizeNewFaces(false);
+        new FaceBuilder(quad).build(mesh);
+
+        MeshMetrics metrics = mesh.getMetrics();
+        assertEquals(3, (int) metrics.getFacesAdded());
+        assertEquals(2, (int) metrics.getOverlapCollisions());
+        assertEquals(1, (int) metrics.getOverlapOverrides());
+        assertEquals(0, (int) metrics.getOverlapCulls());
+
+        metrics.reset();
+        assertEquals(0, (int) metrics.getFacesAdded());
+        assertEquals(0, (int) metrics.getVertices().getLookups());
+    }
+
+    @Test
+    public void testCompileCounters() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        ShardedMeshBuilderTest.buildGrid(mesh, 20);
+        mesh.toObj(true);
+        mesh.snapshotObj(false);
+
+        MeshMetrics metrics = mesh.getMetrics();
+        assertEquals(2, (int) metrics.getCompiles());
+        assertTrue(metrics.getCompileNanos(MeshMetrics.Phase.FACES) > 0);
+        assertTrue(metrics.getCompileNanos(MeshMetrics.Phase.SORT) > 0);
+    }
+
+    @Test
+    public void testJfrEvents() {
+        MeshMetrics metrics = ConcurrentMeshBuilder.create().getMetrics();
+        metrics.setJfrEvents(true);
+        assertTrue(metrics.isJfrEvents());
+        metrics.setJfrEvents(false);
+        assertFalse(metrics.isJfrEvents());
+    }
+}
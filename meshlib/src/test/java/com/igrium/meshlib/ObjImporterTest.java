@@ -0,0 +1,164 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+import de.javagl.obj.Obj;
+
+public class ObjImporterTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ConcurrentMeshBuilder original = ConcurrentMeshBuilder.create();
+        ShardedMeshBuilderTest.buildGrid(original, 20);
+        Path file = Files.createTempFile("meshlib", ".obj");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            original.writeObj(file, true);
+
+            ConcurrentMeshBuilder loaded = ConcurrentMeshBuilder.create();
+            int faces = new ObjImporter(loaded).pool(pool).chunkSize(256).load(file);
+            assertEquals(400, faces);
+
+            Obj expected = original.toObj(true);
+            Obj actual = loaded.toObj(true);
+            assertEquals(expected.getNumVertices(), actual.getNumVertices());
+            assertEquals(expected.getNumTexCoords(), actual.getNumTexCoords());
+            assertEquals(ShardedMeshBuilderTest.describeFaces(expected), ShardedMeshBuilderTest.describeFaces(actual));
+            assertEquals(describeMaterials(original), describeMaterials(loaded));
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStatements() throws IOException {
+        String obj = """
+                # A comment
+                mtllib scene.mtl
+                v 0 0 0
+                v 1.5 0 0 1 0 0\r
+                v 1.5 2e-1 -.25
+                vt 0 0
+                vt 1 0.5
+                vn 0 0 1
+                o quad
+                g wall
+                usemtl stone
+                f 1/1 2/2 -1/2
+
+                f -3//1 -2//1 -1//1 # trailing comment
+                g default
+                usemtl
+                f 1 2 3
+                """;
+
+        // Chunks of a single byte give every line its own chunk.
+        for (int chunkSize : new int[] { 1, 7, 1 << 20 }) {
+            ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(5, 5, 5),
+                    new Vertex(6, 5, 5),
+                    new Vertex(6, 6, 5)
+            }).build(mesh);
+
+            assertEquals(3, load(mesh, obj, chunkSize));
+            List<String> faces = new ArrayList<>();
+            mesh.compile(false, view -> {
+                view.forEachFace((count, vertices, texCoords, normals, material, groups) -> {
+                    StringBuilder face = new StringBuilder(material + " " + groups + ":");
+                    for (int i = 0; i < count; i++) {
+                        face.append(' ').append(view.getVertex(vertices[i]).pos());
+                        if (texCoords != null)
+                            face.append('/').append(view.getTexCoord(texCoords[i]));
+                        if (normals != null)
+                            face.append("//").append(view.getNormal(normals[i]));
+                    }
+                    faces.add(face.toString());
+                });
+                return null;
+            });
+
+            // Chunks add their faces in parallel, so they may be in any order.
+            assertEquals(4, faces.size());
+            assertEquals(6, mesh.getVertices().size());
+            assertEquals(Set.of(
+                    "stone [wall]: " + vec(0, 0, 0) + "/" + vec(0, 0) + " " + vec(1.5f, 0, 0) + "/" + vec(1, 0.5f)
+                            + " " + vec(1.5f, 0.2f, -0.25f) + "/" + vec(1, 0.5f),
+                    "stone [wall]: " + vec(0, 0, 0) + "//" + vec(0, 0, 1) + " " + vec(1.5f, 0, 0) + "//"
+                            + vec(0, 0, 1) + " " + vec(1.5f, 0.2f, -0.25f) + "//" + vec(0, 0, 1),
+                    "null []: " + vec(0, 0, 0) + " " + vec(1.5f, 0, 0) + " " + vec(1.5f, 0.2f, -0.25f)),
+                    Set.copyOf(faces.subList(1, 4)));
+        }
+    }
+
+    @Test
+    public void testVertexColors() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        load(mesh, "v 1 2 3 0.5 0.25 1\nv 1 2 3\nf 1 2 1\n", 1 << 20);
+
+        List<Vertex> vertices = new ArrayList<>();
+        mesh.compile(false, view -> {
+            for (int i = 0; i < view.getNumVertices(); i++) {
+                vertices.add(view.getVertex(i));
+            }
+            return null;
+        });
+        assertEquals(List.of(new Vertex(new Vector3(1, 2, 3), new Vector3(0.5f, 0.25f, 1)), new Vertex(1, 2, 3)),
+                vertices);
+    }
+
+    @Test
+    public void testMalformed() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        assertThrows(IOException.class, () -> load(mesh, "v 0 0 0\nv 1 0 0\nf 1 2 3\n", 8));
+        assertThrows(IOException.class, () -> load(mesh, "v 0 0 zero\n", 1 << 20));
+        assertThrows(IOException.class, () -> load(mesh, "v 0 0 0\nf 1/1 1\n", 1 << 20));
+    }
+
+    private static int load(ConcurrentMeshBuilder mesh, String obj, int chunkSize) throws IOException {
+        Path file = Files.createTempFile("meshlib", ".obj");
+        try {
+            Files.writeString(file, obj, StandardCharsets.UTF_8);
+            return new ObjImporter(mesh).chunkSize(chunkSize).load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Map<String, Integer> describeMaterials(ConcurrentMeshBuilder mesh) {
+        Map<String, Integer> materials = new TreeMap<>();
+        mesh.compile(false, view -> {
+            view.forEachFace((count, vertices, texCoords, normals, material, groups) -> {
+                materials.merge(material + " " + groups, 1, Integer::sum);
+            });
+            return null;
+        });
+        return materials;
+    }
+
+    private static String vec(float x, float y, float z) {
+        return new Vector3(x, y, z).toString();
+    }
+
+    private static String vec(float x, float y) {
+        return new Vector2(x, y).toString();
+    }
+}
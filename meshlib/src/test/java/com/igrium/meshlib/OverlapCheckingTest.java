@@ -1,6 +1,9 @@
 package com.igrium.meshlib;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
@@ -8,9 +11,13 @@ import java.util.Collections;
 import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
+import com.igrium.meshlib.math.Vector3;
 import com.igrium.meshlib.v1.OverlapCheckingMesh;
 
+import de.javagl.obj.Obj;
+
 public class OverlapCheckingTest {
 
     @RepeatedTest(5)
@@ -57,6 +64,112 @@ public class OverlapCheckingTest {
         assertTrue(OverlapCheckingMesh.arrayEqualsUnordered(array, array2));
     }
 
+    @RepeatedTest(5)
+    public void testBuilderDropsOverlappingFaces() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(true);
+        mesh.setPrioritizeNewFaces(false);
+
+        Vertex[] ring = IntStream.range(0, 6).mapToObj(i -> new Vertex(i, 0, 0)).toArray(Vertex[]::new);
+        IntStream.range(0, 200).parallel().forEach(i -> {
+            // Rotations and reversals of the same faces.
+            int offset = i % 6;
+            Vertex[] hexagon = new Vertex[6];
+            for (int v = 0; v < 6; v++) {
+                hexagon[v] = ring[i % 2 == 0 ? (v + offset) % 6 : (offset - v + 6) % 6];
+            }
+            new FaceBuilder(hexagon).build(mesh);
+            new FaceBuilder(new Vertex[] { hexagon[0], hexagon[1], hexagon[2] }).build(mesh);
+            new FaceBuilder(new Vertex[] { ring[3], ring[2], ring[1], ring[0] }).build(mesh);
+        });
+
+        // Six distinct triangles, but only one hexagon and quad.
+        assertEquals(8, mesh.getFaces().size());
+
+        Face first = new FaceBuilder(new Vertex[] { ring[0], ring[2], ring[4] }).build(mesh);
+        Face second = new FaceBuilder(new Vertex[] { ring[4], ring[0], ring[2] }).build(mesh);
+        assertSame(first, mesh.putFace(second));
+    }
+
+    @RepeatedTest(5)
+    public void testCullOpposingFaces() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder
+                .create(new MeshBuilderSettings().overlapChecking(true).cullOpposingFaces(true));
+
+        int size = 4;
+        IntStream.range(0, size * size * size).parallel()
+                .forEach(i -> makeCube(mesh, i % size, i / size % size, i / size / size));
+
+        // Only the outside of the block is left.
+        assertEquals(6 * size * size, mesh.getFaces().size());
+    }
+
+    @Test
+    public void testCullOnlyOpposingWinding() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder
+                .create(new MeshBuilderSettings().overlapChecking(true).cullOpposingFaces(true));
+        Vertex[] quad = { new Vertex(0, 0, 0), new Vertex(1, 0, 0), new Vertex(1, 0, 1), new Vertex(0, 0, 1) };
+
+        new FaceBuilder(quad).build(mesh);
+        new FaceBuilder(new Vertex[] { quad[1], quad[2], quad[3], quad[0] }).build(mesh);
+        assertEquals(1, mesh.getFaces().size());
+
+        Face reversed = new FaceBuilder(new Vertex[] { quad[2], quad[1], quad[0], quad[3] }).build(mesh);
+        assertEquals(0, mesh.getFaces().size());
+
+        new FaceBuilder(quad).build(mesh);
+        assertNull(mesh.putFace(reversed));
+        assertEquals(0, mesh.getFaces().size());
+    }
+
+    @Test
+    public void testCulledValuesAreLeftOut() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder
+                .create(new MeshBuilderSettings().overlapChecking(true).cullOpposingFaces(true));
+        Vertex[] quad = { new Vertex(0, 0, 0), new Vertex(1, 0, 0), new Vertex(1, 0, 1), new Vertex(0, 0, 1) };
+        Vector3 down = new Vector3(0, -1, 0);
+        Vector3 up = new Vector3(0, 1, 0);
+
+        new FaceBuilder(quad).normals(new Vector3[] { down, down, down, down }).build(mesh);
+        new FaceBuilder(new Vertex[] { new Vertex(5, 5, 5), new Vertex(6, 5, 5), new Vertex(6, 6, 5) })
+                .normals(new Vector3[] { up, up, up }).build(mesh);
+        new FaceBuilder(new Vertex[] { quad[3], quad[2], quad[1], quad[0] }).build(mesh);
+        assertEquals(4 + 3, mesh.getVertices().size());
+
+        Obj obj = mesh.toObj(false);
+        assertEquals(3, obj.getNumVertices());
+        assertEquals(1, obj.getNumNormals());
+        assertEquals(1, obj.getNumFaces());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, obj.getFace(0).getVertexIndex(i));
+            assertEquals(0, obj.getFace(0).getNormalIndex(i));
+        }
+        assertEquals(5f, obj.getVertex(0).getX());
+        assertEquals(6f, obj.getVertex(2).getY());
+        assertEquals(1f, obj.getNormal(0).getY());
+    }
+
+    /**
+     * Add a unit cube with all six faces wound counter-clockwise from the
+     * outside.
+     */
+    private static void makeCube(ConcurrentMeshBuilder mesh, float x, float y, float z) {
+        float[][] faces = {
+                { 0, 0, 0, 1, 0, 0, 1, 0, 1, 0, 0, 1 },
+                { 0, 1, 0, 0, 1, 1, 1, 1, 1, 1, 1, 0 },
+                { 0, 0, 0, 0, 0, 1, 0, 1, 1, 0, 1, 0 },
+                { 1, 0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1 },
+                { 0, 0, 0, 0, 1, 0, 1, 1, 0, 1, 0, 0 },
+                { 0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1, 1 }
+        };
+        for (float[] face : faces) {
+            Vertex[] vertices = new Vertex[4];
+            for (int v = 0; v < 4; v++) {
+                vertices[v] = new Vertex(x + face[v * 3], y + face[v * 3 + 1], z + face[v * 3 + 2]);
+            }
+            new FaceBuilder(vertices).build(mesh);
+        }
+    }
+
     private Integer[][] genShuffledArrays(int length) {
         Integer[] array1 = IntStream.range(0, length).boxed().toArray(Integer[]::new);
         Collections.shuffle(Arrays.asList(array1));
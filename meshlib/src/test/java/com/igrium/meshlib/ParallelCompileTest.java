@@ -0,0 +1,72 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.RepeatedTest;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjFace;
+
+public class ParallelCompileTest {
+
+    @RepeatedTest(3)
+    public void testMatchesSequentialCompile() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        // Large enough to be split into several compile tasks.
+        ShardedMeshBuilderTest.buildGrid(mesh, 100);
+
+        ForkJoinPool sequential = new ForkJoinPool(1);
+        try {
+            mesh.setCompilePool(sequential);
+            Obj expectedObj = mesh.toObj(true);
+            String expected = writeObj(mesh);
+
+            mesh.setCompilePool(ForkJoinPool.commonPool());
+            Obj actualObj = mesh.toObj(true);
+
+            assertEquals(expectedObj.getNumFaces(), actualObj.getNumFaces());
+            for (int i = 0; i < expectedObj.getNumFaces(); i++) {
+                ObjFace expectedFace = expectedObj.getFace(i);
+                ObjFace actualFace = actualObj.getFace(i);
+                assertEquals(expectedFace.getNumVertices(), actualFace.getNumVertices());
+                for (int v = 0; v < expectedFace.getNumVertices(); v++) {
+                    assertEquals(expectedFace.getVertexIndex(v), actualFace.getVertexIndex(v));
+                    assertEquals(expectedFace.getTexCoordIndex(v), actualFace.getTexCoordIndex(v));
+                }
+            }
+            assertEquals(expected, writeObj(mesh));
+
+            // A sequential, stable sort of the builder's faces gives the same order.
+            List<Face> sorted = new ArrayList<>(mesh.getFaces());
+            sorted.sort(Face.order());
+            assertEquals(sorted.size(), (int) mesh.compile(true, view -> {
+                int[] next = { 0 };
+                view.forEachFace(0, view.getNumFaces(), (count, vertices, texCoords, normals, material, groups) -> {
+                    Face face = sorted.get(next[0]++);
+                    assertEquals(face.getVertexCount(), count);
+                    assertEquals(face.getMaterial(), material);
+                    for (int v = 0; v < count; v++) {
+                        assertEquals(face.getVertexIndex(v), vertices[v]);
+                        assertEquals(face.getTexCoordIndex(v), texCoords[v]);
+                    }
+                });
+                return next[0];
+            }));
+        } finally {
+            sequential.shutdown();
+        }
+    }
+
+    private static String writeObj(ConcurrentMeshBuilder mesh) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mesh.writeObj(Channels.newChannel(out), true);
+        return out.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.math.Vector3;
+
+import de.javagl.obj.FloatTuple;
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjFace;
+
+public class QuadMergerTest {
+
+    @Test
+    public void testMergeTiledGrid() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        mesh.setQuadMerger(new QuadMerger().texCoordTiling(true));
+        ShardedMeshBuilderTest.buildGrid(mesh, 20);
+
+        // One quad for each material.
+        Obj obj = mesh.toObj(true);
+        assertEquals(2, obj.getNumFaces());
+        assertEquals(6, obj.getNumVertices());
+        assertEquals(400f, totalArea(obj));
+
+        // Merging doesn't change the builder.
+        assertEquals(400, mesh.getFaces().size());
+    }
+
+    @Test
+    public void testTexCoordsMustMatch() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        mesh.setQuadMerger(new QuadMerger());
+        ShardedMeshBuilderTest.buildGrid(mesh, 20);
+
+        // Every quad covers the whole texture, so none can be merged without tiling.
+        assertEquals(400, mesh.toObj(false).getNumFaces());
+    }
+
+    @Test
+    public void testMergeMixedFaces() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        mesh.setQuadMerger(new QuadMerger());
+
+        // An L shape of three quads merges into two.
+        quad(mesh, 0, 0, false, null);
+        quad(mesh, 1, 0, false, null);
+        quad(mesh, 0, 1, false, null);
+        // A quad with the opposite winding, and one with another material.
+        quad(mesh, 2, 0, true, null);
+        quad(mesh, 3, 0, false, "other");
+        // A triangle.
+        new FaceBuilder(new Vertex[] { new Vertex(0, 0, 5), new Vertex(1, 0, 5), new Vertex(0, 0, 6) }).build(mesh);
+
+        Obj obj = mesh.toObj(false);
+        assertEquals(5, obj.getNumFaces());
+        assertEquals(5.5f, totalArea(obj));
+        assertEquals(3, obj.getFace(4).getNumVertices());
+    }
+
+    @Test
+    public void testMergedQuadsShareSeams() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        mesh.setQuadMerger(new QuadMerger());
+
+        // Two quads merge, and the one beside them can't.
+        quad(mesh, 0, 0, false, null);
+        quad(mesh, 1, 0, false, null);
+        quad(mesh, 2, 0, false, "other");
+
+        Obj obj = mesh.toObj(false);
+        assertEquals(2, obj.getNumFaces());
+        assertEquals(6, obj.getNumVertices());
+    }
+
+    @Test
+    public void testMergeSnapshot() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        mesh.setQuadMerger(new QuadMerger());
+        for (int x = 0; x < 8; x++) {
+            for (int z = 0; z < 4; z++) {
+                quad(mesh, x, z, false, null);
+            }
+        }
+        assertEquals(1, mesh.snapshotObj(false).getNumFaces());
+    }
+
+    private static void quad(ConcurrentMeshBuilder mesh, float x, float z, boolean flip, String material) {
+        Vertex[] vertices = {
+                new Vertex(x, 0, z),
+                new Vertex(x + 1, 0, z),
+                new Vertex(x + 1, 0, z + 1),
+                new Vertex(x, 0, z + 1)
+        };
+        if (flip) {
+            vertices = new Vertex[] { vertices[3], vertices[2], vertices[1], vertices[0] };
+        }
+        new FaceBuilder(vertices).material(material).build(mesh);
+    }
+
+    /**
+     * Sum the area of every (planar, convex) face.
+     */
+    private static float totalArea(Obj obj) {
+        float area = 0;
+        for (int i = 0; i < obj.getNumFaces(); i++) {
+            ObjFace face = obj.getFace(i);
+            Vector3 origin = position(obj, face, 0);
+            for (int v = 2; v < face.getNumVertices(); v++) {
+                Vector3 a = position(obj, face, v - 1).sub(origin);
+                Vector3 b = position(obj, face, v).sub(origin);
+                area += a.cross(b).length() / 2;
+            }
+        }
+        return area;
+    }
+
+    private static Vector3 position(Obj obj, ObjFace face, int index) {
+        FloatTuple vertex = obj.getVertex(face.getVertexIndex(index));
+        return new Vector3(vertex.getX(), vertex.getY(), vertex.getZ());
+    }
+}
@@ -0,0 +1,118 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder.ReferenceMap;
+import com.igrium.meshlib.math.Vector3;
+import com.igrium.meshlib.util.ChunkedArray;
+
+public class ReferenceMapTest {
+
+    @RepeatedTest(5)
+    public void testConcurrentIndicesAreDense() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        ReferenceMap<Vector3> normals = mesh.getNormals();
+        int count = 50000;
+
+        IndexedReference<?>[] refs = new IndexedReference[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            refs[i] = normals.getOrAdd(new Vector3(i, 0, 0));
+        });
+
+        assertEquals(count, normals.size());
+
+        boolean[] seen = new boolean[count];
+        for (IndexedReference<?> ref : refs) {
+            assertTrue(!seen[ref.index()], "Index " + ref.index() + " was handed out twice.");
+            seen[ref.index()] = true;
+            assertSame(ref.value(), normals.get(ref.index()));
+        }
+    }
+
+    @Test
+    public void testGetOrAddReusesIndex() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        ReferenceMap<Vector3> normals = mesh.getNormals();
+
+        var ref1 = normals.getOrAdd(new Vector3(1, 2, 3));
+        var ref2 = normals.add(new Vector3(4, 5, 6));
+        var ref3 = normals.getOrAdd(new Vector3(1, 2, 3));
+
+        assertEquals(0, ref1.index());
+        assertEquals(1, ref2.index());
+        assertEquals(ref1, ref3);
+        assertEquals(2, normals.size());
+    }
+
+    @RepeatedTest(5)
+    public void testColumnarDedupe() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().columnarStorage(true));
+        ReferenceMap<Vertex> vertices = mesh.getVertices();
+        int distinct = 5000;
+
+        int[] indices = new int[distinct * 4];
+        IntStream.range(0, indices.length).parallel().forEach(i -> {
+            indices[i] = vertices.getOrAddIndex(new Vertex(i % distinct, -0.5f, i % distinct * 0.25f));
+        });
+
+        assertEquals(distinct, vertices.size());
+        for (int i = 0; i < indices.length; i++) {
+            assertEquals(indices[i % distinct], indices[i]);
+            assertEquals(new Vertex(i % distinct, -0.5f, i % distinct * 0.25f), vertices.get(indices[i]));
+        }
+    }
+
+    @Test
+    public void testColumnarAddKeepsDuplicates() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().columnarStorage(true));
+        ReferenceMap<Vector3> normals = mesh.getNormals();
+
+        var ref1 = normals.add(new Vector3(0, 1, 0));
+        var ref2 = normals.add(new Vector3(0, 1, 0));
+        var ref3 = normals.getOrAdd(new Vector3(0, 1, 0));
+
+        assertEquals(0, ref1.index());
+        assertEquals(1, ref2.index());
+        assertEquals(0, ref3.index());
+    }
+
+    @Test
+    public void testColumnarFacesOnlyKeepIndices() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().columnarStorage(true));
+        Vertex[] vertices = { new Vertex(0, 0, 0), new Vertex(1, 0, 0), new Vertex(1, 1, 0) };
+        Face face = new FaceBuilder(vertices)
+                .normals(new Vector3[] { new Vector3(0, 0, 1), new Vector3(0, 0, 1), new Vector3(0, 0, 1) })
+                .build(mesh);
+
+        IndexedReference<Vertex>[] refs = face.getVertices();
+        assertNotSame(refs, face.getVertices());
+        for (int i = 0; i < refs.length; i++) {
+            assertEquals(i, refs[i].index());
+            assertEquals(vertices[i], refs[i].value());
+            assertNotSame(vertices[i], refs[i].value());
+        }
+        assertEquals(0, face.getNormals()[2].index());
+        assertNull(face.getTexCoords());
+    }
+
+    @Test
+    public void testChunkBoundaries() {
+        ChunkedArray<Integer> array = new ChunkedArray<>();
+        int[] indices = { 0, 1023, 1024, 3071, 3072, 1 << 20, Integer.MAX_VALUE };
+        for (int index : indices) {
+            array.set(index, index);
+        }
+        for (int index : indices) {
+            assertEquals(index, (int) array.get(index));
+        }
+    }
+}
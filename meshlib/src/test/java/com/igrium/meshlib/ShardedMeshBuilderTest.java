@@ -0,0 +1,111 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.math.Vector2;
+
+import de.javagl.obj.FloatTuple;
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjFace;
+
+public class ShardedMeshBuilderTest {
+
+    @RepeatedTest(3)
+    public void testMatchesSharedBuilder() {
+        ConcurrentMeshBuilder shared = ConcurrentMeshBuilder.create();
+        ConcurrentMeshBuilder sharded = ConcurrentMeshBuilder.createSharded();
+
+        buildGrid(shared, 12);
+        buildGrid(sharded, 12);
+
+        Obj expected = shared.toObj(true);
+        Obj actual = sharded.toObj(true);
+
+        assertEquals(expected.getNumVertices(), actual.getNumVertices());
+        assertEquals(expected.getNumTexCoords(), actual.getNumTexCoords());
+        assertEquals(expected.getNumFaces(), actual.getNumFaces());
+        assertEquals(describeFaces(expected), describeFaces(actual));
+    }
+
+    @RepeatedTest(3)
+    public void testUniqueVerticesStayUnique() {
+        ConcurrentMeshBuilder sharded = ConcurrentMeshBuilder.createSharded();
+        IntStream.range(0, 100).parallel().forEach(i -> {
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(0, 0, 0),
+                    new Vertex(1, 0, 0),
+                    new Vertex(0, 1, 0)
+            }).build(sharded, false);
+        });
+
+        assertEquals(300, sharded.toObj().getNumVertices());
+    }
+
+    @Test
+    public void testThreadsDontKeepBuilder() throws InterruptedException {
+        WeakReference<ConcurrentMeshBuilder> ref = buildAndDrop();
+        // The calling thread and the common pool have both used the builder.
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(ref.get());
+    }
+
+    private static WeakReference<ConcurrentMeshBuilder> buildAndDrop() {
+        ConcurrentMeshBuilder sharded = ConcurrentMeshBuilder.createSharded();
+        buildGrid(sharded, 8);
+        new FaceBuilder(new Vertex[] { new Vertex(0, 0, 0), new Vertex(1, 0, 0), new Vertex(0, 1, 0) })
+                .build(sharded);
+        return new WeakReference<>(sharded);
+    }
+
+    static void buildGrid(ConcurrentMeshBuilder mesh, int size) {
+        Vector2[] texCoords = new Vector2[] {
+                new Vector2(0, 0),
+                new Vector2(0, 1),
+                new Vector2(1, 1),
+                new Vector2(1, 0)
+        };
+
+        IntStream.range(0, size * size).parallel().forEach(i -> {
+            float x = i % size;
+            float z = i / size;
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(x, 0, z),
+                    new Vertex(x + 1, 0, z),
+                    new Vertex(x + 1, 0, z + 1),
+                    new Vertex(x, 0, z + 1)
+            }).material(x < size / 2 ? "left" : "right").group("grid").texCoords(texCoords).build(mesh);
+        });
+    }
+
+    /**
+     * Describe each face by its vertex positions so that objs with different
+     * index orders can be compared.
+     */
+    static List<String> describeFaces(Obj obj) {
+        List<String> faces = new ArrayList<>();
+        for (int i = 0; i < obj.getNumFaces(); i++) {
+            ObjFace face = obj.getFace(i);
+            StringBuilder builder = new StringBuilder();
+            for (int v = 0; v < face.getNumVertices(); v++) {
+                FloatTuple vertex = obj.getVertex(face.getVertexIndex(v));
+                builder.append(vertex.getX()).append(',').append(vertex.getY()).append(',').append(vertex.getZ())
+                        .append(' ');
+            }
+            faces.add(builder.toString());
+        }
+        faces.sort(String::compareTo);
+        return faces;
+    }
+}
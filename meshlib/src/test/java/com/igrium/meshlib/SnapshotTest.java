@@ -0,0 +1,76 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjFace;
+
+public class SnapshotTest {
+
+    @Test
+    public void testBuildingContinuesDuringSnapshot() throws Exception {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        ShardedMeshBuilderTest.buildGrid(mesh, 10);
+
+        int faces = mesh.snapshot(false, view -> {
+            // Would time out if the snapshot blocked other threads.
+            CompletableFuture.runAsync(() -> addTriangle(mesh, 100)).get(10, TimeUnit.SECONDS);
+            return view.getNumFaces();
+        });
+
+        assertEquals(100, faces);
+        assertEquals(101, mesh.getFaces().size());
+    }
+
+    @RepeatedTest(3)
+    public void testSnapshotsAreConsistent() throws Exception {
+        for (ConcurrentMeshBuilder mesh : new ConcurrentMeshBuilder[] { ConcurrentMeshBuilder.create(),
+                ConcurrentMeshBuilder.create(true), ConcurrentMeshBuilder.createSharded() }) {
+            AtomicBoolean running = new AtomicBoolean(true);
+            // Dedicated threads, so the compile stage can still use the common pool.
+            Thread[] producers = new Thread[4];
+            for (int t = 0; t < producers.length; t++) {
+                int thread = t;
+                producers[t] = new Thread(() -> {
+                    for (int i = 0; running.get() && i < 20000; i++) {
+                        addTriangle(mesh, thread * 1000000 + i);
+                    }
+                });
+                producers[t].start();
+            }
+
+            for (int i = 0; i < 10; i++) {
+                Obj obj = mesh.snapshotObj(true);
+                for (int f = 0; f < obj.getNumFaces(); f++) {
+                    ObjFace face = obj.getFace(f);
+                    for (int v = 0; v < face.getNumVertices(); v++) {
+                        assertTrue(face.getVertexIndex(v) < obj.getNumVertices());
+                        assertNotNull(obj.getVertex(face.getVertexIndex(v)));
+                    }
+                }
+            }
+
+            running.set(false);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        }
+    }
+
+    private static void addTriangle(ConcurrentMeshBuilder mesh, int i) {
+        new FaceBuilder(new Vertex[] {
+                new Vertex(i, 0, 0),
+                new Vertex(i + 1, 0, 0),
+                new Vertex(i, 1, 0)
+        }).build(mesh);
+    }
+}
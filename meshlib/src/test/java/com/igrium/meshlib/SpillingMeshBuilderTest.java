@@ -0,0 +1,144 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.math.Vector2;
+
+public class SpillingMeshBuilderTest {
+
+    // Tiny segments, so that values and faces span many of them.
+    private static final int SEGMENT_BITS = 10;
+
+    @Test
+    public void testMatchesHeapBuilder() throws IOException {
+        Path directory = Files.createTempDirectory("meshlib-test");
+        try (SpillingMeshBuilder spilling = new SpillingMeshBuilder(
+                new MeshBuilderSettings().spillDirectory(directory), SEGMENT_BITS)) {
+            ConcurrentMeshBuilder heap = ConcurrentMeshBuilder.create();
+            buildGridSequential(heap, 30);
+            buildGridSequential(spilling, 30);
+
+            assertEquals(writeObj(heap, false), writeObj(spilling, false));
+            assertEquals(writeObj(heap, true), writeObj(spilling, true));
+            assertEquals(heap.getFaces().size(), spilling.getFaces().size());
+        }
+        assertDeleted(directory);
+    }
+
+    @RepeatedTest(3)
+    public void testParallelBuild() throws IOException {
+        Path directory = Files.createTempDirectory("meshlib-test");
+        // A tiny cache, so most values are stored more than once.
+        try (SpillingMeshBuilder spilling = new SpillingMeshBuilder(
+                new MeshBuilderSettings().spillDirectory(directory).spillCacheSize(16), SEGMENT_BITS)) {
+            ConcurrentMeshBuilder heap = ConcurrentMeshBuilder.create();
+            ShardedMeshBuilderTest.buildGrid(heap, 30);
+            ShardedMeshBuilderTest.buildGrid(spilling, 30);
+
+            assertEquals(ShardedMeshBuilderTest.describeFaces(heap.toObj(true)),
+                    ShardedMeshBuilderTest.describeFaces(spilling.toObj(true)));
+        }
+        assertDeleted(directory);
+    }
+
+    @Test
+    public void testGetFacesWhileBuilding() throws IOException {
+        Path directory = Files.createTempDirectory("meshlib-test");
+        try (SpillingMeshBuilder spilling = ConcurrentMeshBuilder
+                .createSpilling(new MeshBuilderSettings().spillDirectory(directory))) {
+            Thread builder = new Thread(() -> ShardedMeshBuilderTest.buildGrid(spilling, 60));
+            builder.start();
+            try {
+                // Every face returned must be complete, even while others are being added.
+                while (builder.isAlive()) {
+                    for (Face face : spilling.getFaces()) {
+                        assertEquals(4, face.getVertices().length);
+                    }
+                }
+            } finally {
+                builder.join();
+            }
+            assertEquals(3600, spilling.getFaces().size());
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        assertDeleted(directory);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBrokenFaceIsRejected() throws IOException {
+        Path directory = Files.createTempDirectory("meshlib-test");
+        try (SpillingMeshBuilder spilling = new SpillingMeshBuilder(
+                new MeshBuilderSettings().spillDirectory(directory), SEGMENT_BITS)) {
+            buildGridSequential(spilling, 4);
+            IndexedReference<Vertex> ref = spilling.getVertices().getOrAdd(new Vertex(0, 0, 0));
+            Face broken = Face.create(new IndexedReference[] { ref, null, ref }, null, null, null, null);
+            assertThrows(NullPointerException.class, () -> spilling.putFace(broken));
+            buildGridSequential(spilling, 4);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                assertEquals(32, spilling.getFaces().size());
+                assertEquals(32, (int) spilling.compile(true, MeshView::getNumFaces));
+                assertEquals(32, (int) spilling.compile(false, MeshView::getNumFaces));
+            });
+        }
+        assertDeleted(directory);
+    }
+
+    @Test
+    public void testUnsupportedSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ConcurrentMeshBuilder.createSpilling(new MeshBuilderSettings()));
+        MeshBuilderSettings settings = new MeshBuilderSettings().spillDirectory(Path.of("."));
+        assertThrows(IllegalArgumentException.class,
+                () -> ConcurrentMeshBuilder.create(settings.overlapChecking(true)));
+    }
+
+    private static void buildGridSequential(ConcurrentMeshBuilder mesh, int size) {
+        Vector2[] texCoords = new Vector2[] {
+                new Vector2(0, 0),
+                new Vector2(0, 1),
+                new Vector2(1, 1),
+                new Vector2(1, 0)
+        };
+
+        for (int i = 0; i < size * size; i++) {
+            float x = i % size;
+            float z = i / size;
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(x, 0, z),
+                    new Vertex(x + 1, 0, z),
+                    new Vertex(x + 1, 0, z + 1),
+                    new Vertex(x, 0, z + 1)
+            }).material(i % 3 == 0 ? "a" : "b").group("grid").texCoords(texCoords).build(mesh);
+        }
+    }
+
+    private static String writeObj(ConcurrentMeshBuilder mesh, boolean sort) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mesh.writeObj(Channels.newChannel(out), sort);
+        return out.toString();
+    }
+
+    private static void assertDeleted(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.findAny().isEmpty());
+        }
+        Files.delete(directory);
+    }
+}
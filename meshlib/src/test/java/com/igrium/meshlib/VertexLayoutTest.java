@@ -0,0 +1,92 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.math.Vector3;
+
+import de.javagl.obj.Obj;
+
+public class VertexLayoutTest {
+
+    @Test
+    public void testDetect() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder
+                .create(new MeshBuilderSettings().vertexLayout(VertexLayout.DETECT));
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(1, 1, 0)
+        }).build(mesh);
+        assertTrue(writeObj(mesh).startsWith("v 0 0 0\nv 1 0 0\nv 1 1 0\n"));
+
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 1, 0),
+                new Vertex(new Vector3(0, 1, 0), new Vector3(1, 0, 0))
+        }).build(mesh);
+        assertTrue(writeObj(mesh).startsWith("v 0 0 0 1 1 1\nv 1 0 0 1 1 1\nv 1 1 0 1 1 1\nv 0 1 0 1 0 0\n"));
+    }
+
+    @Test
+    public void testPosition() throws IOException {
+        Path spillDirectory = Files.createTempDirectory("meshlib");
+        try {
+            for (MeshBuilderSettings settings : new MeshBuilderSettings[] {
+                    new MeshBuilderSettings(),
+                    new MeshBuilderSettings().columnarStorage(true),
+                    new MeshBuilderSettings().vertexWeldEpsilon(0.001f),
+                    new MeshBuilderSettings().sharded(true),
+                    new MeshBuilderSettings().spillDirectory(spillDirectory) }) {
+                ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(settings.vertexLayout(VertexLayout.POSITION));
+                try {
+                    new FaceBuilder(new Vertex[] {
+                            new Vertex(new Vector3(0, 0, 0), new Vector3(1, 0, 0)),
+                            new Vertex(1, 0, 0),
+                            new Vertex(1, 1, 0)
+                    }).build(mesh);
+
+                    assertEquals("v 0 0 0\nv 1 0 0\nv 1 1 0\nf 1 2 3\n", writeObj(mesh).replace("g default\n", ""));
+                    Obj obj = mesh.toObj(false);
+                    assertEquals(3, obj.getVertex(0).getDimensions());
+                } finally {
+                    if (mesh instanceof SpillingMeshBuilder spilling) {
+                        spilling.close();
+                    }
+                }
+            }
+        } finally {
+            try (var files = Files.list(spillDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(spillDirectory);
+        }
+    }
+
+    @Test
+    public void testColumnarPositionMergesColors() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(
+                new MeshBuilderSettings().columnarStorage(true).vertexLayout(VertexLayout.POSITION));
+        int a = mesh.getVertices().getOrAddIndex(new Vertex(new Vector3(0, 0, 0), new Vector3(1, 0, 0)));
+        int b = mesh.getVertices().getOrAddIndex(new Vertex(0, 0, 0));
+        assertEquals(a, b);
+        assertEquals(1, mesh.getVertices().size());
+    }
+
+    private static String writeObj(ConcurrentMeshBuilder mesh) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mesh.writeObj(Channels.newChannel(out), false);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,82 @@
+package com.igrium.meshlib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder.ReferenceMap;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+public class WeldingTest {
+
+    @RepeatedTest(5)
+    public void testNoisyVerticesWeld() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().vertexWeldEpsilon(1e-3f));
+        ReferenceMap<Vertex> vertices = mesh.getVertices();
+        int points = 1000;
+        int copies = 8;
+
+        int[] indices = new int[points * copies];
+        IntStream.range(0, indices.length).parallel().forEach(i -> {
+            Random random = new Random(i);
+            int point = i % points;
+            // Grid spacing of 1 is far larger than the noise.
+            float x = point % 10 + (random.nextFloat() - .5f) * 1e-4f;
+            float y = point / 10 % 10 + (random.nextFloat() - .5f) * 1e-4f;
+            float z = point / 100 + (random.nextFloat() - .5f) * 1e-4f;
+            indices[i] = vertices.getOrAddIndex(new Vertex(x, y, z));
+        });
+
+        assertEquals(points, vertices.size());
+        for (int i = 0; i < indices.length; i++) {
+            assertEquals(indices[i % points], indices[i]);
+        }
+    }
+
+    @Test
+    public void testDistantValuesDontWeld() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().weldEpsilon(.01f));
+        ReferenceMap<Vector2> texCoords = mesh.getTexCoords();
+
+        int a = texCoords.getOrAddIndex(new Vector2(.5f, .5f));
+        int b = texCoords.getOrAddIndex(new Vector2(.505f, .495f));
+        int c = texCoords.getOrAddIndex(new Vector2(.52f, .5f));
+        int d = texCoords.getOrAddIndex(new Vector2(.5f, .48f));
+
+        assertEquals(a, b);
+        assertEquals(1, c);
+        assertEquals(2, d);
+    }
+
+    @Test
+    public void testReferencesHoldWeldedValue() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().normalWeldEpsilon(.01f));
+        ReferenceMap<Vector3> normals = mesh.getNormals();
+
+        var first = normals.getOrAdd(new Vector3(0, 1, 0));
+        var welded = normals.getOrAdd(new Vector3(.005f, 1, 0));
+        var added = normals.add(new Vector3(.005f, 1, 0));
+
+        assertEquals(first, welded);
+        assertEquals(new Vector3(0, 1, 0), welded.value());
+        assertEquals(new Vector3(.005f, 1, 0), added.value());
+    }
+
+    @Test
+    public void testColorsMustMatch() {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().vertexWeldEpsilon(.01f));
+        ReferenceMap<Vertex> vertices = mesh.getVertices();
+
+        var white = vertices.getOrAdd(new Vertex(0, 0, 0));
+        var red = vertices.getOrAdd(new Vertex(new Vector3(0, 0, 0), new Vector3(1, 0, 0)));
+
+        assertEquals(0, white.index());
+        assertEquals(1, red.index());
+        assertEquals(2, vertices.size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.igrium.meshlib.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+public class FloatFormatterTest {
+
+    @RepeatedTest(5)
+    public void testRoundTrip() {
+        Random random = new Random();
+        FloatFormatter formatter = new FloatFormatter();
+
+        for (int i = 0; i < 100000; i++) {
+            float value = Float.intBitsToFloat(random.nextInt());
+            String text = format(formatter, value);
+            assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(Float.parseFloat(text)),
+                    "%s formatted as %s".formatted(value, text));
+        }
+    }
+
+    @Test
+    public void testShortest() {
+        FloatFormatter formatter = new FloatFormatter();
+        assertEquals("0", format(formatter, 0));
+        assertEquals("-0", format(formatter, -0f));
+        assertEquals("1", format(formatter, 1));
+        assertEquals("-2.5", format(formatter, -2.5f));
+        assertEquals("0.1", format(formatter, .1f));
+        assertEquals("0.001", format(formatter, .001f));
+        assertEquals("123456.79", format(formatter, 123456.789f));
+        assertEquals("3.1415927", format(formatter, (float) Math.PI));
+    }
+
+    @Test
+    public void testFixed() {
+        FloatFormatter formatter = new FloatFormatter(4);
+        assertEquals("0", format(formatter, 0));
+        assertEquals("0", format(formatter, -0f));
+        assertEquals("0", format(formatter, -0.00004f));
+        assertEquals("-0.0001", format(formatter, -0.00006f));
+        assertEquals("1", format(formatter, 1));
+        assertEquals("-2.5", format(formatter, -2.5f));
+        assertEquals("0.1", format(formatter, .1f));
+        assertEquals("123456.7891", format(formatter, 123456.789f));
+        assertEquals("3.1416", format(formatter, (float) Math.PI));
+        assertEquals("1.0E10", format(formatter, 1e10f));
+        assertEquals("NaN", format(formatter, Float.NaN));
+
+        assertEquals("3", format(new FloatFormatter(0), 2.5001f));
+        assertEquals("0.000000001", format(new FloatFormatter(9), 1e-9f));
+        assertThrows(IllegalArgumentException.class, () -> new FloatFormatter(10));
+        assertThrows(IllegalArgumentException.class, () -> new FloatFormatter(-2));
+    }
+
+    @RepeatedTest(5)
+    public void testFixedPrecision() {
+        Random random = new Random();
+        FloatFormatter formatter = new FloatFormatter(4);
+
+        for (int i = 0; i < 100000; i++) {
+            float value = (random.nextFloat() - 0.5f) * 2e5f;
+            String text = format(formatter, value);
+            assertTrue(Math.abs(Double.parseDouble(text) - value) <= 0.00005 + Math.ulp(value),
+                    "%s formatted as %s".formatted(value, text));
+        }
+    }
+
+    static String format(FloatFormatter formatter, float value) {
+        ByteBuffer buffer = ByteBuffer.allocate(FloatFormatter.MAX_LENGTH);
+        formatter.write(value, buffer);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,231 @@
+package com.igrium.meshlib.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.FaceBuilder;
+import com.igrium.meshlib.Vertex;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+public class GlbWriterTest {
+
+    @Test
+    public void testStructure() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(1, 0, 1.5f),
+                new Vertex(0, 0, 1.5f)
+        }).texCoords(new Vector2[] {
+                new Vector2(0, 0),
+                new Vector2(1, 0),
+                new Vector2(1, 1),
+                new Vector2(0, 1)
+        }).material("stone").build(mesh);
+
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(0, -1, 0)
+        }).normals(new Vector3[] {
+                new Vector3(0, 0, 1),
+                new Vector3(0, 0, 1),
+                new Vector3(0, 0, 1)
+        }).build(mesh);
+
+        for (boolean interleaved : new boolean[] { true, false }) {
+            Glb glb = write(mesh, new GlbWriter().interleaved(interleaved));
+            String json = glb.json;
+
+            assertTrue(json.contains("\"version\":\"2.0\""));
+            assertTrue(json.contains("\"materials\":[{\"name\":\"stone\""));
+            assertTrue(json.contains("\"attributes\":{\"POSITION\":0,\"COLOR_0\":1,\"TEXCOORD_0\":2}"));
+            assertTrue(json.contains("\"NORMAL\""));
+            assertTrue(json.contains("\"min\":[0.0,0.0,0.0],\"max\":[1.0,0.0,1.5]"));
+            assertEquals(interleaved, json.contains("byteStride"));
+
+            List<Primitive> primitives = glb.primitives();
+            assertEquals(2, primitives.size());
+            assertEquals(4, primitives.get(0).positions.length / 3);
+            assertEquals(6, primitives.get(0).indices.length);
+            assertEquals(3, primitives.get(1).positions.length / 3);
+            assertEquals(3, primitives.get(1).indices.length);
+            assertEquals(1.5, area(primitives.get(0)), 0.0001);
+            assertEquals(0.5, area(primitives.get(1)), 0.0001);
+        }
+    }
+
+    @Test
+    public void testGrid() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        mesh.setCompilePool(pool);
+        try {
+            buildGrid(mesh, 20);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            mesh.writeGlb(Channels.newChannel(out), true);
+            Glb glb = new Glb(out.toByteArray());
+
+            List<Primitive> primitives = glb.primitives();
+            assertEquals(2, primitives.size());
+            for (Primitive primitive : primitives) {
+                assertEquals(200 * 6, primitive.indices.length);
+                assertEquals(200, area(primitive), 0.001);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Glb glb = write(ConcurrentMeshBuilder.create(), new GlbWriter());
+        assertTrue(glb.json.contains("\"nodes\":[]"));
+        assertEquals(0, glb.primitives().size());
+    }
+
+    private static void buildGrid(ConcurrentMeshBuilder mesh, int size) {
+        for (int i = 0; i < size * size; i++) {
+            float x = i % size;
+            float z = i / size;
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(x, 0, z),
+                    new Vertex(x + 1, 0, z),
+                    new Vertex(x + 1, 0, z + 1),
+                    new Vertex(x, 0, z + 1)
+            }).material(x < size / 2 ? "left" : "right").build(mesh);
+        }
+    }
+
+    private static Glb write(ConcurrentMeshBuilder mesh, GlbWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mesh.compile(false, view -> {
+            writer.write(view, Channels.newChannel(out));
+            return null;
+        });
+        return new Glb(out.toByteArray());
+    }
+
+    private static double area(Primitive primitive) {
+        float[] p = primitive.positions;
+        double area = 0;
+        for (int i = 0; i < primitive.indices.length; i += 3) {
+            Vector3 a = vertex(p, primitive.indices[i]);
+            Vector3 b = vertex(p, primitive.indices[i + 1]);
+            Vector3 c = vertex(p, primitive.indices[i + 2]);
+            area += b.sub(a).cross(c.sub(a)).length() / 2;
+        }
+        return area;
+    }
+
+    private static Vector3 vertex(float[] positions, int index) {
+        return new Vector3(positions[index * 3], positions[index * 3 + 1], positions[index * 3 + 2]);
+    }
+
+    private record Primitive(float[] positions, int[] indices) {
+    }
+
+    /**
+     * Just enough of a GLB reader to check the output. Relies on the order in
+     * which <code>GlbWriter</code> writes JSON properties.
+     */
+    private static class Glb {
+        final String json;
+        final ByteBuffer bin;
+
+        Glb(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(0x46546C67, buffer.getInt());
+            assertEquals(2, buffer.getInt());
+            assertEquals(bytes.length, buffer.getInt());
+
+            int jsonLength = buffer.getInt();
+            assertEquals(0, jsonLength % 4);
+            assertEquals(0x4E4F534A, buffer.getInt());
+            json = new String(bytes, 20, jsonLength, StandardCharsets.UTF_8).trim();
+            buffer.position(20 + jsonLength);
+
+            if (buffer.hasRemaining()) {
+                int binLength = buffer.getInt();
+                assertEquals(0x004E4942, buffer.getInt());
+                assertEquals(bytes.length, buffer.position() + binLength);
+                bin = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            } else {
+                bin = ByteBuffer.allocate(0);
+            }
+        }
+
+        List<String> objects(String array) {
+            List<String> objects = new ArrayList<>();
+            int start = json.indexOf("\"" + array + "\":[");
+            if (start < 0)
+                return objects;
+            int depth = 0;
+            int objectStart = 0;
+            for (int i = json.indexOf('[', start) + 1; depth >= 0; i++) {
+                char c = json.charAt(i);
+                if (c == '{' || c == '[') {
+                    if (depth++ == 0)
+                        objectStart = i;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0)
+                        objects.add(json.substring(objectStart, i + 1));
+                }
+            }
+            return objects;
+        }
+
+        static int field(String object, String name) {
+            Matcher matcher = Pattern.compile("\"" + name + "\":(\\d+)").matcher(object);
+            return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+        }
+
+        List<Primitive> primitives() {
+            List<String> accessors = objects("accessors");
+            List<String> views = objects("bufferViews");
+            List<Primitive> primitives = new ArrayList<>();
+
+            Matcher matcher = Pattern.compile("\"POSITION\":(\\d+)[^}]*\\},\"indices\":(\\d+)").matcher(json);
+            while (matcher.find()) {
+                String position = accessors.get(Integer.parseInt(matcher.group(1)));
+                String positionView = views.get(field(position, "bufferView"));
+                int count = field(position, "count");
+                int stride = Math.max(12, field(positionView, "byteStride"));
+                int start = field(positionView, "byteOffset") + field(position, "byteOffset");
+                float[] positions = new float[count * 3];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = bin.getFloat(start + (i / 3) * stride + (i % 3) * 4);
+                }
+
+                String index = accessors.get(Integer.parseInt(matcher.group(2)));
+                int indexStart = field(views.get(field(index, "bufferView")), "byteOffset");
+                boolean shorts = field(index, "componentType") == 5123;
+                int[] indices = new int[field(index, "count")];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = shorts ? Short.toUnsignedInt(bin.getShort(indexStart + i * 2))
+                            : bin.getInt(indexStart + i * 4);
+                }
+                primitives.add(new Primitive(positions, indices));
+            }
+            return primitives;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.igrium.meshlib.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.FaceBuilder;
+import com.igrium.meshlib.MeshBuilderSettings;
+import com.igrium.meshlib.Vertex;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+public class ObjStreamWriterTest {
+
+    @Test
+    public void testWriteQuads() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(1, 0, 1.5f),
+                new Vertex(0, 0, 1.5f)
+        }).texCoords(new Vector2[] {
+                new Vector2(0, 0),
+                new Vector2(1, 0),
+                new Vector2(1, 1),
+                new Vector2(0, 1)
+        }).material("stone").group("floor").build(mesh);
+
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(0, -1, 0)
+        }).normals(new Vector3[] {
+                new Vector3(0, 0, 1),
+                new Vector3(0, 0, 1),
+                new Vector3(0, 0, 1)
+        }).build(mesh);
+
+        String expected = """
+                v 0 0 0 1 1 1
+                v 1 0 0 1 1 1
+                v 1 0 1.5 1 1 1
+                v 0 0 1.5 1 1 1
+                v 0 -1 0 1 1 1
+                vt 0 0
+                vt 1 0
+                vt 1 1
+                vt 0 1
+                vn 0 0 1
+                g floor
+                usemtl stone
+                f 1/1 2/2 3/3 4/4
+                g default
+                usemtl
+                f 1//1 2//1 5//1
+                """;
+        assertEquals(expected, write(mesh, 64 * 4));
+        assertEquals(expected, write(mesh, ObjStreamWriter.DEFAULT_BUFFER_SIZE));
+    }
+
+    @Test
+    public void testClearMaterial() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        for (String material : new String[] { null, "stone", null }) {
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(0, 0, 0),
+                    new Vertex(1, 0, 0),
+                    new Vertex(0, 1, 0)
+            }).material(material).build(mesh);
+        }
+
+        assertEquals("""
+                v 0 0 0 1 1 1
+                v 1 0 0 1 1 1
+                v 0 1 0 1 1 1
+                f 1 2 3
+                usemtl stone
+                f 1 2 3
+                usemtl
+                f 1 2 3
+                """, write(mesh, ObjStreamWriter.DEFAULT_BUFFER_SIZE));
+    }
+
+    @Test
+    public void testExportDecimals() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(new MeshBuilderSettings().exportDecimals(2));
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0.123f, 0, 0),
+                new Vertex(1, -0.001f, 0),
+                new Vertex(1, 1, (float) Math.PI)
+        }).texCoords(new Vector2[] {
+                new Vector2(0.5f, 0.006f),
+                new Vector2(1, 0),
+                new Vector2(1, 1)
+        }).build(mesh);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mesh.writeObj(Channels.newChannel(out), false);
+        assertEquals("""
+                v 0.12 0 0 1 1 1
+                v 1 0 0 1 1 1
+                v 1 1 3.14 1 1 1
+                vt 0.5 0.01
+                vt 1 0
+                vt 1 1
+                f 1/1 2/2 3/3
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static String write(ConcurrentMeshBuilder mesh, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjStreamWriter writer = new ObjStreamWriter(bufferSize);
+        mesh.compile(false, view -> {
+            writer.write(view, Channels.newChannel(out));
+            return null;
+        });
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package com.igrium.meshlib.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.FaceBuilder;
+import com.igrium.meshlib.Vertex;
+
+public class ParallelGzipChannelTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        // Compressible but not trivial data.
+        Random random = new Random(42);
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ParallelGzipChannel channel = new ParallelGzipChannel(Channels.newChannel(out), pool, 4096,
+                    Deflater.BEST_SPEED);
+            // Write in pieces that don't line up with blocks.
+            for (int offset = 0; offset < data.length; offset += 1000) {
+                channel.write(ByteBuffer.wrap(data, offset, Math.min(1000, data.length - offset)));
+            }
+            channel.finish();
+            assertThrows(ClosedChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+
+            assertArrayEquals(data, gunzip(out.toByteArray()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParallelGzipChannel(Channels.newChannel(out), ForkJoinPool.commonPool()).close();
+        assertEquals(0, gunzip(out.toByteArray()).length);
+    }
+
+    @Test
+    public void testWriteObjGzip() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        for (int i = 0; i < 1000; i++) {
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(i, 0, 0),
+                    new Vertex(i + 1, 0, 0),
+                    new Vertex(i + 1, 1, 0)
+            }).material(i % 2 == 0 ? "even" : "odd").build(mesh);
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        mesh.writeObj(Channels.newChannel(expected), true);
+
+        Path file = Files.createTempFile("meshlib", ".obj.gz");
+        try {
+            mesh.writeObjGzip(file, true);
+            assertArrayEquals(expected.toByteArray(), gunzip(Files.readAllBytes(file)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+}
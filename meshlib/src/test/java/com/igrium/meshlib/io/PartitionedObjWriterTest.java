@@ -0,0 +1,129 @@
+package com.igrium.meshlib.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.FaceBuilder;
+import com.igrium.meshlib.Vertex;
+
+public class PartitionedObjWriterTest {
+
+    @Test
+    public void testPartitionByMaterial() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        buildGrid(mesh, 20);
+
+        Path directory = Files.createTempDirectory("meshlib-test");
+        try {
+            SortedMap<String, Path> files = mesh.writeObjPartitions(directory, FacePartitioner.byMaterial(), true);
+            assertEquals(List.of("left", "right"), List.copyOf(files.keySet()));
+
+            for (Path file : files.values()) {
+                // Each half of the grid is 10x20 quads.
+                assertPartition(file, 200, 11 * 21);
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    public void testPartitionByGrid() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        buildGrid(mesh, 20);
+
+        Path directory = Files.createTempDirectory("meshlib-test");
+        try {
+            SortedMap<String, Path> files = mesh.writeObjPartitions(directory, FacePartitioner.byGrid(10), false);
+            assertEquals(List.of("cell_0_0_0", "cell_0_0_1", "cell_1_0_0", "cell_1_0_1"),
+                    List.copyOf(files.keySet()));
+
+            for (Path file : files.values()) {
+                assertPartition(file, 100, 11 * 11);
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    public void testFileNamesAreUnique() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        String[] materials = { "a b", "a_b", "A_B", "../escape", "" };
+        for (int i = 0; i < materials.length; i++) {
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(i, 0, 0),
+                    new Vertex(i + 1, 0, 0),
+                    new Vertex(i + 1, 1, 0)
+            }).material(materials[i]).build(mesh);
+        }
+
+        Path directory = Files.createTempDirectory("meshlib-test");
+        try {
+            // Partition names are used as-is, so every material is its own partition.
+            SortedMap<String, Path> files = mesh.writeObjPartitions(directory,
+                    (m, vertexCount, vertices, material, groups) -> material, false);
+            assertEquals(materials.length, files.size());
+            assertEquals(materials.length, new HashSet<>(files.values()).size());
+
+            for (Path file : files.values()) {
+                assertEquals(directory, file.getParent());
+                assertPartition(file, 1, 3);
+            }
+            assertEquals(directory.resolve("A_B.obj"), files.get("A_B"));
+            assertEquals(directory.resolve("a_b_2.obj"), files.get("a b"));
+            assertEquals(directory.resolve("a_b_3.obj"), files.get("a_b"));
+            assertEquals(directory.resolve("_._escape.obj"), files.get("../escape"));
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    private static void assertPartition(Path file, int numFaces, int numVertices) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(numVertices, (int) lines.stream().filter(line -> line.startsWith("v ")).count());
+        assertEquals(numFaces, (int) lines.stream().filter(line -> line.startsWith("f ")).count());
+
+        // Every index must point into this file's own vertices.
+        for (String line : lines) {
+            if (!line.startsWith("f "))
+                continue;
+            for (String corner : line.substring(2).split(" ")) {
+                int index = Integer.parseInt(corner.split("/")[0]);
+                assertTrue(index >= 1 && index <= numVertices);
+            }
+        }
+    }
+
+    private static void buildGrid(ConcurrentMeshBuilder mesh, int size) {
+        for (int i = 0; i < size * size; i++) {
+            float x = i % size;
+            float z = i / size;
+            new FaceBuilder(new Vertex[] {
+                    new Vertex(x, 0, z),
+                    new Vertex(x + 1, 0, z),
+                    new Vertex(x + 1, 0, z + 1),
+                    new Vertex(x, 0, z + 1)
+            }).material(x < size / 2 ? "left" : "right").build(mesh);
+        }
+    }
+
+    private static void deleteAll(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,143 @@
+package com.igrium.meshlib.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.meshlib.ConcurrentMeshBuilder;
+import com.igrium.meshlib.FaceBuilder;
+import com.igrium.meshlib.Vertex;
+import com.igrium.meshlib.math.Vector2;
+import com.igrium.meshlib.math.Vector3;
+
+public class PlyWriterTest {
+
+    @Test
+    public void testPlainVertices() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(1, 0, 1.5f),
+                new Vertex(0, 0, 1.5f)
+        }).build(mesh);
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(new Vector3(0, -1, 0), new Vector3(1, 0, 0.5f))
+        }).build(mesh);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mesh.writePly(Channels.newChannel(out), false);
+        ByteBuffer data = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals("""
+                ply
+                format binary_little_endian 1.0
+                comment Written by meshlib
+                element vertex 5
+                property float x
+                property float y
+                property float z
+                property uchar red
+                property uchar green
+                property uchar blue
+                element face 2
+                property list uchar int vertex_indices
+                end_header
+                """, readHeader(data));
+
+        assertEquals(5 * 15 + (1 + 4 * 4) + (1 + 3 * 4), data.remaining());
+        data.position(data.position() + 2 * 15);
+        assertEquals(1, data.getFloat(), 0);
+        assertEquals(0, data.getFloat(), 0);
+        assertEquals(1.5f, data.getFloat(), 0);
+        assertEquals(255, Byte.toUnsignedInt(data.get()));
+        data.position(data.position() + 2 + 15);
+        assertEquals(0, data.getFloat(), 0);
+        assertEquals(-1, data.getFloat(), 0);
+        assertEquals(0, data.getFloat(), 0);
+        assertEquals(255, Byte.toUnsignedInt(data.get()));
+        assertEquals(0, data.get());
+        assertEquals(128, Byte.toUnsignedInt(data.get()));
+
+        assertEquals(4, data.get());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, data.getInt());
+        }
+        assertEquals(3, data.get());
+        assertEquals(0, data.getInt());
+        assertEquals(1, data.getInt());
+        assertEquals(4, data.getInt());
+    }
+
+    @Test
+    public void testSplitVertices() throws IOException {
+        ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create();
+        Vector2[] texCoords = {
+                new Vector2(0, 0),
+                new Vector2(1, 0),
+                new Vector2(1, 1)
+        };
+        // Both faces share two vertices, but only one of them with the same
+        // texture coordinate.
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 0, 0),
+                new Vertex(1, 1, 0)
+        }).texCoords(texCoords).build(mesh);
+        new FaceBuilder(new Vertex[] {
+                new Vertex(0, 0, 0),
+                new Vertex(1, 1, 0),
+                new Vertex(0, 1, 0)
+        }).texCoords(texCoords).build(mesh);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlyWriter writer = new PlyWriter(256);
+        mesh.compile(false, view -> {
+            writer.write(view, Channels.newChannel(out));
+            return null;
+        });
+        ByteBuffer data = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        String header = readHeader(data);
+        assertTrue(header.contains("element vertex 5\n"));
+        assertTrue(header.contains("property float s\nproperty float t\n"));
+
+        int stride = 3 * 4 + 3 + 2 * 4;
+        assertEquals(5 * stride + 2 * (1 + 3 * 4), data.remaining());
+        int faces = data.position() + 5 * stride;
+        assertEquals(3, data.get(faces));
+        assertEquals(0, data.getInt(faces + 1));
+        assertEquals(1, data.getInt(faces + 5));
+        assertEquals(2, data.getInt(faces + 9));
+        assertEquals(3, data.get(faces + 13));
+        assertEquals(0, data.getInt(faces + 14));
+        assertEquals(3, data.getInt(faces + 18));
+        assertEquals(4, data.getInt(faces + 22));
+
+        // The shared vertex with a different texture coordinate.
+        int vertex = data.position() + 3 * stride;
+        assertEquals(1, data.getFloat(vertex), 0);
+        assertEquals(1, data.getFloat(vertex + 4), 0);
+        assertEquals(1, data.getFloat(vertex + 15), 0);
+        assertEquals(0, data.getFloat(vertex + 19), 0);
+    }
+
+    private static String readHeader(ByteBuffer data) {
+        String end = "end_header\n";
+        byte[] bytes = data.array();
+        String text = new String(bytes, 0, Math.min(bytes.length, 1024), StandardCharsets.US_ASCII);
+        int length = text.indexOf(end) + end.length();
+        data.position(length);
+        return text.substring(0, length);
+    }
+}
@@ -3,12 +3,11 @@ package com.igrium.testapp;
 import java.io.BufferedWriter;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
 
 import com.igrium.meshlib.ConcurrentMeshBuilder;
 import com.igrium.meshlib.FaceBuilder;
+import com.igrium.meshlib.GenerationDriver;
+import com.igrium.meshlib.GenerationDriver.CellRange;
 import com.igrium.meshlib.Vertex;
 import com.igrium.meshlib.math.Vector2;
 
@@ -20,17 +19,8 @@ public class TestApp {
         System.out.println("Starting build process");
         long startTime = System.currentTimeMillis();
         ConcurrentMeshBuilder mesh = ConcurrentMeshBuilder.create(true);
-        List<CompletableFuture<?>> futures = new ArrayList<>();
-
-        for (int x = 0; x < 100; x++) {
-            for (int y = 0; y < 100; y++) {
-                for (int z = 0; z < 100; z++) {
-                    futures.add(makeFuture(mesh, x, y, z));
-                }
-            }
-        }
 
-        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        new GenerationDriver(mesh).generate(CellRange.of(100, 100, 100), TestApp::makeCube).join();
         
         System.out.println("Built mesh in " + (System.currentTimeMillis() - startTime) + " ms");
         long compileStartTime = System.currentTimeMillis();
@@ -46,12 +36,6 @@ public class TestApp {
         System.out.print("wrote to " + Paths.get("file.obj").toAbsolutePath());
     }
 
-    private static CompletableFuture<Void> makeFuture(ConcurrentMeshBuilder mesh, float x, float y, float z) {
-        return CompletableFuture.runAsync(() -> {
-            makeCube(mesh, x, y, z);
-        });
-    }
-
     // I didn't finish this. I don't care.
     public static void makeCube(ConcurrentMeshBuilder mesh, float x, float y, float z) {
         float maxX = x + 1;